@@ -0,0 +1,34 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.JpashopApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 벤치마크용 스프링 컨텍스트: 웹 서버 없이 메모리 H2로 실행
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        //application.yml보다 우선하도록 커맨드라인 인자로 넘김
+        String[] defaults = {
+                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--logging.level.root=warn",
+                "--logging.level.org.hibernate.SQL=off",
+                "--decorator.datasource.p6spy.enable-logging=false"
+        };
+        String[] args = new String[defaults.length + properties.length];
+        System.arraycopy(defaults, 0, args, 0, defaults.length);
+        for (int i = 0; i < properties.length; i++) {
+            args[defaults.length + i] = "--" + properties[i];
+        }
+        return new SpringApplicationBuilder(JpashopApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+}
@@ -0,0 +1,63 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.query.OrderFlatDto;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * V6 플랫 데이터 묶기 비교
+ * groupingBy: row마다 key DTO 생성 + 전체 주문 HashMap
+ * groupAdjacent: order id로 정렬된 row를 이웃끼리 한번에 묶음
+ * allocation은 -prof gc 결과의 gc.alloc.rate.norm 으로 확인
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class FlatGroupingBenchmark {
+
+    @Param({"1000", "100000"})
+    int orderCount;
+
+    @Param({"1", "5"})
+    int itemsPerOrder;
+
+    List<OrderFlatDto> flats;
+
+    @Setup
+    public void setUp() {
+        flats = new ArrayList<>(orderCount * itemsPerOrder);
+        LocalDateTime now = LocalDateTime.now();
+        Address address = new Address("서울", "1", "1111");
+        for (long orderId = 1; orderId <= orderCount; orderId++) {
+            for (int i = 0; i < itemsPerOrder; i++) {
+                flats.add(new OrderFlatDto(orderId, "user" + orderId, now, OrderStatus.ORDER, address, "item" + i, 10000, i + 1));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<OrderQueryDto> hashGrouping() {
+        return flats.stream()
+                .collect(groupingBy(o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
+                        mapping(o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
+                )).entrySet().stream()
+                .map(e -> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(), e.getKey().getAddress(), e.getValue()))
+                .collect(toList());
+    }
+
+    @Benchmark
+    public List<OrderQueryDto> adjacentGrouping() {
+        return OrderQueryRepository.groupAdjacent(flats);
+    }
+}
@@ -0,0 +1,84 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.domain.*;
+import jpabook.jpashop.domain.Item.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 주문(Order + OrderItem 2개 + Delivery) insert 처리량 비교
+ * baseline: id 1개씩 시퀀스 조회(allocation_size=1), JDBC batch 끔 -> 기존 설정과 같음
+ * pooled: pooled-lo 시퀀스(allocation_size=50) + JDBC batch + order_inserts
+ * 결과는 초당 저장한 주문 수(OperationsPerInvocation)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class OrderInsertBenchmark {
+
+    static final int ORDERS_PER_TX = 100;
+
+    @Param({"baseline", "pooled"})
+    String mode;
+
+    ConfigurableApplicationContext context;
+    EntityManagerFactory emf;
+    Long bookId;
+
+    @Setup
+    public void setUp() {
+        if ("baseline".equals(mode)) {
+            context = BenchmarkContext.start(
+                    "spring.jpa.properties.jpashop.id.allocation_size=1",
+                    "spring.jpa.properties.hibernate.jdbc.batch_size=0");
+        } else {
+            context = BenchmarkContext.start(
+                    "spring.jpa.properties.jpashop.id.allocation_size=50",
+                    "spring.jpa.properties.hibernate.jdbc.batch_size=50");
+        }
+        emf = context.getBean(EntityManagerFactory.class);
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        Book book = new Book();
+        book.setName("BENCH BOOK");
+        book.setPrice(10000);
+        book.setStockQuantity(Integer.MAX_VALUE);
+        em.persist(book);
+        em.getTransaction().commit();
+        em.close();
+        bookId = book.getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ORDERS_PER_TX)
+    public void insertOrders() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        //Order.setMember가 member.orders에 추가하므로 기존 회원을 쓰면 주문 컬렉션 전체를 조회하게 됨 -> 트랜잭션마다 새 회원
+        Member member = new Member();
+        member.setName("bench");
+        member.setAddress(new Address("서울", "1", "1111"));
+        em.persist(member);
+        Book book = em.getReference(Book.class, bookId);
+        for (int i = 0; i < ORDERS_PER_TX; i++) {
+            Delivery delivery = new Delivery();
+            delivery.setAddress(new Address("서울", "1", "1111"));
+            Order order = Order.createOrder(member, delivery,
+                    OrderItem.createOrderItem(book, 10000, 1),
+                    OrderItem.createOrderItem(book, 10000, 2));
+            em.persist(order);
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+}
@@ -0,0 +1,140 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 주문 조회 전략(V2 ~ V6) 비교: 전체 주문을 조회해서 API 응답에 필요한 값까지 모두 읽음
+ * 엔티티 조회는 OrderDto와 같이 회원 이름, 배송 주소, 주문상품 이름까지 접근(지연 로딩 포함)
+ *
+ * - findAllByString: 엔티티 + 지연 로딩 (V2, 최대 1000건만 조회)
+ * - findAllWithItem: 컬렉션 fetch join (V3)
+ * - findAllWithMemberDelivery_batchFetch: ToOne fetch join + 컬렉션은 default_batch_fetch_size (V3.1)
+ * - findOrderQueryDtos: DTO + 주문마다 주문상품 조회, N+1 (V4)
+ * - findAllByDto_optimization: DTO + in 절 (V5)
+ * - findAllByDto_flat / findAllByDto_flatGrouped: 조인 한번 / 조인 한번 + 주문별로 묶기 (V6)
+ *
+ * 처리량은 초당 "전체 주문 조회" 횟수, allocation은 -prof gc의 gc.alloc.rate.norm,
+ * SQL 실행 수는 iteration이 끝날 때 Hibernate Statistics로 조회 1번당 평균을 출력
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class OrderReadBenchmark {
+
+    @Param({"1000", "10000"})
+    int orders;
+
+    @Param({"1", "5"})
+    int itemsPerOrder;
+
+    ConfigurableApplicationContext context;
+    OrderRepository orderRepository;
+    OrderQueryRepository orderQueryRepository;
+    TransactionTemplate transactionTemplate;
+    Statistics statistics;
+
+    @Setup
+    public void setUp() {
+        //InitDB가 DataGenerator로 데이터를 생성. 회원은 주문 10건당 1명, 상품은 200개
+        context = BenchmarkContext.start(
+                "jpashop.data-generator.enabled=true",
+                "jpashop.data-generator.orders=" + orders,
+                "jpashop.data-generator.avg-items-per-order=" + itemsPerOrder,
+                "jpashop.data-generator.members=" + Math.max(10, orders / 10),
+                "jpashop.data-generator.items=200",
+                "spring.jpa.properties.hibernate.generate_statistics=true",
+                "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=off");
+        orderRepository = context.getBean(OrderRepository.class);
+        orderQueryRepository = context.getBean(OrderQueryRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Setup(Level.Iteration)
+    public void clearStatistics() {
+        statistics.clear();
+    }
+
+    //조회 1번 = 트랜잭션 1번
+    @TearDown(Level.Iteration)
+    public void printStatistics() {
+        long count = Math.max(1, statistics.getTransactionCount());
+        System.out.printf("%n[sql] statements/op=%.1f, entities/op=%.1f, collections/op=%.1f%n",
+                (double) statistics.getPrepareStatementCount() / count,
+                (double) statistics.getEntityLoadCount() / count,
+                (double) statistics.getCollectionFetchCount() / count);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void findAllByString(Blackhole bh) {
+        read(bh, () -> touch(bh, orderRepository.findAllByString(new OrderSearch())));
+    }
+
+    @Benchmark
+    public void findAllWithItem(Blackhole bh) {
+        read(bh, () -> touch(bh, orderRepository.findAllWithItem()));
+    }
+
+    @Benchmark
+    public void findAllWithMemberDelivery_batchFetch(Blackhole bh) {
+        read(bh, () -> touch(bh, orderRepository.findAllWithMemberDelivery(0, Integer.MAX_VALUE)));
+    }
+
+    @Benchmark
+    public void findOrderQueryDtos(Blackhole bh) {
+        read(bh, orderQueryRepository::findOrderQueryDtos);
+    }
+
+    @Benchmark
+    public void findAllByDto_optimization(Blackhole bh) {
+        read(bh, orderQueryRepository::findAllByDto_optimization);
+    }
+
+    @Benchmark
+    public void findAllByDto_flat(Blackhole bh) {
+        read(bh, orderQueryRepository::findAllByDto_flat);
+    }
+
+    @Benchmark
+    public void findAllByDto_flatGrouped(Blackhole bh) {
+        read(bh, orderQueryRepository::findAllByDto_flatGrouped);
+    }
+
+    private void read(Blackhole bh, Supplier<?> query) {
+        bh.consume(transactionTemplate.execute(status -> query.get()));
+    }
+
+    //OrderDto 변환과 같은 값에 접근해서 지연 로딩을 발생시킴
+    private static List<Order> touch(Blackhole bh, List<Order> orders) {
+        for (Order order : orders) {
+            bh.consume(order.getMember().getName());
+            bh.consume(order.getDelivery().getAddress());
+            for (OrderItem orderItem : order.getOrderItems()) {
+                bh.consume(orderItem.getItem().getName());
+            }
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,61 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.service.StockLedger;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 한 상품에 주문이 몰리는 상황에서 재고 차감 처리량 비교
+ * conditionalUpdate: 트랜잭션 + 조건부 update (기본 경로, row lock에서 줄을 섬)
+ * ledgerReserve: 메모리 재고 장부 (lock 없이 차감, DB에는 주기적으로 반영)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+public class StockReservationBenchmark {
+
+    ConfigurableApplicationContext context;
+    ItemRepository itemRepository;
+    StockLedger stockLedger;
+    TransactionTemplate transactionTemplate;
+    Long itemId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start("jpashop.stock-ledger.enabled=true");
+        itemRepository = context.getBean(ItemRepository.class);
+        stockLedger = context.getBean(StockLedger.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        Book book = new Book();
+        book.setName("HOT BOOK");
+        book.setPrice(10000);
+        book.setStockQuantity(Integer.MAX_VALUE);
+        itemId = transactionTemplate.execute(status -> {
+            itemRepository.save(book);
+            return book.getId();
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void conditionalUpdate() {
+        transactionTemplate.executeWithoutResult(status -> itemRepository.removeStock(itemId, 1));
+    }
+
+    @Benchmark
+    public void ledgerReserve() {
+        transactionTemplate.executeWithoutResult(status -> stockLedger.reserve(itemId, 1));
+    }
+}
@@ -0,0 +1,345 @@
+package jpabook.jpashop;
+
+import jpabook.jpashop.domain.*;
+import jpabook.jpashop.domain.Item.Album;
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.domain.Item.Item;
+import jpabook.jpashop.domain.Item.Movie;
+import jpabook.jpashop.sharding.ShardedOrderStore;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * 대용량 테스트 데이터 생성기
+ * 영속성 컨텍스트를 거치지 않는 StatelessSession으로 insert -> 1차 캐시/변경감지 비용이 없고 메모리가 쌓이지 않음
+ * - 청크(chunkSize) 단위로 트랜잭션을 나눠 여러 스레드에서 동시에 실행
+ * - 같은 테이블끼리 모아서 insert해야 JDBC batch가 끊기지 않음 (delivery -> orders -> order_item 순서)
+ * - id는 엔티티별 pooled-lo 시퀀스를 그대로 사용
+ * 스프링 없이도 EntityManagerFactory만 있으면 사용 가능(테스트, 벤치마크)
+ * 샤딩 모드에서는 주문(delivery, orders, order_item)을 회원의 shard에 넣음
+ */
+@Slf4j
+@Component
+public class DataGenerator {
+
+    private static final String[] CITIES = {"서울", "부산", "인천", "대구", "대전", "광주", "울산", "진주"};
+
+    private final SessionFactory sessionFactory;
+    private final ShardedOrderStore shardedOrderStore; //null이면 샤딩 사용 안 함
+
+    public DataGenerator(EntityManagerFactory emf) {
+        this(emf, null);
+    }
+
+    @Autowired
+    public DataGenerator(EntityManagerFactory emf, ShardedOrderStore shardedOrderStore) {
+        this.sessionFactory = emf.unwrap(SessionFactory.class);
+        this.shardedOrderStore = shardedOrderStore;
+    }
+
+    public Result generate(DataGeneratorSettings settings) {
+        if (settings.getOrders() > 0 && (settings.getMembers() == 0 || settings.getItems() == 0)) {
+            throw new IllegalArgumentException("주문을 만들려면 회원과 상품이 필요합니다.");
+        }
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(settings.getThreads());
+        try {
+            long[] memberIds = new long[settings.getMembers()];
+            runChunks(executor, settings, settings.getMembers(),
+                    (session, chunk) -> insertMembers(session, chunk, memberIds));
+
+            long[] itemIds = new long[settings.getItems()];
+            int[] itemPrices = new int[settings.getItems()];
+            inTransaction(settings, session -> insertItems(session, settings, itemIds, itemPrices));
+            long[] categoryIds = new long[settings.getCategories()];
+            inTransaction(settings, session -> insertCategories(session, settings, categoryIds));
+            //category insert batch가 커밋으로 실행된 뒤에 연결 테이블을 넣어야 FK 위반이 나지 않음
+            inTransaction(settings, session -> insertCategoryItems(session, settings, categoryIds, itemIds));
+
+            runChunks(executor, settings, settings.getOrders(),
+                    (session, chunk) -> insertOrders(session, settings, chunk, memberIds, itemIds, itemPrices));
+        } finally {
+            executor.shutdownNow();
+        }
+        Result result = new Result(settings, System.currentTimeMillis() - start);
+        log.info("테스트 데이터 생성 완료: {}", result);
+        return result;
+    }
+
+    //==회원==//
+    private void insertMembers(StatelessSession session, Chunk chunk, long[] memberIds) {
+        SplittableRandom random = chunk.random();
+        for (int i = chunk.from; i < chunk.to; i++) {
+            Member member = new Member();
+            member.setName("member" + i);
+            member.setAddress(randomAddress(random));
+            memberIds[i] = (Long) session.insert(member);
+        }
+    }
+
+    //==상품==//
+    private void insertItems(StatelessSession session, DataGeneratorSettings settings, long[] itemIds, int[] itemPrices) {
+        SplittableRandom random = new SplittableRandom(settings.getSeed());
+        //Book, Album, Movie를 번갈아 넣어도 같은 테이블(SINGLE_TABLE)이라 batch는 유지됨
+        for (int i = 0; i < itemIds.length; i++) {
+            Item item = createItem(i);
+            item.setName(item.getClass().getSimpleName().toUpperCase() + i);
+            item.setPrice(1000 * random.nextInt(1, 100));
+            item.setStockQuantity(1_000_000);
+            itemIds[i] = (Long) session.insert(item);
+            itemPrices[i] = item.getPrice();
+        }
+    }
+
+    private Item createItem(int index) {
+        switch (index % 3) {
+            case 0:
+                Book book = new Book();
+                book.setAuthor("author" + index % 100);
+                book.setIsbn(String.format("978-%09d", index));
+                return book;
+            case 1:
+                Album album = new Album();
+                album.setArtist("artist" + index % 100);
+                return album;
+            default:
+                Movie movie = new Movie();
+                movie.setDirector("director" + index % 100);
+                movie.setActor("actor" + index % 300);
+                return movie;
+        }
+    }
+
+    //==카테고리==//
+    //앞쪽 10%는 최상위, 나머지는 최상위 중 하나의 하위 카테고리
+    private void insertCategories(StatelessSession session, DataGeneratorSettings settings, long[] categoryIds) {
+        SplittableRandom random = new SplittableRandom(settings.getSeed() + 1);
+        int roots = rootCount(categoryIds.length);
+        for (int i = 0; i < categoryIds.length; i++) {
+            Category category = new Category();
+            category.setName("category" + i);
+            if (i >= roots) {
+                Category parent = new Category();
+                parent.setId(categoryIds[random.nextInt(roots)]);
+                category.setParent(parent);
+            }
+            categoryIds[i] = (Long) session.insert(category);
+        }
+    }
+
+    //StatelessSession은 컬렉션(category_item)을 저장하지 않으므로 연결 테이블은 JDBC batch로 직접 insert
+    //상품마다 하위 카테고리 1~2개
+    private void insertCategoryItems(StatelessSession session, DataGeneratorSettings settings,
+                                     long[] categoryIds, long[] itemIds) {
+        if (categoryIds.length == 0) {
+            return;
+        }
+        SplittableRandom random = new SplittableRandom(settings.getSeed() + 2);
+        int roots = rootCount(categoryIds.length);
+        int leaves = categoryIds.length - roots;
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "insert into category_item (category_id, item_id) values (?, ?)")) {
+                int batched = 0;
+                for (long itemId : itemIds) {
+                    int first = leaves == 0 ? 0 : roots + random.nextInt(leaves);
+                    int second = leaves == 0 ? 0 : roots + random.nextInt(leaves);
+                    for (int c : first == second ? new int[]{first} : new int[]{first, second}) {
+                        ps.setLong(1, categoryIds[c]);
+                        ps.setLong(2, itemId);
+                        ps.addBatch();
+                        if (++batched % settings.getJdbcBatchSize() == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                }
+                ps.executeBatch();
+            }
+        });
+    }
+
+    private static int rootCount(int categories) {
+        return Math.min(categories, Math.max(1, categories / 10));
+    }
+
+    //==주문==//
+    private void insertOrders(StatelessSession session, DataGeneratorSettings settings, Chunk chunk,
+                              long[] memberIds, long[] itemIds, int[] itemPrices) {
+        SplittableRandom random = chunk.random();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime shippedBefore = now.minusDays(3); //3일 지난 주문은 배송 완료
+        int maxItems = Math.max(1, settings.getAvgItemsPerOrder() * 2 - 1);
+
+        List<Order> orders = new ArrayList<>(chunk.to - chunk.from);
+        for (int i = chunk.from; i < chunk.to; i++) {
+            Member member = new Member(); //id만 있는 참조용 객체, 주문마다 새로 만들어 orders 컬렉션이 쌓이지 않게 함
+            member.setId(memberIds[skewed(random, memberIds.length, settings.getSkew())]);
+
+            int itemCount = Math.min(random.nextInt(1, maxItems + 1), itemIds.length);
+            int[] picked = new int[itemCount];
+            OrderItem[] orderItems = new OrderItem[itemCount];
+            for (int n = 0; n < itemCount; n++) {
+                picked[n] = pickDistinct(random, picked, n, itemIds.length, settings.getSkew());
+                Item item = new Book();
+                item.setId(itemIds[picked[n]]);
+                orderItems[n] = OrderItem.createOrderItem(item, itemPrices[picked[n]], random.nextInt(1, 4));
+            }
+
+            Delivery delivery = new Delivery();
+            delivery.setAddress(randomAddress(random));
+            Order order = Order.createOrder(member, delivery, orderItems);
+            order.setOrderDate(now.minusSeconds(random.nextLong(settings.getHistoryDays() * 86_400L + 1)));
+            if (random.nextDouble() < settings.getCancelRatio()) {
+                order.setStatus(OrderStatus.CANCEL);
+                delivery.setStatus(DeliveryStatus.READY);
+            } else {
+                delivery.setStatus(order.getOrderDate().isBefore(shippedBefore) ? DeliveryStatus.COMP : DeliveryStatus.READY);
+            }
+            orders.add(order);
+        }
+
+        if (shardedOrderStore != null && shardedOrderStore.isEnabled()) {
+            shardedOrderStore.insertAll(orders); //shard마다 batch insert
+            return;
+        }
+        for (Order order : orders) {
+            session.insert(order.getDelivery());
+        }
+        for (Order order : orders) {
+            session.insert(order);
+        }
+        for (Order order : orders) {
+            for (OrderItem orderItem : order.getOrderItems()) {
+                session.insert(orderItem);
+            }
+        }
+    }
+
+    //0에 가까운 index일수록 자주 뽑힘
+    private static int skewed(SplittableRandom random, int n, double skew) {
+        return Math.min(n - 1, (int) (n * Math.pow(random.nextDouble(), skew)));
+    }
+
+    //한 주문에 같은 상품이 중복되지 않게 뽑음, 편중이 심하면 몇 번 재시도 후 순서대로 다음 상품 사용
+    private static int pickDistinct(SplittableRandom random, int[] picked, int size, int n, double skew) {
+        int candidate = skewed(random, n, skew);
+        for (int attempt = 0; contains(picked, size, candidate); attempt++) {
+            candidate = attempt < 8 ? skewed(random, n, skew) : (candidate + 1) % n;
+        }
+        return candidate;
+    }
+
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Address randomAddress(SplittableRandom random) {
+        return new Address(CITIES[random.nextInt(CITIES.length)],
+                String.valueOf(random.nextInt(1, 1000)),
+                String.format("%05d", random.nextInt(100_000)));
+    }
+
+    //==실행==//
+    private void runChunks(ExecutorService executor, DataGeneratorSettings settings, int total, ChunkWork work) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < total; from += settings.getChunkSize()) {
+            Chunk chunk = new Chunk(settings.getSeed(), from, Math.min(from + settings.getChunkSize(), total));
+            futures.add(executor.submit(() -> inTransaction(settings, session -> work.run(session, chunk))));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("테스트 데이터 생성이 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("테스트 데이터 생성에 실패했습니다.", e.getCause());
+        }
+    }
+
+    private void inTransaction(DataGeneratorSettings settings, Consumer<StatelessSession> work) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.setJdbcBatchSize(settings.getJdbcBatchSize());
+            Transaction tx = session.beginTransaction();
+            try {
+                work.accept(session);
+                tx.commit(); //커밋 직전에 남은 batch가 실행됨
+            } catch (RuntimeException e) {
+                tx.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private interface ChunkWork {
+        void run(StatelessSession session, Chunk chunk);
+    }
+
+    //청크마다 seed를 고정해서 스레드 실행 순서와 관계없이 같은 데이터가 나오게 함
+    private static final class Chunk {
+        private final long seed;
+        private final int from;
+        private final int to;
+
+        private Chunk(long seed, int from, int to) {
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        private SplittableRandom random() {
+            return new SplittableRandom(seed * 31 + from);
+        }
+    }
+
+    @Getter
+    public static class Result {
+        private final int members;
+        private final int items;
+        private final int categories;
+        private final int orders;
+        private final long elapsedMillis;
+
+        private Result(DataGeneratorSettings settings, long elapsedMillis) {
+            this.members = settings.getMembers();
+            this.items = settings.getItems();
+            this.categories = settings.getCategories();
+            this.orders = settings.getOrders();
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "members=" + members + ", items=" + items + ", categories=" + categories
+                    + ", orders=" + orders + ", " + elapsedMillis + "ms";
+        }
+    }
+}
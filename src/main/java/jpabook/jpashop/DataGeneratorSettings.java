@@ -0,0 +1,34 @@
+package jpabook.jpashop;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 대용량 테스트 데이터 설정(jpashop.data-generator.*)
+ * 테스트/벤치마크에서는 new로 만들어서 필요한 값만 바꿔서 사용
+ */
+@Component
+@ConfigurationProperties(prefix = "jpashop.data-generator")
+@Getter @Setter
+public class DataGeneratorSettings {
+
+    private boolean enabled = false; //false면 InitDB가 기존 샘플 주문 2개만 등록
+
+    private int members = 10_000;
+    private int items = 1_000; //Book, Album, Movie를 고르게 생성
+    private int categories = 50; //10%는 최상위, 나머지는 하위 카테고리
+    private int orders = 100_000;
+    private int avgItemsPerOrder = 3; //주문당 상품 수는 1 ~ (2 * avg - 1) 균등 분포
+
+    //편중도: 1이면 균등, 클수록 앞쪽 회원/상품에 주문이 몰림 (index = n * u^skew)
+    private double skew = 2.0;
+    private double cancelRatio = 0.1;
+    private int historyDays = 730; //주문일은 오늘부터 historyDays일 전까지
+
+    private int threads = 4;
+    private int chunkSize = 1_000; //한 트랜잭션에서 넣을 회원/주문 수
+    private int jdbcBatchSize = 100;
+    private long seed = 42L; //같은 seed면 같은 데이터(id 제외)
+}
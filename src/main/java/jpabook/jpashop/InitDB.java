@@ -2,6 +2,8 @@ package jpabook.jpashop;
 
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,15 +20,23 @@ import javax.persistence.EntityManager;
  * userB
  *  * SPRING1 BOOK
  *  * SPRING2 BOOK
+ *
+ * jpashop.data-generator.enabled=true 이면 샘플 주문 대신 DataGenerator로 대용량 데이터 생성
  */
 @Component
 @RequiredArgsConstructor
 public class InitDB {
 
     private final InitService initService;
+    private final DataGenerator dataGenerator;
+    private final DataGeneratorSettings dataGeneratorSettings;
 
     @PostConstruct //spring bean이 다 올라오고나면 호출
     public void init() {
+        if (dataGeneratorSettings.isEnabled()) {
+            dataGenerator.generate(dataGeneratorSettings);
+            return;
+        }
         initService.dbInit1(); //여기에 한번에 넣으면 등록될 것 같지만 spring의 라이프 사이클로 인해서 별도의 bean으로 등록해야 함
         initService.dbInit2();
     }
@@ -37,6 +47,8 @@ public class InitDB {
     static class InitService {
 
         private final EntityManager em;
+        private final OrderRepository orderRepository; //샤딩 모드에서는 주문을 shard에 저장
+        private final ItemRepository itemRepository;
         public void dbInit1() {
 
             Member member = createMember("userA", "서울", "1", "1111");
@@ -48,12 +60,12 @@ public class InitDB {
             Book book2 = createBook("JPA2 BOOK", 20000, 100);
             em.persist(book2);
 
-            OrderItem orderItem1 = OrderItem.createOrderItem(book1, 10000, 1);
-            OrderItem orderItem2 = OrderItem.createOrderItem(book2, 20000, 2);
+            OrderItem orderItem1 = createOrderItem(book1, 10000, 1);
+            OrderItem orderItem2 = createOrderItem(book2, 20000, 2);
 
             Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
-            em.persist(order);
+            orderRepository.save(order);
         }
 
         public void dbInit2() {
@@ -66,12 +78,12 @@ public class InitDB {
             Book book2 = createBook("SPRING2 BOOK", 40000, 300);
             em.persist(book2);
 
-            OrderItem orderItem1 = OrderItem.createOrderItem(book1, 20000, 3);
-            OrderItem orderItem2 = OrderItem.createOrderItem(book2, 40000, 4);
+            OrderItem orderItem1 = createOrderItem(book1, 20000, 3);
+            OrderItem orderItem2 = createOrderItem(book2, 40000, 4);
 
             Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
-            em.persist(order);
+            orderRepository.save(order);
         }
 
         private Member createMember(String name, String city, String street, String zipcode) {
@@ -90,6 +102,12 @@ public class InitDB {
             return book1;
         }
 
+        //OrderItem.createOrderItem은 재고를 건드리지 않으므로 OrderService처럼 조건부 update로 먼저 차감
+        private OrderItem createOrderItem(Book book, int orderPrice, int count) {
+            itemRepository.removeStock(book.getId(), count);
+            return OrderItem.createOrderItem(book, orderPrice, count);
+        }
+
         private Delivery createDelivery(Member member) {
             Delivery delivery = new Delivery();
             delivery.setAddress(member.getAddress());
@@ -0,0 +1,20 @@
+package jpabook.jpashop;
+
+import jpabook.jpashop.cache.VersionETagInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final VersionETagInterceptor versionETagInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        //@VersionETag가 붙은 API만 처리
+        registry.addInterceptor(versionETagInterceptor).addPathPatterns("/api/**");
+    }
+}
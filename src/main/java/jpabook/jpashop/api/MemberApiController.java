@@ -1,6 +1,13 @@
 package jpabook.jpashop.api;
 
+import jpabook.jpashop.cache.DataVersions;
+import jpabook.jpashop.cache.VersionETag;
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.monitor.SqlBudget;
+import jpabook.jpashop.repository.MemberListDto;
+import jpabook.jpashop.readmodel.MemberRankDto;
+import jpabook.jpashop.readmodel.MemberStatsRepository;
+import jpabook.jpashop.readmodel.SpendCursor;
 import jpabook.jpashop.service.MemberService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -18,19 +25,22 @@ import java.util.stream.Stream;
 @RequiredArgsConstructor
 public class MemberApiController {
     private final MemberService memberService;
+    private final MemberStatsRepository memberStatsRepository;
 
 
     //엔티티를 직접 노출하게 되면 엔티티에 대한 모든 정보가 노출됨
     @GetMapping("/api/v1/members")
     public List<Member> membersV1() {
-        return memberService.findMembers();
+        return memberService.findMemberEntities();
     }
 
     //entity 를 DTO로 변환
     //but API 스펙이 변하지 않음, 유연성 증가
+    //회원 목록이 바뀌지 않았으면 조회 없이 304
+    @VersionETag(value = DataVersions.Kind.MEMBER, cacheControl = "${jpashop.etag.cache-control.members:no-cache}")
     @GetMapping("/api/v2/members")
     public Result membersV2() {
-        List<Member> findMembers = memberService.findMembers();
+        List<MemberListDto> findMembers = memberService.findMembers();
         List<MemberDto> collect = findMembers.stream()
                 .map(m -> new MemberDto(m.getName()))
                 .collect(Collectors.toList());
@@ -54,6 +64,30 @@ public class MemberApiController {
         private T data;
     }
 
+    //매출 순위: 주문/주문상품을 합산하지 않고 미리 쌓아 둔 회원 통계(member_stats)를 (total_spent, member_id) 인덱스 순서대로 읽음
+    //next가 있으면 다음 요청의 cursor로 전달
+    @SqlBudget(1)
+    @GetMapping("/api/v2/members/ranking")
+    public RankingResult membersRanking(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        List<MemberRankDto> ranking = memberStatsRepository.findRanking(SpendCursor.decode(cursor), limit);
+        String next = null;
+        if (!ranking.isEmpty() && ranking.size() >= limit) {
+            MemberRankDto last = ranking.get(ranking.size() - 1);
+            next = SpendCursor.of(last.getTotalSpent(), last.getMemberId()).encode();
+        }
+        return new RankingResult(ranking.size(), next, ranking);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class RankingResult {
+        private int count;
+        private String next;
+        private List<MemberRankDto> data;
+    }
+
     @Data
     @AllArgsConstructor
     static class MemberDto {
@@ -1,36 +1,77 @@
 package jpabook.jpashop.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.cache.CompletedOrderJsonCache;
+import jpabook.jpashop.cache.VersionETag;
+import jpabook.jpashop.monitor.SqlBudget;
+import jpabook.jpashop.readmodel.OrderViewDto;
+import jpabook.jpashop.readmodel.OrderViewRepository;
+import jpabook.jpashop.repository.OrderCursor;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.repository.order.query.OrderFlatDto;
-import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.service.OrderLine;
+import jpabook.jpashop.service.OrderService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Function;
 
+import static jpabook.jpashop.cache.DataVersions.Kind.*;
 import static java.util.stream.Collectors.*;
 
 
 /**
  * 컬렉션 조회: 일대 다 관계(OneToMany)
+ * 페이징 API의 limit은 1~MAX_LIMIT: 크게 주면 페이징이 전체 조회가 되고, batch fetch(100개), in 절(512개) 한 번에 담기지 않아 @SqlBudget을 넘음
  */
+@Validated
 @RestController
 @RequiredArgsConstructor
 public class OrderApiController {
+    static final int MAX_LIMIT = 100; //hibernate.default_batch_fetch_size
+
     private final OrderRepository orderRepository;
     private final OrderQueryRepository orderQueryRepository;
+    private final ObjectMapper objectMapper;
+    private final OrderService orderService;
+    private final OrderJsonWriter orderJsonWriter;
+    private final CompletedOrderJsonCache completedOrderJsonCache;
+    private final OrderViewRepository orderViewRepository;
 
+    @SqlBudget(10) //N+1: 주문마다 회원, 배송, 주문상품, 상품 조회
     @GetMapping("/api/v1/orders")
     public List<Order> ordersV1() {
         //LAZY 로딩에 대해서 컨트롤 해줘야 함. 여기서는 넘어감
@@ -49,6 +90,7 @@ public class OrderApiController {
     }
 
 
+    @SqlBudget(10) //N+1
     @GetMapping("/api/v2/orders")
     public List<OrderDto> ordersV2() {
         //LAZY 로딩에 대해서 컨트롤 해줘야 함. 여기서는 넘어감
@@ -71,6 +113,7 @@ public class OrderApiController {
     // -> 무엇을 기준으로 데이터를 가져와야하는지 모르게 될 수 있음: 데이터 정확성이 떨어짐(개수가 안맞거나 하는 등)
     // 보통 경고를 냄
 
+    @SqlBudget(1)
     @GetMapping("/api/v3/orders")
     public List<OrderDto> ordersV3() {
         return orderRepository.findAllWithItem().stream()
@@ -85,15 +128,29 @@ public class OrderApiController {
 //    - 지연 로딩 성능 최적화를 위해 적용할 것
 //        1. hibernate.default_batch_fetch_size: 글로벌하게 적용, 적어놓은 개수 만큼 미리 가져옴 - 주로 활용
 //        2. @BatchSize: 특정 엔티티에 디테일하게 적용, 1:N 관계에서는 1에 적기
+    @SqlBudget(3) //주문 1번 + 주문상품, 상품 batch fetch(limit <= 100)
     @GetMapping("/api/v3.1/orders")
     public List<OrderDto> ordersV3_page(
-            @RequestParam(value = "offset", defaultValue = "0") int offset,
-            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+            @RequestParam(value = "offset", defaultValue = "0") @Min(0) int offset,
+            @RequestParam(value = "limit", defaultValue = "100") @Min(1) @Max(MAX_LIMIT) int limit) {
     return orderRepository.findAllWithMemberDelivery(offset, limit).stream()
             .map(OrderDto::new)
             .collect(toList());
     }
 
+    //키셋(seek) 페이징: offset 대신 이전 응답의 next 토큰을 cursor로 넘김
+    //offset은 건너뛴 row도 DB가 다 읽어야 해서 뒤 페이지일수록 느려짐 -> 커서는 몇 번째 페이지든 비용이 같음
+    @SqlBudget(3)
+    @GetMapping("/api/v3.2/orders")
+    public CursorResult<OrderDto> ordersV3_cursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") @Min(1) @Max(MAX_LIMIT) int limit) {
+        List<OrderDto> orders = orderRepository.findAllWithMemberDelivery(OrderCursor.decode(cursor), limit).stream()
+                .map(OrderDto::new)
+                .collect(toList());
+        return CursorResult.of(orders, limit, o -> OrderCursor.of(o.getOrderDate(), o.getOrderId()));
+    }
+
 
     //DTO 직접 조회, JPA에서 DTO를 직접 조회
     //Query: 루트 1번, 컬렉션 N번 실행
@@ -102,6 +159,7 @@ public class OrderApiController {
     //-> ToMany 관계는 조인하면 row 수가 증가한다.
     //row 수가 증가하지 않는 ToOne 관계는 조인으로 최적화하기 쉬우므로 한번에 조회,
     //ToMany 관계는 최적화하기 어려우므로 findOrderItems() 같은 별도의 메서드로 조회
+    @SqlBudget(10) //N+1: 주문마다 주문상품 조회
     @GetMapping("/api/v4/orders")
     public List<OrderQueryDto> ordersV4() {
         return orderQueryRepository.findOrderQueryDtos();
@@ -110,9 +168,35 @@ public class OrderApiController {
 
     //query 2번으로 해결
     //컬렉션 조회 최적화: 일대다 관계인 컬렉션은 IN 절을활용해서 메모리에 미리 조회해서 최적화
+    //끝난 주문(배송 완료, 취소)은 캐시해둔 JSON을 그대로 씀(OrderJsonWriter), 응답 순서는 주문 id 순
+    //전체 조회라 SQL 수가 주문 수에 비례하므로 @SqlBudget 없음(고정된 값으로는 검사할 수 없음)
+    // - 캐시 끔: 주문 1번 + 주문상품 in 절(주문 512개마다 1번)
+    // - 캐시 사용: 주문 id 1번 + 캐시에 없는 주문 500개마다 주문 1번, 주문상품 in 절 1번(주문 5000개 단위)
+    //응답에 회원 이름, 상품 이름이 포함되므로 회원/상품 변경에도 ETag가 바뀜
+    @VersionETag(value = {ORDER, MEMBER, ITEM}, cacheControl = "${jpashop.etag.cache-control.orders:no-cache}")
     @GetMapping("/api/v5/orders")
-    public List<OrderQueryDto> ordersV5() {
-        return orderQueryRepository.findAllByDto_optimization();
+    public ResponseEntity<byte[]> ordersV5() throws IOException {
+        byte[] body;
+        if (completedOrderJsonCache.isEnabled()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            orderJsonWriter.writeAll(out);
+            body = out.toByteArray();
+        } else {
+            body = objectMapper.writeValueAsBytes(orderQueryRepository.findAllByDto_optimization());
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    //V5 + 키셋 페이징
+    @SqlBudget(2)
+    @GetMapping("/api/v5.1/orders")
+    public CursorResult<OrderQueryDto> ordersV5_cursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") @Min(1) @Max(MAX_LIMIT) int limit) {
+        List<OrderQueryDto> orders = orderQueryRepository.findAllByDto_optimization(OrderCursor.decode(cursor), limit);
+        return CursorResult.of(orders, limit, o -> OrderCursor.of(o.getOrderDate(), o.getOrderId()));
     }
 
     //플랫 데이터 최적화: JOIN 결과를 그대로 조회 후 애플리케이션에서 원하는 모양으로 직접 변환
@@ -121,16 +205,101 @@ public class OrderApiController {
     // 1. 우리가 원했던 방식인 order를 기준으로는 페이징 불가능
     // 2. 데이터 중복 -> 각 줄로 나온 것을 개발자가 직접 분해해서 조립하는 방법: 애플리케이션에서 추가 작업이 크다.
     // query는 한번이지만 조인으로 인해 DB에서 애플리케이션에 전달하는 데이터에 중복 데이터가 추가되므로 상황에 따라 V5보다 느릴 수 있다.
+    //직접 중복을 제거하는 방식: groupingBy 대신 order id 순으로 정렬해서 이웃한 row끼리 한번에 묶음
+    // -> row마다 key DTO와 HashMap을 만들지 않고, 조회 순서도 유지됨
+    @SqlBudget(1)
     @GetMapping("/api/v6/orders")
     public List<OrderQueryDto> ordersV6() {
-        List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
-        //직접 중복을 제거하는 방식
-        return flats.stream()
-                .collect(groupingBy(o -> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
-                        mapping(o -> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()), toList())
-                )).entrySet().stream()
-                .map(e -> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(),e.getKey().getAddress(), e.getValue()))
+        return orderQueryRepository.findAllByDto_flatGrouped();
+    }
+
+    //V6 전체 내보내기: List로 모으지 않고 주문 하나가 완성될 때마다 바로 응답에 씀
+    //V6는 전체 row + HashMap을 메모리에 올리므로 주문 테이블 크기만큼 heap이 필요함
+    //-> 스트리밍하면 주문 수와 상관없이 heap 사용량이 일정함
+    //JSON 캐시를 켜면 끝난 주문은 캐시의 byte를 그대로 쓰고, 나머지만 조회
+    @GetMapping("/api/v6/orders/export")
+    public void ordersV6_export(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        if (completedOrderJsonCache.isEnabled()) {
+            orderJsonWriter.writeAll(response.getOutputStream());
+            return;
+        }
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            orderQueryRepository.streamAllByDto_flat(order -> {
+                try {
+                    generator.writeObject(order);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    //V6 + 키셋 페이징: order id 페이지를 먼저 자르므로 order 기준 페이징이 가능해짐
+    @SqlBudget(2) //주문 id 페이지 1번 + 플랫 조회 1번
+    @GetMapping("/api/v6.1/orders")
+    public CursorResult<OrderQueryDto> ordersV6_cursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") @Min(1) @Max(MAX_LIMIT) int limit) {
+        List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat(OrderCursor.decode(cursor), limit);
+        //(orderDate desc, id desc)로 정렬되어 있어 같은 주문의 row가 붙어 나옴
+        List<OrderQueryDto> orders = OrderQueryRepository.groupAdjacent(flats);
+        return CursorResult.of(orders, limit, o -> OrderCursor.of(o.getOrderDate(), o.getOrderId()));
+    }
+
+    //조회 모델(order_view): 주문마다 응답에 필요한 값을 미리 복사해 둔 테이블을 인덱스 순서대로 읽기만 함
+    //join도, 주문상품 조회도 없음 -> query 1번. 주문상품은 저장해 둔 JSON을 그대로 씀
+    //비동기로 갱신되므로 방금 한 주문/취소가 잠깐 늦게 보일 수 있음(jpashop.order-view.staleness)
+    @SqlBudget(1)
+    @GetMapping("/api/v7/orders")
+    public CursorResult<OrderViewDto> ordersV7(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "100") @Min(1) @Max(MAX_LIMIT) int limit) {
+        List<OrderViewDto> orders = orderViewRepository.findPage(OrderCursor.decode(cursor), limit);
+        return CursorResult.of(orders, limit, o -> OrderCursor.of(o.getOrderDate(), o.getOrderId()));
+    }
+
+
+    //@Validated 파라미터 검증 실패(limit 범위 등)는 400, 기본 처리로 두면 500이 됨
+    @ExceptionHandler(ConstraintViolationException.class)
+    public void badRequest(ConstraintViolationException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+    }
+
+    //여러 상품 주문: 상품마다 따로 호출하지 않고 한 트랜잭션에서 처리
+    @PostMapping("/api/v2/orders")
+    public CreateOrderResponse saveOrderV2(@RequestBody @Valid CreateOrderRequest request) {
+        List<OrderLine> lines = request.getLines().stream()
+                .map(l -> new OrderLine(l.getItemId(), l.getCount()))
                 .collect(toList());
+        Long orderId = orderService.order(request.getMemberId(), lines);
+        return new CreateOrderResponse(orderId);
+    }
+
+    @Data
+    static class CreateOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotEmpty
+        @Valid
+        private List<OrderLineRequest> lines;
+    }
+
+    @Data
+    static class OrderLineRequest {
+        @NotNull
+        private Long itemId;
+        @Positive
+        private int count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateOrderResponse {
+        private Long orderId;
     }
 
 
@@ -157,6 +326,23 @@ public class OrderApiController {
     //항상 그런 것은 아니지만 보통 성능 최적화는 단순한 코드를 복잡한 코드로 몰고 간다.
     //엔티티 조회 방식은 JPA가 많은 부분을 최적화 해주기 때문에, 단순한 코드를 유지하면서 성능을 최적화할 수 있다.
 
+    //next: 다음 페이지 요청 시 cursor로 넘길 토큰, 마지막 페이지면 null
+    @Data
+    @AllArgsConstructor
+    static class CursorResult<T> {
+        private int count;
+        private String next;
+        private List<T> data;
+
+        static <T> CursorResult<T> of(List<T> data, int limit, Function<T, OrderCursor> toCursor) {
+            String next = null;
+            if (!data.isEmpty() && data.size() >= limit) {
+                next = toCursor.apply(data.get(data.size() - 1)).encode();
+            }
+            return new CursorResult<>(data.size(), next, data);
+        }
+    }
+
     @Getter
     static class OrderDto {
         private Long orderId;
@@ -0,0 +1,99 @@
+package jpabook.jpashop.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.cache.CompletedOrderJsonCache;
+import jpabook.jpashop.cache.DataVersions;
+import jpabook.jpashop.datasource.ReplicaRoutingDataSource;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 전체 주문(OrderQueryDto)을 JSON 배열로 씀. 끝난 주문은 CompletedOrderJsonCache의 byte를 그대로 사용
+ * 1. 주문 id만 조회(id 순)
+ * 2. WINDOW_SIZE개씩 캐시에서 찾고, 없는 주문만 MISS_CHUNK_SIZE개씩 in 절로 조회해서 직렬화
+ *    (진행 중인 주문이 여기저기 섞여 있으므로 창을 크게 잡아야 조회 횟수가 줄어듦, 대신 창 크기만큼 JSON을 모아서 씀)
+ * 3. 그중 끝난 주문(배송 완료, 취소)은 캐시에 저장
+ * -> 과거 주문은 대부분 끝난 상태이므로 조회는 주문 id 1번 + 진행 중인 최근 주문 정도로 줄어듦
+ * replica를 쓰는 경우 id 조회는 replica, 캐시에 저장될 수 있는 주문 조회는 primary(generation과 맞는 이름을 읽도록)
+ * (@VersionETag가 붙은 /api/v5/orders는 VersionETagInterceptor가 요청 전체를 primary로 고정하므로 id도 primary에서 읽음)
+ */
+@Component
+@RequiredArgsConstructor
+class OrderJsonWriter {
+
+    private static final int WINDOW_SIZE = 5_000;
+    private static final int MISS_CHUNK_SIZE = 500;
+
+    private final OrderQueryRepository orderQueryRepository;
+    private final CompletedOrderJsonCache completedOrderJsonCache;
+    private final DataVersions dataVersions;
+    private final ObjectMapper objectMapper;
+
+    public void writeAll(OutputStream out) throws IOException {
+        List<Long> orderIds = orderQueryRepository.findOrderIds();
+        out.write('[');
+        boolean first = true;
+        for (int from = 0; from < orderIds.size(); from += WINDOW_SIZE) {
+            List<Long> window = orderIds.subList(from, Math.min(from + WINDOW_SIZE, orderIds.size()));
+            for (byte[] json : toJson(window)) {
+                if (!first) {
+                    out.write(',');
+                }
+                out.write(json);
+                first = false;
+            }
+        }
+        out.write(']');
+    }
+
+    private List<byte[]> toJson(List<Long> orderIds) throws IOException {
+        //응답에 들어가는 회원 이름, 상품 이름의 버전. 조회 전에 읽어야 조회 중에 바뀐 이름이 새 버전으로 저장되지 않음
+        long generation = dataVersions.current(DataVersions.Kind.MEMBER) + dataVersions.current(DataVersions.Kind.ITEM);
+        byte[][] result = new byte[orderIds.size()][];
+        Map<Long, Integer> positions = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (int i = 0; i < orderIds.size(); i++) {
+            result[i] = completedOrderJsonCache.get(orderIds.get(i), generation);
+            if (result[i] == null) {
+                positions.put(orderIds.get(i), i);
+                misses.add(orderIds.get(i));
+            }
+        }
+        for (int from = 0; from < misses.size(); from += MISS_CHUNK_SIZE) {
+            List<Long> chunk = misses.subList(from, Math.min(from + MISS_CHUNK_SIZE, misses.size()));
+            List<OrderQueryDto> orders = ReplicaRoutingDataSource.readFromPrimary(
+                    () -> orderQueryRepository.findAllByDto_optimization(chunk));
+            for (OrderQueryDto order : orders) {
+                byte[] json = objectMapper.writeValueAsBytes(order);
+                result[positions.get(order.getOrderId())] = json;
+                if (isFinished(order)) {
+                    completedOrderJsonCache.put(order.getOrderId(), json, generation);
+                }
+            }
+        }
+        //id 조회 후 삭제된 주문은 건너뜀
+        List<byte[]> jsons = new ArrayList<>(result.length);
+        for (byte[] json : result) {
+            if (json != null) {
+                jsons.add(json);
+            }
+        }
+        return jsons;
+    }
+
+    //더 이상 바뀌지 않는 주문: 배송 완료(취소 불가) 또는 이미 취소됨(되돌리는 기능 없음)
+    private static boolean isFinished(OrderQueryDto order) {
+        return order.getDeliveryStatus() == DeliveryStatus.COMP || order.getOrderStatus() == OrderStatus.CANCEL;
+    }
+}
@@ -3,6 +3,7 @@ package jpabook.jpashop.api;
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.monitor.SqlBudget;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
@@ -34,6 +35,7 @@ public class OrderSimpleApiController {
     //양방향 연관관계가 있다면 둘 중 하나는 jsonignore 해줘야 함
 
     //하지만 지연 로딩의 경우 별도의 문제가 발생 -> hibernate5Module를 사용하여 LAZY는 제외
+    @SqlBudget(10) //N+1: 주문마다 회원, 배송 조회
     @GetMapping("/api/v1/simple-orders")
     public List<Order> ordersV1() {
         List<Order> all = orderRepository.findAllByString(new OrderSearch());
@@ -53,6 +55,7 @@ public class OrderSimpleApiController {
     //ORDER -> SQL 1번 실행 -> 결과 주문수 2개: ORDER, MEMBER, DELIVERY, MEMBER, DELIVERY 총 5 - N+1 문제
     //N+1 문제가 실무에서 문제의 90% 이상을 차지함
     //지연 로딩은 영속성 컨텍스트에서 조회하므로, 이미 조회한 경우 쿼리를 생략
+    @SqlBudget(10) //N+1
     @GetMapping("/api/v2/simple-orders")
     public List<SimpleOrderDto> ordersV2() {
         //ORDER 2개
@@ -71,6 +74,7 @@ public class OrderSimpleApiController {
     //-> 쿼리 한번에 끝남. 패치 조인으로 order -> member, order -> delivery 는 이미 조회된 상태이므로 지연 로딩 X
     //**실무에서 자주 사용함**
     //select 할 때 DB에서 많이 가져옴
+    @SqlBudget(1)
     @GetMapping("/api/v3/simple-orders")
     public List<SimpleOrderDto> ordersV3() {
         List<Order> orders = orderRepository.findAllWithMemberDelivery();
@@ -84,6 +88,7 @@ public class OrderSimpleApiController {
     //select절에서 원하는 것만 고름 -> 최적화 but 생각보다 미비
     //new 명령어를 사용해서 JPQL의 결과를 DTO로 즉시 변환
     //레포지토리 재사용성이 떨어짐, API 스펙에 맞춘 코드가 레포지토리에 들어가는 단점점    @GetMapping("/api/v4/simple-orders")
+    @SqlBudget(1)
     @GetMapping("/api/v4/simple-orders")
     public List<OrderSimpleQueryDto> ordersV4() {
         return orderSimpleQueryRepository.findOrderDtos();
@@ -0,0 +1,188 @@
+package jpabook.jpashop.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 끝난 주문의 응답 JSON(byte[])을 heap 밖(direct buffer)에 보관하는 캐시
+ * 배송 완료(COMP) 후에는 주문 취소도 안 되고, 취소된 주문은 되돌릴 수 없으므로 주문 자체는 바뀌지 않음
+ * -> 조회, DTO 생성, Jackson 직렬화 없이 저장해 둔 byte를 그대로 응답에 씀
+ *
+ * 저장 방식: 고정 크기 버퍼를 원형 로그로 사용 [orderId(8) | length(4) | json]...
+ * - 버퍼가 차면 가장 오래된 기록부터 덮어씀(FIFO), 덮어쓸 기록의 헤더를 읽어서 index에서도 제거
+ * - 쓰기는 한 스레드씩(synchronized), 읽기는 락 없이 복사한 뒤 그 사이에 덮어써지지 않았는지 확인(StampedLock의 낙관적 읽기와 같은 방식)
+ * - heap에는 주문 id -> 위치 index만 남으므로 GC가 JSON byte를 훑지 않음
+ *
+ * 응답에는 회원 이름, 상품 이름도 들어가므로 호출하는 쪽에서 generation(회원/상품 버전)을 같이 넘김
+ * generation이 바뀌면 기존 기록은 모두 무효(다음 저장 시 로그를 비움)
+ */
+@Component
+public class CompletedOrderJsonCache {
+
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final long SKIP = -1L; //버퍼 끝에 남는 자리를 채우는 기록
+
+    private final boolean enabled;
+    private final int capacity;
+    private final ByteBuffer buffer;
+    private final ByteBuffer writeView; //쓰기 전용(synchronized 안에서만 position을 바꿈)
+    private final Map<Long, Entry> index = new ConcurrentHashMap<>();
+
+    //논리 위치(계속 증가), 실제 위치 = 논리 위치 % capacity
+    private long head; //다음에 쓸 위치, synchronized 안에서만 변경
+    private volatile long tail; //가장 오래된 유효 기록, 이보다 앞의 기록은 덮어썼거나 덮어쓰는 중
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CompletedOrderJsonCache(@Value("${jpashop.order-json-cache.enabled:false}") boolean enabled,
+                                   @Value("${jpashop.order-json-cache.capacity-mb:64}") int capacityMb,
+                                   MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.capacity = enabled ? capacityMb * 1024 * 1024 : 0;
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.writeView = buffer.duplicate();
+
+        FunctionCounter.builder("jpashop.order-json-cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("jpashop.order-json-cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("jpashop.order-json-cache.evictions", evictions, LongAdder::sum)
+                .register(meterRegistry);
+        Gauge.builder("jpashop.order-json-cache.entries", index, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("jpashop.order-json-cache.used", this, CompletedOrderJsonCache::usedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 저장된 JSON 사본, 없거나 generation이 다르거나 읽는 중에 덮어써졌으면 null
+     */
+    public byte[] get(Long orderId, long generation) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = index.get(orderId);
+        if (entry == null || entry.generation != generation) {
+            misses.increment();
+            return null;
+        }
+        byte[] json = new byte[entry.length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(physical(entry.position) + HEADER_SIZE);
+        view.get(json);
+        //복사한 뒤에 tail을 다시 확인: 그 사이에 writer가 이 자리를 넘어갔으면 덮어쓴 값일 수 있음
+        VarHandle.loadLoadFence();
+        if (entry.position < tail) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return json;
+    }
+
+    /**
+     * 끝난 주문의 JSON 저장. 버퍼의 1/16보다 큰 JSON은 저장하지 않음
+     * @param generation JSON을 만들기 위해 조회하기 전에 읽은 회원/상품 버전
+     */
+    public synchronized void put(Long orderId, byte[] json, long generation) {
+        int recordSize = HEADER_SIZE + json.length;
+        if (!enabled || recordSize > capacity / 16 || generation < this.generation) {
+            return;
+        }
+        if (generation > this.generation) {
+            //회원/상품 이름이 바뀜 -> 기존 기록은 모두 버림. tail을 head로 옮기면 읽던 스레드도 무효로 판단
+            this.generation = generation;
+            index.clear();
+            advanceTail(head);
+        }
+        int offset = physical(head);
+        if (offset + recordSize > capacity) {
+            //끝에 남은 자리는 건너뛰고 처음부터 씀
+            int remaining = capacity - offset;
+            makeRoom(remaining);
+            if (remaining >= HEADER_SIZE) {
+                writeView.position(offset);
+                writeView.putLong(SKIP).putInt(remaining - HEADER_SIZE);
+            }
+            head += remaining;
+            offset = 0;
+        }
+        makeRoom(recordSize);
+        writeView.position(offset);
+        writeView.putLong(orderId).putInt(json.length).put(json);
+        Entry entry = new Entry(head, json.length, generation);
+        head += recordSize;
+        index.put(orderId, entry);
+    }
+
+    //head부터 size만큼 쓸 수 있도록 오래된 기록을 밀어냄
+    private void makeRoom(int size) {
+        long newTail = tail;
+        while (head + size - newTail > capacity) {
+            int offset = physical(newTail);
+            int remaining = capacity - offset;
+            if (remaining < HEADER_SIZE) {
+                newTail += remaining;
+                continue;
+            }
+            long orderId = writeView.getLong(offset);
+            int length = writeView.getInt(offset + Long.BYTES);
+            if (orderId != SKIP) {
+                //같은 주문이 다시 저장됐으면 새 기록은 남겨둠
+                Entry entry = index.get(orderId);
+                if (entry != null && entry.position == newTail && index.remove(orderId, entry)) {
+                    evictions.increment();
+                }
+            }
+            newTail += HEADER_SIZE + length;
+        }
+        advanceTail(newTail);
+    }
+
+    //tail을 먼저 옮기고 나서 그 자리에 씀, 새로 쓰는 byte가 tail 변경보다 앞서 보이지 않도록 fence
+    private void advanceTail(long newTail) {
+        if (newTail != tail) {
+            tail = newTail;
+            VarHandle.fullFence();
+        }
+    }
+
+    private int physical(long position) {
+        return (int) (position % capacity);
+    }
+
+    private synchronized long usedBytes() {
+        return head - tail;
+    }
+
+    private static final class Entry {
+        private final long position;
+        private final int length;
+        private final long generation;
+
+        private Entry(long position, int length, long generation) {
+            this.position = position;
+            this.length = length;
+            this.generation = generation;
+        }
+    }
+}
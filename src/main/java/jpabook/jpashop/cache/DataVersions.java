@@ -0,0 +1,85 @@
+package jpabook.jpashop.cache;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 데이터 종류별 변경 버전(단일 인스턴스 메모리 카운터)
+ * 쓰기가 일어날 때마다 올리고, 캐시는 만들 때의 버전과 비교해서 다시 만들지 결정
+ * 재시작하면 0부터 다시 시작하므로 밖으로 내보내는 값(ETag)에는 epoch를 같이 붙임
+ */
+@Component
+public class DataVersions {
+
+    public enum Kind {
+        ITEM, //상품 등록/수정(이름, 가격)
+        STOCK, //재고만 변경(주문, 취소). 주문마다 바뀌므로 상품 이름만 쓰는 캐시는 ITEM만 봄
+        MEMBER,
+        ORDER
+    }
+
+    private final Map<Kind, AtomicLong> versions = new EnumMap<>(Kind.class);
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    public DataVersions() {
+        for (Kind kind : Kind.values()) {
+            versions.put(kind, new AtomicLong());
+        }
+    }
+
+    public long current(Kind kind) {
+        return versions.get(kind).get();
+    }
+
+    //이 프로세스가 시작된 시점, 버전 카운터가 언제부터 센 값인지 구분
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * 트랜잭션이 끝난 뒤에 버전을 올림
+     * 커밋 전에 올리면 그 사이에 다른 스레드가 커밋 전 데이터로 캐시를 만들고 새 버전을 붙여버림
+     * 롤백돼도 올림(캐시를 한번 더 만들 뿐 틀린 값을 주지는 않음)
+     */
+    public void bumpAfterCompletion(Kind kind) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            versions.get(kind).incrementAndGet();
+            return;
+        }
+        Set<Kind> pending = pendingKinds();
+        if (pending == null) {
+            Set<Kind> kinds = EnumSet.noneOf(Kind.class);
+            TransactionSynchronizationManager.bindResource(this, kinds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DataVersions.this);
+                    kinds.forEach(k -> versions.get(k).incrementAndGet());
+                }
+            });
+            pending = kinds;
+        }
+        pending.add(kind);
+    }
+
+    /**
+     * 현재 트랜잭션에서 바꾸고 아직 버전을 올리지 않은 데이터인지
+     * 같은 트랜잭션 안에서 목록을 다시 읽으면 캐시 대신 DB를 조회해야 자기가 바꾼 내용이 보임
+     */
+    public boolean isChangedInCurrentTransaction(Kind kind) {
+        Set<Kind> pending = pendingKinds();
+        return pending != null && pending.contains(kind);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Kind> pendingKinds() {
+        return (Set<Kind>) TransactionSynchronizationManager.getResource(this);
+    }
+}
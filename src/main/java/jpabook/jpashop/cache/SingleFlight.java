@@ -0,0 +1,16 @@
+package jpabook.jpashop.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 같은 인자로 동시에 들어온 호출은 먼저 온 호출 하나만 실행하고 나머지는 그 결과를 같이 받음(SingleFlightAspect)
+ * 실행이 끝나면 바로 잊어버림 -> 결과를 저장하는 캐시가 아니므로 끝난 뒤에 온 호출은 다시 실행
+ * 인자는 equals/hashCode로 비교. 결과 객체를 여러 호출자가 같이 쓰므로 읽기 전용 조회에만 사용
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SingleFlight {
+}
@@ -0,0 +1,137 @@
+package jpabook.jpashop.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @SingleFlight 처리: (메서드, 인자) 별로 실행 중인 호출을 하나만 유지
+ * - 트랜잭션보다 바깥에서 실행(@Order) -> 기다리는 호출은 트랜잭션도 커넥션도 잡지 않음
+ * - 쓰기 트랜잭션 안에서 호출하면 합치지 않음(자기가 바꾼 데이터를 봐야 하므로)
+ * - 실행한 스레드가 같은 호출을 다시 하면(재귀) 기다리지 않고 그냥 실행
+ * - 먼저 온 호출이 jpashop.single-flight.wait-timeout-ms 안에 끝나지 않으면 기다리던 호출은 직접 실행
+ *   (느린 쿼리 하나에 요청 스레드가 전부 묶이지 않도록)
+ *
+ * 메트릭: jpashop.single-flight.calls (method, result=executed|shared|timeout), jpashop.single-flight.in-flight
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SingleFlightAspect {
+
+    private final Map<Key, Flight> flights = new ConcurrentHashMap<>();
+    private final Map<String, Counter[]> counters = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final long waitTimeoutMillis;
+
+    public SingleFlightAspect(MeterRegistry meterRegistry,
+                              @Value("${jpashop.single-flight.wait-timeout-ms:5000}") long waitTimeoutMillis) {
+        this.meterRegistry = meterRegistry;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        Gauge.builder("jpashop.single-flight.in-flight", flights, Map::size)
+                .register(meterRegistry);
+    }
+
+    @Around("@annotation(jpabook.jpashop.cache.SingleFlight)")
+    public Object coalesce(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return joinPoint.proceed();
+        }
+        Method target = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Key key = new Key(target, Arrays.asList(joinPoint.getArgs()));
+        String method = target.getDeclaringClass().getSimpleName() + "." + target.getName();
+        Flight flight = new Flight();
+        Flight running = flights.putIfAbsent(key, flight);
+        if (running != null && running.leader != Thread.currentThread()) {
+            try {
+                Object result = running.result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+                counters(method)[1].increment();
+                return result;
+            } catch (ExecutionException e) {
+                counters(method)[1].increment();
+                throw e.getCause(); //실행한 호출과 같은 예외
+            } catch (TimeoutException e) {
+                counters(method)[2].increment();
+                return joinPoint.proceed();
+            }
+        }
+        if (running != null) {
+            return joinPoint.proceed();
+        }
+
+        counters(method)[0].increment();
+        try {
+            Object result = joinPoint.proceed();
+            //결과를 넘기기 전에 먼저 제거: 끝난 뒤에 들어온 호출이 이전 결과를 받지 않도록
+            flights.remove(key, flight);
+            flight.result.complete(result);
+            return result;
+        } catch (Throwable e) {
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Counter[] counters(String method) {
+        return counters.computeIfAbsent(method, m -> new Counter[]{
+                Counter.builder("jpashop.single-flight.calls").tag("method", m).tag("result", "executed").register(meterRegistry),
+                Counter.builder("jpashop.single-flight.calls").tag("method", m).tag("result", "shared").register(meterRegistry),
+                Counter.builder("jpashop.single-flight.calls").tag("method", m).tag("result", "timeout").register(meterRegistry)
+        });
+    }
+
+    private static final class Flight {
+        private final Thread leader = Thread.currentThread();
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+    }
+
+    private static final class Key {
+        private final Method method;
+        private final List<Object> args;
+        private final int hash;
+
+        private Key(Method method, List<Object> args) {
+            this.method = method;
+            this.args = args;
+            this.hash = 31 * method.hashCode() + args.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return method.equals(other.method) && args.equals(other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
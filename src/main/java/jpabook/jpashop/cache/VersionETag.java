@@ -0,0 +1,24 @@
+package jpabook.jpashop.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 응답 body 대신 DataVersions의 버전으로 ETag를 만드는 GET API
+ * If-None-Match가 현재 ETag와 같으면 컨트롤러를 실행하지 않고(조회 쿼리 없이) 304를 반환
+ * 응답에 담기는 데이터가 바뀌는 종류를 모두 적어야 함 (ex 주문 응답의 회원 이름 -> MEMBER)
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionETag {
+
+    DataVersions.Kind[] value();
+
+    /**
+     * Cache-Control 헤더, ${...}로 설정 값을 사용할 수 있음. 비어 있으면 헤더를 붙이지 않음
+     * 기본값 no-cache: 브라우저/프록시가 저장은 하되 매번 ETag로 재검증
+     */
+    String cacheControl() default "no-cache";
+}
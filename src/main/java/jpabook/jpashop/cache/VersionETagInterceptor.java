@@ -0,0 +1,78 @@
+package jpabook.jpashop.cache;
+
+import jpabook.jpashop.datasource.ReplicaRoutingDataSource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @VersionETag가 붙은 API의 조건부 GET 처리
+ * ETag = "epoch-버전1.버전2..." : body를 만들어서 해시하지 않으므로 304일 때는 조회도 직렬화도 하지 않음
+ * 버전은 조회 전에 읽음 -> 조회 중에 변경이 커밋되면 새 데이터에 이전 ETag가 붙고, 다음 요청에서 다시 받아감
+ * 버전은 primary에 커밋된 뒤에 바뀌므로 304가 아니면 요청이 끝날 때까지 읽기를 primary로 고정
+ * (replica에서 읽으면 복제가 늦을 때 이전 데이터에 새 ETag가 붙고, 다른 변경이 있을 때까지 계속 304가 나감)
+ */
+@Component
+@RequiredArgsConstructor
+public class VersionETagInterceptor implements HandlerInterceptor {
+
+    private static final String PINNED = VersionETagInterceptor.class.getName() + ".PINNED";
+
+    private final DataVersions dataVersions;
+    private final Environment environment;
+    private final Map<Method, String> cacheControls = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        VersionETag versionETag = ((HandlerMethod) handler).getMethodAnnotation(VersionETag.class);
+        if (versionETag == null) {
+            return true;
+        }
+        String cacheControl = cacheControls.computeIfAbsent(((HandlerMethod) handler).getMethod(),
+                method -> environment.resolvePlaceholders(versionETag.cacheControl()));
+        if (StringUtils.hasText(cacheControl)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        }
+        //GET, HEAD에서만 ETag 헤더를 붙이고, If-None-Match가 같으면 304로 응답하고 true 반환
+        if (new ServletWebRequest(request, response).checkNotModified(etag(versionETag.value()))) {
+            return false;
+        }
+        if (ReplicaRoutingDataSource.pinToPrimary()) {
+            request.setAttribute(PINNED, Boolean.TRUE);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PINNED) != null) {
+            request.removeAttribute(PINNED);
+            ReplicaRoutingDataSource.unpin();
+        }
+    }
+
+    private String etag(DataVersions.Kind[] kinds) {
+        StringBuilder etag = new StringBuilder("\"").append(dataVersions.getEpoch()).append('-');
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0) {
+                etag.append('.');
+            }
+            etag.append(dataVersions.current(kinds[i]));
+        }
+        return etag.append('"').toString();
+    }
+}
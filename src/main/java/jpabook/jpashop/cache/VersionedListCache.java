@@ -0,0 +1,92 @@
+package jpabook.jpashop.cache;
+
+import jpabook.jpashop.datasource.ReplicaRoutingDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 목록 전체를 불변 스냅샷으로 들고 있는 캐시(copy-on-write)
+ * 버전이 바뀌면 목록을 새로 만들어서 참조만 교체, 기존 스냅샷을 읽던 스레드는 그대로 읽음
+ * 목록은 한 번에 한 스레드만 만듦
+ * - 다시 만드는 중이면 다른 스레드는 기다리지 않고 이전 스냅샷을 반환(최대 한 번 만드는 시간만큼 이전 목록이 보일 수 있음)
+ * - 스냅샷이 아직 없으면(시작 직후) 만드는 스레드를 기다렸다가 그 결과를 같이 사용, 예외도 같이 받음
+ *   WAIT_TIMEOUT_MILLIS 안에 끝나지 않으면 직접 조회
+ * 목록은 여러 스레드가 같이 쓰므로 불변 DTO만 담을 것(엔티티는 조회한 영속성 컨텍스트에 묶여 있어 캐싱하면 안됨)
+ * 버전은 primary에 커밋된 뒤에 바뀌므로 목록은 primary에서 조회(replica의 이전 목록이 새 버전으로 저장되지 않도록)
+ */
+public class VersionedListCache<T> {
+
+    private static final long WAIT_TIMEOUT_MILLIS = 5_000;
+
+    private final AtomicReference<Snapshot<T>> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<List<T>>> loading = new AtomicReference<>();
+
+    /**
+     * @param current 조회 전에 읽은 현재 버전. 조회 중에 버전이 바뀌면 이 스냅샷은 다음 조회에서 다시 만들어짐
+     */
+    public List<T> get(long current, Supplier<List<T>> loader) {
+        Snapshot<T> cached = snapshot.get();
+        if (cached != null && cached.version == current) {
+            return cached.list;
+        }
+        CompletableFuture<List<T>> mine = new CompletableFuture<>();
+        CompletableFuture<List<T>> running = loading.compareAndExchange(null, mine);
+        if (running != null) {
+            return cached != null ? cached.list : await(running, current, loader);
+        }
+        try {
+            List<T> list = load(current, loader);
+            mine.complete(list);
+            return list;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.set(null);
+        }
+    }
+
+    private List<T> await(CompletableFuture<List<T>> running, long current, Supplier<List<T>> loader) {
+        try {
+            return running.get(WAIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return load(current, loader);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("목록 조회를 기다리는 중 중단되었습니다.", e);
+        }
+    }
+
+    private List<T> load(long current, Supplier<List<T>> loader) {
+        List<T> list = Collections.unmodifiableList(new ArrayList<>(ReplicaRoutingDataSource.readFromPrimary(loader)));
+        Snapshot<T> fresh = new Snapshot<>(current, list);
+        snapshot.accumulateAndGet(fresh, (prev, next) -> prev == null || next.version >= prev.version ? next : prev);
+        return list;
+    }
+
+    private static class Snapshot<T> {
+        private final long version;
+        private final List<T> list;
+
+        private Snapshot(long version, List<T> list) {
+            this.version = version;
+            this.list = list;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package jpabook.jpashop.controller;
 
 import jpabook.jpashop.domain.Item.Book;
-import jpabook.jpashop.domain.Item.Item;
+import jpabook.jpashop.repository.ItemListDto;
 import jpabook.jpashop.service.ItemService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -40,7 +40,7 @@ public class ItemController {
 
     @GetMapping("/items")
     public String list(Model model) {
-        List<Item> items = itemService.findItems();
+        List<ItemListDto> items = itemService.findItems();
         model.addAttribute("items", items);
         return "items/itemList";
     }
@@ -1,8 +1,8 @@
 package jpabook.jpashop.controller;
 
-import jpabook.jpashop.domain.Item.Item;
-import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.repository.ItemListDto;
+import jpabook.jpashop.repository.MemberListDto;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.service.ItemService;
 import jpabook.jpashop.service.MemberService;
@@ -24,8 +24,8 @@ public class OrderController {
 
     @GetMapping("/order")
     public String createForm(Model model) {
-        List<Member> members = memberService.findMembers();
-        List<Item> items = itemService.findItems();
+        List<MemberListDto> members = memberService.findMembers();
+        List<ItemListDto> items = itemService.findItems();
 
         model.addAttribute("members", members);
         model.addAttribute("items", items);
@@ -0,0 +1,73 @@
+package jpabook.jpashop.datasource;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 현재 사용자(요청)의 마지막 쓰기 시각
+ * replica는 primary보다 늦게 반영되므로(복제 지연) 방금 쓴 사용자가 replica에서 읽으면 자기가 쓴 데이터가 안 보일 수 있음
+ * -> ReplicaRoutingDataSource는 마지막 쓰기 후 window 동안 읽기 전용 트랜잭션도 primary로 보냄
+ *
+ * 요청 단위: ReadYourWritesFilter가 쿠키에 남긴 마지막 쓰기 시각으로 시작하고, 쓰기 트랜잭션이 커밋되면 쿠키를 갱신
+ * -> 주문 후 redirect된 목록 조회처럼 다음 요청에도 이어짐
+ * 요청 밖(스케줄러, 테스트)에서는 스레드 단위로 기록
+ */
+public class ReadYourWrites {
+
+    private static final ThreadLocal<ReadYourWrites> CURRENT = new ThreadLocal<>();
+
+    private long lastWriteMillis;
+    private final LongConsumer onCommit; //null이면 기록만
+
+    private ReadYourWrites(long lastWriteMillis, LongConsumer onCommit) {
+        this.lastWriteMillis = lastWriteMillis;
+        this.onCommit = onCommit;
+    }
+
+    /**
+     * @param lastWriteMillis 이전 요청에서 마지막으로 쓴 시각(없으면 0)
+     * @param onCommit 쓰기 트랜잭션이 커밋될 때 커밋 시각을 받음(쿠키 갱신)
+     */
+    public static void start(long lastWriteMillis, LongConsumer onCommit) {
+        CURRENT.set(new ReadYourWrites(lastWriteMillis, onCommit));
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 마지막 쓰기 후 windowMillis가 지나지 않았으면 true
+     * 쿠키 값은 클라이언트가 바꿀 수 있으므로 미래 시각은 무시
+     */
+    static boolean isRecent(long nowMillis, long windowMillis) {
+        ReadYourWrites current = CURRENT.get();
+        if (current == null) {
+            return false;
+        }
+        long elapsed = nowMillis - current.lastWriteMillis;
+        return elapsed >= 0 && elapsed < windowMillis;
+    }
+
+    //쓰기 트랜잭션이 커넥션을 얻을 때: 같은 요청의 이후 읽기를 primary로
+    static void writing(long nowMillis) {
+        current().lastWriteMillis = nowMillis;
+    }
+
+    //커밋 시각부터 window를 다시 셈(트랜잭션이 길었던 경우)
+    static void committed(long nowMillis) {
+        ReadYourWrites current = current();
+        current.lastWriteMillis = nowMillis;
+        if (current.onCommit != null) {
+            current.onCommit.accept(nowMillis);
+        }
+    }
+
+    private static ReadYourWrites current() {
+        ReadYourWrites current = CURRENT.get();
+        if (current == null) {
+            current = new ReadYourWrites(0L, null);
+            CURRENT.set(current);
+        }
+        return current;
+    }
+}
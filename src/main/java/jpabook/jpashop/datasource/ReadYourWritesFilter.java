@@ -0,0 +1,66 @@
+package jpabook.jpashop.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 요청마다 쿠키의 마지막 쓰기 시각으로 ReadYourWrites를 시작
+ * 쓰기 트랜잭션이 커밋되면 쿠키를 새 시각으로 갱신(window 동안만 유지)
+ * 커밋은 보통 view 렌더링이나 redirect 전이므로 응답이 아직 commit 되지 않았을 때 쿠키를 붙일 수 있음
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE_NAME = "jpashop-last-write";
+
+    private final long windowMillis;
+
+    public ReadYourWritesFilter(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReadYourWrites.start(lastWriteMillis(request), committedMillis -> {
+            if (!response.isCommitted()) {
+                response.addCookie(cookie(committedMillis));
+            }
+        });
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.stop();
+        }
+    }
+
+    private Cookie cookie(long committedMillis) {
+        Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(committedMillis));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (windowMillis + 999) / 1000));
+        return cookie;
+    }
+
+    private static long lastWriteMillis(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0L;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0L;
+                }
+            }
+        }
+        return 0L;
+    }
+}
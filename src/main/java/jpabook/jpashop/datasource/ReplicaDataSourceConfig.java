@@ -0,0 +1,136 @@
+package jpabook.jpashop.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * jpashop.replica.enabled=true 일 때 기본 DataSource 대신 primary + replica 라우팅 DataSource를 등록
+ * LazyConnectionDataSourceProxy -> p6spy -> ReplicaRoutingDataSource -> primary / replica-N (각각 Hikari 풀)
+ * 풀 메트릭은 hikaricp.connections{pool=primary|replica-N}
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "jpashop.replica", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaSettings.class)
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, ReplicaSettings settings, Environment environment) {
+        if (settings.getDatasources().isEmpty()) {
+            throw new IllegalStateException("jpashop.replica.datasources가 비어 있습니다.");
+        }
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (ReplicaSettings.Replica setting : settings.getDatasources()) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(setting.getUrl())
+                    .username(setting.getUsername())
+                    .password(setting.getPassword())
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setMaximumPoolSize(setting.getMaximumPoolSize());
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+
+        return new ReplicaRoutingDataSource(primary, replicas, settings.getReadYourWritesWindowMs());
+    }
+
+    /**
+     * p6spy가 감싼 DataSource를 다시 LazyConnectionDataSourceProxy로 감쌈
+     * p6spy는 커넥션을 얻자마자 getMetaData()를 호출하므로 p6spy보다 바깥에 있어야 첫 SQL까지 커넥션 선택이 미뤄짐
+     * (p6spy의 DataSourceDecoratorBeanPostProcessor는 LOWEST_PRECEDENCE - 20, 이것은 그 다음에 실행)
+     */
+    @Bean
+    public static BeanPostProcessor lazyRoutingDataSourcePostProcessor() {
+        return new LazyRoutingDataSourcePostProcessor();
+    }
+
+    //라우팅 메트릭과 풀별 Hikari 메트릭, 감싼 DataSource(LazyConnectionDataSourceProxy, p6spy)에서 꺼내서 등록
+    @Bean
+    public MeterBinder replicaDataSourceMetrics(DataSource dataSource) {
+        return registry -> {
+            ReplicaRoutingDataSource routing;
+            try {
+                routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            routing.bindTo(registry);
+            MicrometerMetricsTrackerFactory hikariMetrics = new MicrometerMetricsTrackerFactory(registry);
+            for (DataSource target : routing.getResolvedDataSources().values()) {
+                HikariDataSource pool = (HikariDataSource) target;
+                if (pool.getMetricsTrackerFactory() == null) { //primary는 boot가 이미 등록했을 수 있음
+                    pool.setMetricsTrackerFactory(hikariMetrics);
+                }
+            }
+        };
+    }
+
+    /**
+     * 기본 설정(DELAYED_ACQUISITION_AND_HOLD)은 OSIV에서 요청이 끝날 때까지 처음 얻은 커넥션을 계속 씀
+     * -> 읽기 전용 트랜잭션이 replica 커넥션을 얻은 뒤 같은 요청의 쓰기 트랜잭션이 replica에 쓰게 됨
+     * 트랜잭션이 끝나면 커넥션을 반납해서 트랜잭션마다 다시 고르도록 함
+     */
+    @Bean
+    public HibernatePropertiesCustomizer replicaConnectionHandling() {
+        return properties -> properties.put("hibernate.connection.handling_mode",
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    private static class LazyRoutingDataSourcePostProcessor implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (!(bean instanceof DataSource) || bean instanceof LazyConnectionDataSourceProxy) {
+                return bean;
+            }
+            try {
+                if (!((DataSource) bean).isWrapperFor(ReplicaRoutingDataSource.class)) {
+                    return bean;
+                }
+            } catch (SQLException e) {
+                return bean;
+            }
+            return new LazyConnectionDataSourceProxy((DataSource) bean);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReplicaSettings settings) {
+        return new FilterRegistrationBean<>(new ReadYourWritesFilter(settings.getReadYourWritesWindowMs()));
+    }
+}
@@ -0,0 +1,168 @@
+package jpabook.jpashop.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 replica, 나머지는 primary로 보내는 DataSource
+ * - replica가 여러 개면 커넥션을 얻을 때마다 돌아가며 사용(round robin)
+ * - 쓰기 직후(ReadYourWrites window 안)의 읽기는 primary에서: 복제 지연 때문에 자기가 쓴 데이터가 안 보이는 문제 방지
+ * - 트랜잭션 밖의 조회(OSIV 지연 로딩, JdbcTemplate 등)는 쓰기인지 알 수 없으므로 primary
+ * - replica에서 커넥션을 못 얻으면 primary로 대신 읽음
+ *
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 TransactionSynchronizationManager에 없으므로
+ * 반드시 LazyConnectionDataSourceProxy로 감싸서 첫 SQL을 실행할 때 커넥션을 고르도록 해야 함
+ *
+ * 메트릭 jpashop.datasource.routing{target=primary|replica, reason=write|no-transaction|read-your-writes|pinned|read|fallback}
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder {
+
+    static final String PRIMARY = "primary";
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final long readYourWritesWindowMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder nonTransactional = new LongAdder();
+    private final LongAdder readYourWrites = new LongAdder();
+    private final LongAdder pinned = new LongAdder();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, long readYourWritesWindowMillis) {
+        this.primary = primary;
+        this.readYourWritesWindowMillis = readYourWritesWindowMillis;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = "replica-" + i;
+            replicaKeys.add(key);
+            targets.put(key, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    //DataSource가 MeterRegistry보다 먼저 만들어지므로(registry를 만들 때 JPA 메트릭이 DataSource를 사용) 나중에 등록
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, writes, PRIMARY, "write");
+        counter(registry, nonTransactional, PRIMARY, "no-transaction");
+        counter(registry, readYourWrites, PRIMARY, "read-your-writes");
+        counter(registry, pinned, PRIMARY, "pinned");
+        counter(registry, replicaReads, "replica", "read");
+        counter(registry, fallbacks, PRIMARY, "fallback");
+    }
+
+    /**
+     * 읽기 전용 트랜잭션이어도 primary에서 읽음
+     * 읽은 결과를 primary 기준 버전(DataVersions)과 함께 캐시에 저장할 때 사용: replica의 이전 데이터가 새 버전으로 저장되지 않도록
+     * 이미 커넥션을 얻은 트랜잭션 안에서는 효과 없음
+     */
+    public static <T> T readFromPrimary(Supplier<T> action) {
+        if (!pinToPrimary()) {
+            return action.get();
+        }
+        try {
+            return action.get();
+        } finally {
+            unpin();
+        }
+    }
+
+    /**
+     * 지금부터 이 스레드의 읽기를 primary로 고정. 메서드 하나로 감쌀 수 없을 때(요청 전체 등) 사용
+     * @return 이번 호출로 고정했으면 true, 이미 고정되어 있었으면 false. true일 때만 unpin()을 호출할 것
+     */
+    public static boolean pinToPrimary() {
+        if (PINNED.get() != null) {
+            return false;
+        }
+        PINNED.set(Boolean.TRUE);
+        return true;
+    }
+
+    public static void unpin() {
+        PINNED.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                markWrite();
+                writes.increment();
+            } else {
+                nonTransactional.increment();
+            }
+            return PRIMARY;
+        }
+        if (PINNED.get() != null) {
+            pinned.increment();
+            return PRIMARY;
+        }
+        if (ReadYourWrites.isRecent(System.currentTimeMillis(), readYourWritesWindowMillis)) {
+            readYourWrites.increment();
+            return PRIMARY;
+        }
+        replicaReads.increment();
+        return replicaKeys.get(Math.floorMod(next.getAndIncrement(), replicaKeys.size()));
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        DataSource target = getResolvedDataSources().get(key);
+        try {
+            return target.getConnection();
+        } catch (SQLException e) {
+            if (PRIMARY.equals(key)) {
+                throw e;
+            }
+            log.warn("{}에서 커넥션을 얻지 못해 primary에서 읽음: {}", key, e.getMessage());
+            fallbacks.increment();
+            return primary.getConnection();
+        }
+    }
+
+    //쓰기 트랜잭션: 지금부터 같은 요청의 읽기는 primary, 커밋되면 커밋 시각으로 갱신
+    private static void markWrite() {
+        ReadYourWrites.writing(System.currentTimeMillis());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ReadYourWrites.committed(System.currentTimeMillis());
+                }
+            });
+        }
+    }
+
+    private static void counter(MeterRegistry registry, LongAdder count, String target, String reason) {
+        FunctionCounter.builder("jpashop.datasource.routing", count, LongAdder::sum)
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,32 @@
+package jpabook.jpashop.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 읽기 replica 설정(jpashop.replica.*)
+ * primary는 기존 spring.datasource.* (풀 설정은 spring.datasource.hikari.*)
+ */
+@ConfigurationProperties(prefix = "jpashop.replica")
+@Getter @Setter
+public class ReplicaSettings {
+
+    private boolean enabled = false;
+
+    //쓰기 후 이 시간 동안은 같은 사용자의 읽기도 primary에서, replica의 최대 복제 지연보다 길게 잡을 것
+    private long readYourWritesWindowMs = 2_000;
+
+    private List<Replica> datasources = new ArrayList<>();
+
+    @Getter @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
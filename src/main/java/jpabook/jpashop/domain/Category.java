@@ -3,6 +3,11 @@ package jpabook.jpashop.domain;
 import jpabook.jpashop.domain.Item.Item;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -11,15 +16,21 @@ import java.util.List;
 import static javax.persistence.FetchType.*;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter @Setter
 public class Category {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "category_seq")
+    @GenericGenerator(name = "category_seq", strategy = PooledLoSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "category_seq"))
     @Column(name = "category_id")
     private Long id;
 
     private String name;
 
+    //컬렉션 캐시에는 상품 id만 저장, 상품 자체는 Item 캐시에서 조회
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @ManyToMany
     @JoinTable(name = "category_item",
         joinColumns = @JoinColumn(name = "category_id"),
@@ -30,6 +41,7 @@ public class Category {
     @JoinColumn(name = "parent_id")
     private Category parent;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(mappedBy = "parent")
     private List<Category> child = new ArrayList<>();
 
@@ -1,9 +1,14 @@
 package jpabook.jpashop.domain.Item;
 
 import jpabook.jpashop.domain.Category;
-import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.domain.PooledLoSequenceGenerator;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -12,10 +17,13 @@ import java.util.List;
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE) //2차 캐시, 하위 타입(Book, Album, Movie)도 같은 영역 사용
 @Getter @Setter
 public abstract class Item {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "item_seq")
+    @GenericGenerator(name = "item_seq", strategy = PooledLoSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "item_seq"))
     @Column(name = "item_id")
     private Long id;
 
@@ -26,23 +34,6 @@ public abstract class Item {
     @ManyToMany(mappedBy = "items")
     private List<Category> categories = new ArrayList<>();
 
-    //==비즈니스 로직==//
-
-    /**
-     * stock 증가
-     */
-    public void addStock(int quantity){
-        this.stockQuantity += quantity;
-    }
-
-    /**
-     * stock 감소
-     */
-    public void removeStock(int quantity){
-        int restStock = this.stockQuantity - quantity;
-        if(restStock < 0){
-            throw new NotEnoughStockException("need more stock");
-        }
-        this.stockQuantity = restStock;
-    }
+    //재고 변경은 엔티티에서 하지 않음(읽고 고치면 동시 주문에서 갱신 분실)
+    //ItemRepository.removeStock/addStock의 조건부 update 한 곳에서만 처리
 }
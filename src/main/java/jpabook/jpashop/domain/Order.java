@@ -4,6 +4,9 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -13,11 +16,17 @@ import java.util.List;
 import static javax.persistence.FetchType.*;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_order_date_id", columnList = "orderDate, order_id"), //키셋 페이징
+        @Index(name = "idx_orders_status", columnList = "status") //주문 상태 검색
+})
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Order {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "order_seq")
+    @GenericGenerator(name = "order_seq", strategy = PooledLoSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "orders_seq"))
     @Column(name = "order_id")
     private Long id;
 
@@ -78,6 +87,23 @@ public class Order {
         return order;
     }
 
+    //샤딩 모드에서 shard의 row로, 보관 주문 포함 검색에서 보관 테이블의 row로 다시 만들 때 사용(ShardedOrderStore, OrderArchive)
+    //setMember()는 회원의 주문 컬렉션까지 조회하게 되므로 연관관계 편의 메서드 대신 필드만 채움
+    public static Order restore(Long id, Member member, Delivery delivery, LocalDateTime orderDate,
+                                OrderStatus status, List<OrderItem> orderItems) {
+        Order order = new Order();
+        order.id = id;
+        order.member = member;
+        order.delivery = delivery;
+        delivery.setOrder(order);
+        for (OrderItem orderItem : orderItems) {
+            order.addOrderItem(orderItem);
+        }
+        order.orderDate = orderDate;
+        order.status = status;
+        return order;
+    }
+
     //==비즈니스 로직==//
     /**
      * 주문 취소
@@ -87,9 +113,7 @@ public class Order {
             throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
         }
         this.setStatus(OrderStatus.CANCEL);
-        for (OrderItem orderItem : orderItems) {
-            orderItem.cancel();
-        }
+        //재고 복구는 OrderService에서 ItemRepository.addStock(조건부 update)으로 처리
     }
 
     //==조회 로직==//
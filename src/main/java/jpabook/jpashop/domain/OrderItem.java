@@ -6,16 +6,23 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 
 import static javax.persistence.FetchType.*;
 
 @Entity
+@Table(indexes = @Index(name = "idx_order_item_order_id", columnList = "order_id")) //주문별 주문상품 조회(in 절, batch fetch)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class OrderItem {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "order_item_seq")
+    @GenericGenerator(name = "order_item_seq", strategy = PooledLoSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "order_item_seq"))
     @Column(name = "order_item_id")
     private Long id;
 
@@ -38,21 +45,16 @@ public class OrderItem {
 //    }
 
     //==생성 메서드==//
+    //재고 차감은 엔티티에서 하지 않음: ItemRepository.removeStock(조건부 update)으로 처리
+    //메모리에서 차감하면 변경감지로 재고 값을 통째로 덮어써서 동시 주문 시 lost update가 발생
     public static OrderItem createOrderItem(Item item, int orderPrice, int count) {
         OrderItem orderItem = new OrderItem();
         orderItem.setItem(item);
         orderItem.setOrderPrice(orderPrice);
         orderItem.setCount(count);
-
-        item.removeStock(count);
         return orderItem;
     }
 
-    //==비즈니스 로직==//
-    public void cancel() {
-        getItem().addStock(count);
-    }
-
     //==조회 로직==//
 
     /**
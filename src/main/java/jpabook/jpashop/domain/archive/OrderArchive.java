@@ -0,0 +1,69 @@
+package jpabook.jpashop.domain.archive;
+
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static javax.persistence.FetchType.*;
+
+/**
+ * 보관(cold) 주문: 오래된 취소/배송완료 주문을 orders에서 옮겨 둔 테이블(OrderArchiver)
+ * 컬럼은 orders와 같고 order_id도 그대로 유지. 옮긴 뒤에는 바뀌지 않으므로 읽기 전용(@Immutable)
+ * insert는 OrderArchiveRepository에서 insert ... select로만 함
+ */
+@Entity
+@Immutable
+@Table(name = "orders_archive", indexes = {
+        @Index(name = "idx_orders_archive_order_date_id", columnList = "orderDate, order_id"),
+        @Index(name = "idx_orders_archive_member_id", columnList = "member_id") //회원 이름 검색
+})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderArchive {
+
+    @Id
+    @Column(name = "order_id")
+    private Long id;
+
+    @ManyToOne(fetch = LAZY)
+    @JoinColumn(name = "member_id")
+    private Member member;
+
+    @OneToMany(mappedBy = "order")
+    private List<OrderItemArchive> orderItems = new ArrayList<>();
+
+    @OneToOne(fetch = LAZY)
+    @JoinColumn(name = "delivery_id")
+    private DeliveryArchive delivery;
+
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    private LocalDateTime archivedAt; //보관 테이블로 옮긴 시간
+
+    //보관 주문 포함 검색에서 hot 주문과 같은 화면/API에 내보낼 때 사용, 영속 상태가 아닌 Order
+    public Order toOrder() {
+        Delivery orderDelivery = new Delivery();
+        orderDelivery.setId(delivery.getId());
+        orderDelivery.setAddress(delivery.getAddress());
+        orderDelivery.setStatus(delivery.getStatus());
+        List<OrderItem> items = orderItems.stream()
+                .map(oi -> OrderItem.createOrderItem(oi.getItem(), oi.getOrderPrice(), oi.getCount()))
+                .collect(Collectors.toList());
+        return Order.restore(id, member, orderDelivery, orderDate, status, items);
+    }
+}
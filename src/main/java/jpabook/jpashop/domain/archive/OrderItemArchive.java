@@ -0,0 +1,34 @@
+package jpabook.jpashop.domain.archive;
+
+import jpabook.jpashop.domain.Item.Item;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+
+import static javax.persistence.FetchType.*;
+
+@Entity
+@Immutable
+@Table(name = "order_item_archive", indexes = @Index(name = "idx_order_item_archive_order_id", columnList = "order_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderItemArchive {
+
+    @Id
+    @Column(name = "order_item_id")
+    private Long id;
+
+    @ManyToOne(fetch = LAZY)
+    @JoinColumn(name = "item_id")
+    private Item item;
+
+    @ManyToOne(fetch = LAZY)
+    @JoinColumn(name = "order_id")
+    private OrderArchive order;
+
+    private int orderPrice;
+    private int count;
+}
@@ -0,0 +1,13 @@
+package jpabook.jpashop.event;
+
+/**
+ * outbox에 저장하고 구독자에게 전달하는 이벤트(OrderPlaced, OrderCancelled, StockChanged, MemberRenamed)
+ * JSON으로 저장하므로 필드는 값(id, 수량, 가격)만 갖고 엔티티를 참조하지 않음
+ */
+public interface DomainEvent {
+
+    /**
+     * 순서를 지켜야 하는 단위(같은 주문, 같은 상품). 같은 key의 이벤트는 한 스레드에서 id 순으로 전달
+     */
+    String aggregateKey();
+}
@@ -0,0 +1,28 @@
+package jpabook.jpashop.event;
+
+//outbox_event.type 컬럼 값, 이름을 바꾸면 이미 저장된 이벤트를 읽을 수 없음
+public enum EventType {
+    ORDER_PLACED(OrderPlaced.class),
+    ORDER_CANCELLED(OrderCancelled.class),
+    STOCK_CHANGED(StockChanged.class),
+    MEMBER_RENAMED(MemberRenamed.class);
+
+    private final Class<? extends DomainEvent> eventClass;
+
+    EventType(Class<? extends DomainEvent> eventClass) {
+        this.eventClass = eventClass;
+    }
+
+    public Class<? extends DomainEvent> getEventClass() {
+        return eventClass;
+    }
+
+    public static EventType of(DomainEvent event) {
+        for (EventType type : values()) {
+            if (type.eventClass == event.getClass()) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("등록되지 않은 이벤트입니다: " + event.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,20 @@
+package jpabook.jpashop.event;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+//회원 이름 변경, 회원 이름을 복사해 둔 조회 모델(order_view)을 고칠 때 사용
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+public class MemberRenamed implements DomainEvent {
+    private Long memberId;
+    private String name;
+
+    @Override
+    public String aggregateKey() {
+        return "member-" + memberId;
+    }
+}
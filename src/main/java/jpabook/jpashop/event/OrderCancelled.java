@@ -0,0 +1,30 @@
+package jpabook.jpashop.event;
+
+import jpabook.jpashop.domain.Order;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+public class OrderCancelled implements DomainEvent {
+    private Long orderId;
+    private Long memberId;
+    private int totalPrice;
+    private List<OrderedItem> items;
+
+    public static OrderCancelled of(Order order) {
+        return new OrderCancelled(order.getId(), order.getMember().getId(), order.getTotalPrice(),
+                order.getOrderItems().stream().map(OrderedItem::of).collect(Collectors.toList()));
+    }
+
+    @Override
+    public String aggregateKey() {
+        return "order-" + orderId;
+    }
+}
@@ -0,0 +1,32 @@
+package jpabook.jpashop.event;
+
+import jpabook.jpashop.domain.Order;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+public class OrderPlaced implements DomainEvent {
+    private Long orderId;
+    private Long memberId;
+    private LocalDateTime orderDate;
+    private int totalPrice;
+    private List<OrderedItem> items;
+
+    public static OrderPlaced of(Order order) {
+        return new OrderPlaced(order.getId(), order.getMember().getId(), order.getOrderDate(), order.getTotalPrice(),
+                order.getOrderItems().stream().map(OrderedItem::of).collect(Collectors.toList()));
+    }
+
+    @Override
+    public String aggregateKey() {
+        return "order-" + orderId;
+    }
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.event;
+
+import jpabook.jpashop.domain.OrderItem;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+//주문 이벤트에 담는 주문상품 값
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+public class OrderedItem {
+    private Long itemId;
+    private int orderPrice;
+    private int count;
+
+    public static OrderedItem of(OrderItem orderItem) {
+        return new OrderedItem(orderItem.getItem().getId(), orderItem.getOrderPrice(), orderItem.getCount());
+    }
+}
@@ -0,0 +1,65 @@
+package jpabook.jpashop.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * 이벤트를 현재 트랜잭션에서 outbox_event에 저장
+ * 주문과 같은 트랜잭션이므로 주문이 롤백되면 이벤트도 남지 않고, 커밋되면 반드시 남음(dual write 문제 없음)
+ * 후속 작업은 커밋 뒤에 OutboxDispatcher가 구독자에게 전달 -> 요청 트랜잭션은 insert 한 번만 늘어남
+ */
+@Component
+@RequiredArgsConstructor
+public class Outbox {
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxSettings settings;
+    private final ObjectMapper objectMapper;
+    private final OutboxDispatcher dispatcher;
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public void append(DomainEvent event) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("outbox 이벤트는 트랜잭션 안에서 저장해야 합니다.");
+        }
+        outboxRepository.save(new OutboxEvent(EventType.of(event), toJson(event), LocalDateTime.now()));
+        wakeUpAfterCommit();
+    }
+
+    //커밋되면 dispatcher가 주기를 기다리지 않고 바로 가져가도록 알림, 트랜잭션마다 한 번만 등록
+    private void wakeUpAfterCommit() {
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(Outbox.this);
+                if (status == STATUS_COMMITTED) {
+                    dispatcher.wakeUp();
+                }
+            }
+        });
+    }
+
+    private String toJson(DomainEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("이벤트를 JSON으로 바꿀 수 없습니다: " + event.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package jpabook.jpashop.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * outbox 이벤트를 구독자(OutboxSubscriber)에게 전달
+ * - 전용 스레드 하나가 대기 이벤트를 batch-size개씩 id 순으로 읽음. 커밋 알림(wakeUp)이 오면 바로, 없으면 poll-interval-ms마다
+ * - 묶음을 aggregateKey 기준으로 threads개로 나눠서 동시에 전달: 같은 주문/상품의 이벤트는 한 스레드에서 순서대로
+ * - 성공한 이벤트는 publishedAt을 채우고, 실패한 나눔은 attempts를 올려서 다음에 다시 전달(at-least-once)
+ *   max-attempts만큼 실패하면 더 이상 전달하지 않음(dead)
+ * 서버가 여러 대면 같은 이벤트를 여러 서버가 전달할 수 있음(구독자가 멱등하므로 중복만 생김)
+ *
+ * 메트릭
+ * - jpashop.outbox.lag: 이벤트 저장(커밋 직전)부터 전달 완료까지 걸린 시간
+ * - jpashop.outbox.oldest-pending-age: 마지막으로 읽은 묶음에서 가장 오래 기다린 이벤트의 대기 시간(밀려 있으면 계속 커짐)
+ * - jpashop.outbox.events{result=published|failed|dead}
+ */
+@Slf4j
+@Component
+public class OutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxSettings settings;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<OutboxSubscriber> subscribers;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+
+    private final Semaphore signal = new Semaphore(0);
+    private volatile boolean running;
+    private Thread loop;
+
+    private final Timer lag;
+    private final AtomicLong oldestPendingAgeMillis = new AtomicLong();
+    private final Counter published;
+    private final Counter failed;
+    private final Counter dead;
+
+    public OutboxDispatcher(OutboxRepository outboxRepository, OutboxSettings settings, ObjectMapper objectMapper,
+                            ObjectProvider<OutboxSubscriber> subscribers, PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.settings = settings;
+        this.objectMapper = objectMapper;
+        this.subscribers = subscribers;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(settings.getThreads(), r -> {
+            Thread thread = new Thread(r, "outbox-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.lag = Timer.builder("jpashop.outbox.lag")
+                .description("outbox 이벤트 저장부터 구독자 전달 완료까지")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        TimeGauge.builder("jpashop.outbox.oldest-pending-age", oldestPendingAgeMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .register(meterRegistry);
+        this.published = Counter.builder("jpashop.outbox.events").tag("result", "published").register(meterRegistry);
+        this.failed = Counter.builder("jpashop.outbox.events").tag("result", "failed").register(meterRegistry);
+        this.dead = Counter.builder("jpashop.outbox.events").tag("result", "dead").register(meterRegistry);
+    }
+
+    //모든 빈(구독자 포함)이 준비된 뒤에 시작
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!settings.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        loop = new Thread(this::run, "outbox-dispatcher");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        signal.release();
+        if (loop != null) {
+            loop.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        workers.shutdownNow();
+    }
+
+    public void wakeUp() {
+        signal.release();
+    }
+
+    private void run() {
+        while (running) {
+            long waitMillis;
+            try {
+                Batch batch = drainOnce();
+                if (batch.failed > 0) {
+                    waitMillis = settings.getRetryDelayMs();
+                } else if (batch.fetched == settings.getBatchSize()) {
+                    continue; //더 밀려 있으면 기다리지 않고 다음 묶음
+                } else {
+                    waitMillis = settings.getPollIntervalMs();
+                }
+            } catch (RuntimeException e) {
+                log.warn("outbox 이벤트 조회/반영 실패, 다시 시도: {}", e.getMessage());
+                waitMillis = settings.getRetryDelayMs();
+            }
+            try {
+                if (signal.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+                    signal.drainPermits(); //그 사이 여러 커밋이 알려도 한 번만 읽음
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 대기 이벤트 한 묶음 전달
+     */
+    synchronized Batch drainOnce() {
+        List<OutboxEvent> events = transactionTemplate.execute(status ->
+                outboxRepository.findPending(settings.getMaxAttempts(), settings.getBatchSize()));
+        if (events.isEmpty()) {
+            oldestPendingAgeMillis.set(0);
+            return new Batch(0, 0);
+        }
+        oldestPendingAgeMillis.set(Duration.between(events.get(0).getCreatedAt(), LocalDateTime.now()).toMillis());
+
+        //aggregateKey 기준으로 나눔, 나눔 안에서는 id 순서 유지
+        Map<Integer, List<OutboxMessage>> partitions = new TreeMap<>();
+        Map<Long, String> errors = new TreeMap<>();
+        for (OutboxEvent event : events) {
+            try {
+                DomainEvent payload = objectMapper.readValue(event.getPayload(), event.getType().getEventClass());
+                int partition = Math.floorMod(payload.aggregateKey().hashCode(), settings.getThreads());
+                partitions.computeIfAbsent(partition, p -> new ArrayList<>())
+                        .add(new OutboxMessage(event.getId(), payload, event.getCreatedAt()));
+            } catch (JsonProcessingException e) {
+                errors.put(event.getId(), "JSON: " + e.getOriginalMessage());
+            }
+        }
+
+        List<OutboxSubscriber> targets = subscribers.orderedStream().collect(Collectors.toList());
+        List<Future<?>> futures = new ArrayList<>();
+        List<List<OutboxMessage>> submitted = new ArrayList<>(partitions.values());
+        for (List<OutboxMessage> partition : submitted) {
+            futures.add(workers.submit(() -> targets.forEach(subscriber -> subscriber.handle(partition))));
+        }
+
+        List<Long> succeeded = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < futures.size(); i++) {
+            List<OutboxMessage> partition = submitted.get(i);
+            try {
+                futures.get(i).get();
+                for (OutboxMessage message : partition) {
+                    succeeded.add(message.getId());
+                    lag.record(Duration.between(message.getCreatedAt(), now));
+                }
+            } catch (ExecutionException e) {
+                String error = String.valueOf(e.getCause());
+                log.warn("outbox 이벤트 {}개 전달 실패, 다시 시도: {}", partition.size(), error);
+                partition.forEach(message -> errors.put(message.getId(), error));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new IllegalStateException("outbox 이벤트 전달이 중단되었습니다.", e);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!succeeded.isEmpty()) {
+                outboxRepository.markPublished(succeeded, now);
+            }
+            errors.entrySet().stream()
+                    .collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.mapping(Map.Entry::getKey, Collectors.toList())))
+                    .forEach((error, ids) -> outboxRepository.markFailed(ids, truncate(error)));
+        });
+        published.increment(succeeded.size());
+        failed.increment(errors.size());
+        for (OutboxEvent event : events) {
+            if (errors.containsKey(event.getId()) && event.getAttempts() + 1 >= settings.getMaxAttempts()) {
+                dead.increment();
+                log.error("outbox 이벤트 {}({})를 {}번 전달하지 못해 중단: {}", event.getId(), event.getType(),
+                        settings.getMaxAttempts(), errors.get(event.getId()));
+            }
+        }
+        return new Batch(events.size(), errors.size());
+    }
+
+    /**
+     * 전달이 끝나고 보관 기간이 지난 이벤트 삭제
+     */
+    @Scheduled(fixedDelayString = "${jpashop.outbox.purge-interval-ms:60000}")
+    public void purge() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minusMinutes(settings.getRetentionMinutes());
+        transactionTemplate.executeWithoutResult(status -> outboxRepository.deletePublishedBefore(before));
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    static final class Batch {
+        final int fetched;
+        final int failed;
+
+        Batch(int fetched, int failed) {
+            this.fetched = fetched;
+            this.failed = failed;
+        }
+    }
+}
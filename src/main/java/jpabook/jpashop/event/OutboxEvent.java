@@ -0,0 +1,53 @@
+package jpabook.jpashop.event;
+
+import jpabook.jpashop.domain.PooledLoSequenceGenerator;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * outbox 테이블: 비즈니스 데이터와 같은 트랜잭션에서 insert -> 커밋된 변경에 대해서만 이벤트가 남음
+ * 전달이 끝나면 publishedAt을 채우고, 보관 기간이 지나면 삭제(OutboxDispatcher)
+ */
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_event_pending", columnList = "publishedAt, outbox_event_id")) //전달 대기 이벤트를 id 순으로
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(generator = "outbox_event_seq")
+    @GenericGenerator(name = "outbox_event_seq", strategy = PooledLoSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "outbox_event_seq"))
+    @Column(name = "outbox_event_id")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EventType type;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload; //JSON, 주문상품 수에 따라 길어지므로 lob
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime publishedAt; //null이면 전달 대기
+
+    private int attempts; //전달 실패 횟수
+
+    private String lastError;
+
+    public OutboxEvent(EventType type, String payload, LocalDateTime createdAt) {
+        this.type = type;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+}
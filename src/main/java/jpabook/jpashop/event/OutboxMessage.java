@@ -0,0 +1,15 @@
+package jpabook.jpashop.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+
+//구독자에게 전달하는 이벤트. id는 outbox_event id로, 중복 전달을 걸러낼 때 사용
+@Getter
+@RequiredArgsConstructor
+public class OutboxMessage {
+    private final Long id;
+    private final DomainEvent event;
+    private final LocalDateTime createdAt;
+}
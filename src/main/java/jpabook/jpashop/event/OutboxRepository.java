@@ -0,0 +1,52 @@
+package jpabook.jpashop.event;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class OutboxRepository {
+
+    private final EntityManager em;
+
+    public void save(OutboxEvent event) {
+        em.persist(event);
+    }
+
+    //전달 대기 이벤트를 id 순으로, (published_at, id) 인덱스 범위 조회
+    public List<OutboxEvent> findPending(int maxAttempts, int limit) {
+        return em.createQuery(
+                        "select e from OutboxEvent e" +
+                                " where e.publishedAt is null and e.attempts < :maxAttempts" +
+                                " order by e.id", OutboxEvent.class)
+                .setParameter("maxAttempts", maxAttempts)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public int markPublished(Collection<Long> ids, LocalDateTime publishedAt) {
+        return em.createQuery("update OutboxEvent e set e.publishedAt = :publishedAt where e.id in :ids")
+                .setParameter("publishedAt", publishedAt)
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    public int markFailed(Collection<Long> ids, String error) {
+        return em.createQuery("update OutboxEvent e set e.attempts = e.attempts + 1, e.lastError = :error where e.id in :ids")
+                .setParameter("error", error)
+                .setParameter("ids", ids)
+                .executeUpdate();
+    }
+
+    public int deletePublishedBefore(LocalDateTime before) {
+        return em.createQuery("delete from OutboxEvent e where e.publishedAt < :before")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+
+}
@@ -0,0 +1,24 @@
+package jpabook.jpashop.event;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * outbox 설정(jpashop.outbox.*)
+ */
+@Component
+@ConfigurationProperties(prefix = "jpashop.outbox")
+@Getter @Setter
+public class OutboxSettings {
+
+    private boolean enabled = true; //false면 이벤트를 저장하지 않음(구독자도 동작하지 않음)
+
+    private int threads = 4; //구독자에게 전달하는 스레드 수, 같은 aggregate는 항상 같은 스레드
+    private int batchSize = 200; //한 번에 읽어서 전달할 이벤트 수
+    private long pollIntervalMs = 1_000; //커밋 알림이 없어도 이 주기로 확인(재시작, 다른 서버에서 쌓인 이벤트)
+    private long retryDelayMs = 1_000; //전달 실패 후 다시 시도하기 전 대기
+    private int maxAttempts = 10; //이만큼 실패하면 더 이상 전달하지 않음(dead, lastError 확인)
+    private long retentionMinutes = 60; //전달이 끝난 이벤트를 지우기 전 보관 시간
+}
@@ -0,0 +1,15 @@
+package jpabook.jpashop.event;
+
+import java.util.List;
+
+/**
+ * outbox 이벤트 구독자(스프링 빈으로 등록하면 OutboxDispatcher가 찾아서 전달)
+ * - 커밋된 뒤에 다른 스레드에서 묶음으로 전달: 요청 트랜잭션의 응답 시간에 영향을 주지 않음
+ * - 같은 aggregateKey의 이벤트는 id 순서대로 전달
+ * - 최소 한 번(at-least-once): 실패하면 묶음 전체를 다시 전달하고, 다른 구독자가 실패해도 다시 받으므로 멱등하게 처리해야 함
+ * - 예외를 던지면 실패로 보고 retry-delay-ms 뒤에 다시 전달
+ */
+public interface OutboxSubscriber {
+
+    void handle(List<OutboxMessage> messages);
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.event;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+//재고 변화량(주문: 음수, 취소: 양수), 절대값이 아니므로 구독자는 중복 전달을 orderId로 걸러야 함
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+public class StockChanged implements DomainEvent {
+    private Long itemId;
+    private int delta;
+    private Long orderId;
+
+    @Override
+    public String aggregateKey() {
+        return "item-" + itemId;
+    }
+}
@@ -0,0 +1,8 @@
+package jpabook.jpashop.exception;
+
+public class SqlBudgetExceededException extends RuntimeException {
+
+    public SqlBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,173 @@
+package jpabook.jpashop.monitor;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 인덱스 추천(H2 전용)
+ * SqlStatistics가 모은 SQL 모양의 샘플(바인딩 값 포함)을 EXPLAIN 해서 full scan(tableScan)을 찾고
+ * 해당 테이블에 상수 조건(=, <, like, in ...)이 걸린 컬럼으로 인덱스를 제안
+ * - 조인되는 쪽 테이블이 full scan이면 조인 컬럼도 후보 (nested loop에서 매 row마다 전체를 읽음)
+ * - 이미 같은 컬럼으로 시작하는 인덱스가 있거나, like '%...' 처럼 인덱스를 못 쓰는 조건은 제외
+ *
+ * measure(apply=false): 인덱스를 만들어 전후 실행 시간을 잰 뒤 다시 삭제(dry run)
+ * measure(apply=true): 만든 인덱스를 그대로 유지. ddl-auto: create 환경이므로 재시작하면 사라짐 -> 엔티티에 @Index로 옮길 것
+ */
+@Slf4j
+@Component
+public class IndexAdvisor {
+
+    private static final int MEASURE_RUNS = 5;
+
+    //FROM "PUBLIC"."ORDERS" "ORDER0_" /* PUBLIC.ORDERS.tableScan */
+    private static final Pattern TABLE_SCAN = Pattern.compile(
+            "\"(\\w+)\"\\.\"(\\w+)\"\\s+\"(\\w+)\"\\s*/\\*\\s*[\\w.]+\\.TABLESCAN\\s*\\*/"); //대문자로 바꾼 plan에서 찾음
+    private static final Pattern FIRST_TABLE = Pattern.compile("\\bFROM\\s+\"\\w+\"\\.\"(\\w+)\"");
+    private static final String COMPARISON = "\\s*(=|<>|<=|>=|<|>|LIKE|IN\\s*\\(|BETWEEN)\\s*";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlStatistics sqlStatistics;
+
+    public IndexAdvisor(DataSource dataSource, SqlStatistics sqlStatistics) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.sqlStatistics = sqlStatistics;
+    }
+
+    /**
+     * 총 실행 시간 상위 top개 select 모양을 EXPLAIN 해서 인덱스 제안
+     */
+    public List<Advice> advise(int top) {
+        Map<String, Advice> advices = new LinkedHashMap<>();
+        List<SqlStatistics.ShapeReport> selects = sqlStatistics.top(Integer.MAX_VALUE).stream()
+                .filter(shape -> shape.getShape().startsWith("select"))
+                .limit(top)
+                .collect(Collectors.toList());
+        for (SqlStatistics.ShapeReport shape : selects) {
+            String sample = shape.getSample();
+            String plan;
+            try {
+                plan = jdbcTemplate.queryForObject("explain " + sample, String.class);
+            } catch (DataAccessException e) {
+                log.debug("EXPLAIN 실패: {}", e.getMessage());
+                continue;
+            }
+            for (Advice advice : adviceFor(shape, plan)) {
+                advices.putIfAbsent(advice.getDdl(), advice);
+            }
+        }
+        return new ArrayList<>(advices.values());
+    }
+
+    /**
+     * 제안한 인덱스를 만들고 전후 실행 시간 비교, apply=false 이면 측정 후 삭제
+     */
+    public List<Advice> measure(int top, boolean apply) {
+        List<Advice> advices = advise(top);
+        for (Advice advice : advices) {
+            advice.beforeMillis = time(advice.getSample());
+            jdbcTemplate.execute(advice.getDdl());
+            advice.afterMillis = time(advice.getSample());
+            if (apply) {
+                advice.applied = true;
+                log.info("인덱스 생성: {} ({}ms -> {}ms)", advice.getDdl(), advice.beforeMillis, advice.afterMillis);
+            } else {
+                jdbcTemplate.execute("drop index if exists " + advice.getIndexName());
+            }
+        }
+        return advices;
+    }
+
+    private List<Advice> adviceFor(SqlStatistics.ShapeReport shape, String plan) {
+        List<Advice> result = new ArrayList<>();
+        String upperPlan = plan.toUpperCase(Locale.ROOT);
+        Matcher firstTable = FIRST_TABLE.matcher(upperPlan);
+        String drivingTable = firstTable.find() ? firstTable.group(1) : null;
+
+        Matcher scan = TABLE_SCAN.matcher(upperPlan);
+        while (scan.find()) {
+            String table = scan.group(2);
+            String alias = scan.group(3);
+            Set<String> columns = new LinkedHashSet<>();
+            //상수와 비교하는 컬럼 ("ALIAS"."COL" = 'x', "ALIAS"."COL" LIKE 'x%' ...), 오른쪽이 다른 컬럼이면 조인 조건
+            Matcher predicate = Pattern.compile("\"" + alias + "\"\\.\"(\\w+)\"" + COMPARISON + "(?!\")(')?(%)?")
+                    .matcher(upperPlan);
+            while (predicate.find()) {
+                boolean leadingWildcard = predicate.group(2).startsWith("LIKE") && predicate.group(4) != null;
+                if (!leadingWildcard) {
+                    columns.add(predicate.group(1));
+                }
+            }
+            if (!table.equals(drivingTable)) {
+                Matcher join = Pattern.compile("\"" + alias + "\"\\.\"(\\w+)\"\\s*=\\s*\"\\w+\"\\.\"\\w+\"|"
+                        + "\"\\w+\"\\.\"\\w+\"\\s*=\\s*\"" + alias + "\"\\.\"(\\w+)\"").matcher(upperPlan);
+                while (join.find()) {
+                    columns.add(join.group(1) != null ? join.group(1) : join.group(2));
+                }
+            }
+            columns.removeIf(column -> hasIndexStartingWith(table, column));
+            if (!columns.isEmpty()) {
+                result.add(new Advice(shape, table, new ArrayList<>(columns)));
+            }
+        }
+        return result;
+    }
+
+    private boolean hasIndexStartingWith(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.index_columns" +
+                        " where table_name = ? and column_name = ? and ordinal_position = 1",
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+
+    //한 번 실행해서 캐시를 데운 뒤 평균
+    private double time(String sql) {
+        jdbcTemplate.query(sql, rs -> {
+        });
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_RUNS; i++) {
+            jdbcTemplate.query(sql, rs -> {
+            });
+        }
+        return Math.round((System.nanoTime() - start) / 1_000.0 / MEASURE_RUNS) / 1_000.0;
+    }
+
+    @Getter
+    public static class Advice {
+        private final String shape;
+        private final String sample;
+        private final String table;
+        private final List<String> columns;
+        private final String indexName;
+        private final String ddl;
+        private Double beforeMillis;
+        private Double afterMillis;
+        private boolean applied;
+
+        private Advice(SqlStatistics.ShapeReport shape, String table, List<String> columns) {
+            this.shape = shape.getShape();
+            this.sample = shape.getSample();
+            this.table = table;
+            this.columns = columns;
+            this.indexName = ("idx_" + table + "_" + String.join("_", columns)).toLowerCase(Locale.ROOT);
+            this.ddl = "create index if not exists " + indexName
+                    + " on " + table.toLowerCase(Locale.ROOT)
+                    + " (" + String.join(", ", columns).toLowerCase(Locale.ROOT) + ")";
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package jpabook.jpashop.monitor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GET /actuator/indexadvisor?top=20: 인덱스 제안 (jpashop.sql-stats.enabled=true 로 SQL을 모은 뒤 사용)
+ * POST /actuator/indexadvisor {"apply": false}: 인덱스를 만들어 전후 실행 시간 측정 후 삭제(dry run)
+ * POST /actuator/indexadvisor {"apply": true}: 측정 후 인덱스 유지
+ * POST는 운영 DB에 create/drop index를 실행하므로 jpashop.index-advisor.measure-enabled=true 일 때만 허용(기본 false)
+ */
+@Component
+@Endpoint(id = "indexadvisor")
+public class IndexAdvisorEndpoint {
+
+    private final IndexAdvisor indexAdvisor;
+    private final boolean measureEnabled;
+
+    public IndexAdvisorEndpoint(IndexAdvisor indexAdvisor,
+                                @Value("${jpashop.index-advisor.measure-enabled:false}") boolean measureEnabled) {
+        this.indexAdvisor = indexAdvisor;
+        this.measureEnabled = measureEnabled;
+    }
+
+    @ReadOperation
+    public List<IndexAdvisor.Advice> advise(@Nullable Integer top) {
+        return indexAdvisor.advise(top == null ? 20 : top);
+    }
+
+    @WriteOperation
+    public List<IndexAdvisor.Advice> measure(@Nullable Boolean apply, @Nullable Integer top) {
+        if (!measureEnabled) {
+            //인증 없이 노출된 endpoint에서 DDL이 실행되지 않도록 막음(400)
+            throw new InvalidEndpointRequestException("index measure is disabled", "jpashop.index-advisor.measure-enabled=true 일 때만 실행합니다.");
+        }
+        return indexAdvisor.measure(top == null ? 20 : top, Boolean.TRUE.equals(apply));
+    }
+}
@@ -0,0 +1,32 @@
+package jpabook.jpashop.monitor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GET /actuator/lazyloads?top=20: 지연 로딩으로 SQL을 가장 많이 실행한 호출 위치
+ * DELETE /actuator/lazyloads: 집계 초기화
+ */
+@Component
+@Endpoint(id = "lazyloads")
+@RequiredArgsConstructor
+public class LazyLoadEndpoint {
+
+    private final LazyLoadProfiler lazyLoadProfiler;
+
+    @ReadOperation
+    public List<LazyLoadProfiler.CallSiteReport> top(@Nullable Integer top) {
+        return lazyLoadProfiler.top(top == null ? 20 : top);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        lazyLoadProfiler.reset();
+    }
+}
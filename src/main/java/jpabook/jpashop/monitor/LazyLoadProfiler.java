@@ -0,0 +1,227 @@
+package jpabook.jpashop.monitor;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 지연 로딩 프로파일러(선택 기능, jpashop.lazy-load-profiler.enabled)
+ * 프록시 초기화(order.getMember().getName())와 컬렉션 초기화(order.getOrderItems())를 가로채서
+ * 어느 코드(호출한 애플리케이션 프레임)가 어떤 엔티티/컬렉션을 초기화했는지 집계
+ * - 실행된 SQL 수: 0이면 batch fetch로 이미 영속성 컨텍스트에 올라와 있던 것
+ * - 같이 로딩된 엔티티 수, 설정된 batch size
+ *
+ * 초기화마다 스택을 훑으므로 문제를 찾는 동안에만 켤 것
+ */
+@Slf4j
+@Component
+public class LazyLoadProfiler {
+
+    static final String ENTITY = "ENTITY";
+    static final String COLLECTION = "COLLECTION";
+
+    private static final int MAX_CALL_SITES = 1000; //넘으면 (other)로 합침
+    private static final String APPLICATION_PACKAGE = "jpabook.jpashop.";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final boolean enabled;
+
+    private final Map<String, CallSiteStats> stats = new ConcurrentHashMap<>();
+    private final ThreadLocal<int[]> loadedEntities = ThreadLocal.withInitial(() -> new int[1]);
+
+    public LazyLoadProfiler(EntityManagerFactory emf,
+                            @Value("${jpashop.lazy-load-profiler.enabled:false}") boolean enabled) {
+        this.sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //기존 리스너를 감싸서 초기화 전후를 측정
+    @PostConstruct
+    public void register() {
+        if (!enabled) {
+            return;
+        }
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+
+        EventListenerGroup<LoadEventListener> loadGroup = registry.getEventListenerGroup(EventType.LOAD);
+        List<LoadEventListener> loadListeners = listenersOf(loadGroup);
+        loadGroup.clearListeners();
+        loadGroup.appendListener((event, loadType) -> {
+            //IMMEDIATE_LOAD: 프록시 초기화
+            if (loadType != LoadEventListener.IMMEDIATE_LOAD) {
+                loadListeners.forEach(listener -> listener.onLoad(event, loadType));
+                return;
+            }
+            profile(ENTITY, event.getEntityClassName(), entityBatchSize(event.getEntityClassName()),
+                    () -> loadListeners.forEach(listener -> listener.onLoad(event, loadType)));
+        });
+
+        EventListenerGroup<InitializeCollectionEventListener> collectionGroup =
+                registry.getEventListenerGroup(EventType.INIT_COLLECTION);
+        List<InitializeCollectionEventListener> collectionListeners = listenersOf(collectionGroup);
+        collectionGroup.clearListeners();
+        collectionGroup.appendListener(event -> {
+            String role = event.getCollection().getRole();
+            profile(COLLECTION, role, collectionBatchSize(role),
+                    () -> collectionListeners.forEach(listener -> listener.onInitializeCollection(event)));
+        });
+
+        registry.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> loadedEntities.get()[0]++);
+        log.info("지연 로딩 프로파일러 활성화");
+    }
+
+    private void profile(String kind, String role, int batchSize, Runnable initialization) {
+        int loadedBefore = loadedEntities.get()[0];
+        long start = System.nanoTime();
+        SqlCounter sql = SqlCounter.measure(initialization);
+        long elapsedNanos = System.nanoTime() - start;
+
+        String callSite = callSite();
+        String key = kind + "|" + role + "|" + callSite;
+        CallSiteStats callSiteStats = stats.get(key);
+        if (callSiteStats == null) {
+            if (stats.size() >= MAX_CALL_SITES) {
+                callSite = "(other)";
+                key = kind + "|" + role + "|" + callSite;
+            }
+            String site = callSite;
+            callSiteStats = stats.computeIfAbsent(key, k -> new CallSiteStats(kind, role, site, batchSize));
+        }
+        callSiteStats.record(sql.getCount(), loadedEntities.get()[0] - loadedBefore, elapsedNanos);
+    }
+
+    //Hibernate, Spring, 프로파일러(람다 포함), 프록시 클래스를 건너뛴 첫 번째 애플리케이션 프레임
+    private static String callSite() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(APPLICATION_PACKAGE)
+                        && !isProfilerFrame(frame.getClassName())
+                        && !frame.getClassName().contains("$HibernateProxy$"))
+                .findFirst()
+                .map(frame -> {
+                    String className = frame.getClassName();
+                    return className.substring(className.lastIndexOf('.') + 1)
+                            + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+                })
+                .orElse("(unknown)"));
+    }
+
+    private static boolean isProfilerFrame(String className) {
+        String profiler = LazyLoadProfiler.class.getName();
+        return className.equals(profiler) || className.startsWith(profiler + "$");
+    }
+
+    //엔티티 persister는 batch size를 노출하지 않으므로 @BatchSize -> default_batch_fetch_size 순으로 확인
+    private int entityBatchSize(String entityName) {
+        Class<?> mappedClass = sessionFactory.getMetamodel().entityPersister(entityName).getMappedClass();
+        BatchSize batchSize = mappedClass.getAnnotation(BatchSize.class);
+        if (batchSize != null) {
+            return batchSize.size();
+        }
+        return Math.max(1, sessionFactory.getSessionFactoryOptions().getDefaultBatchFetchSize());
+    }
+
+    private int collectionBatchSize(String role) {
+        CollectionPersister persister = sessionFactory.getMetamodel().collectionPersister(role);
+        int batchSize = persister instanceof AbstractCollectionPersister ? ((AbstractCollectionPersister) persister).getBatchSize() : -1;
+        //@BatchSize가 없으면 -1 -> default_batch_fetch_size
+        return batchSize > 0 ? batchSize : Math.max(1, sessionFactory.getSessionFactoryOptions().getDefaultBatchFetchSize());
+    }
+
+    //등록된 리스너를 꺼냄. listeners()는 deprecated이므로 리스너마다 호출해 주는 fireEventOnEachListener를 사용
+    private static <T> List<T> listenersOf(EventListenerGroup<T> group) {
+        List<T> listeners = new ArrayList<>();
+        group.fireEventOnEachListener(listeners, (listener, collected) -> collected.add(listener));
+        return listeners;
+    }
+
+    /**
+     * SQL을 가장 많이 실행한 호출 위치 순
+     */
+    public List<CallSiteReport> top(int limit) {
+        return stats.values().stream()
+                .map(CallSiteReport::new)
+                .sorted(Comparator.comparingLong(CallSiteReport::getStatements)
+                        .thenComparingLong(CallSiteReport::getInitializations).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    private static final class CallSiteStats {
+        private final String kind;
+        private final String role;
+        private final String callSite;
+        private final int batchSize;
+        private final LongAdder initializations = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder loadedEntities = new LongAdder();
+        private final LongAdder elapsedNanos = new LongAdder();
+
+        private CallSiteStats(String kind, String role, String callSite, int batchSize) {
+            this.kind = kind;
+            this.role = role;
+            this.callSite = callSite;
+            this.batchSize = batchSize;
+        }
+
+        private void record(int statementCount, int loaded, long nanos) {
+            initializations.increment();
+            statements.add(statementCount);
+            loadedEntities.add(loaded);
+            elapsedNanos.add(nanos);
+        }
+    }
+
+    @Getter
+    public static class CallSiteReport {
+        private final String kind; //ENTITY: 프록시 초기화, COLLECTION: 컬렉션 초기화
+        private final String role; //엔티티 이름 또는 컬렉션 role (jpabook.jpashop.domain.Order.orderItems)
+        private final String callSite;
+        private final int batchSize;
+        private final long initializations;
+        private final long statements;
+        private final long loadedEntities;
+        private final long totalMillis;
+
+        private CallSiteReport(CallSiteStats stats) {
+            this.kind = stats.kind;
+            this.role = stats.role;
+            this.callSite = stats.callSite;
+            this.batchSize = stats.batchSize;
+            this.initializations = stats.initializations.sum();
+            this.statements = stats.statements.sum();
+            this.loadedEntities = stats.loadedEntities.sum();
+            this.totalMillis = TimeUnit.NANOSECONDS.toMillis(stats.elapsedNanos.sum());
+        }
+    }
+}
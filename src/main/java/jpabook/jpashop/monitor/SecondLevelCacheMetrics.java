@@ -0,0 +1,58 @@
+package jpabook.jpashop.monitor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 2차 캐시 영역별 메트릭(hibernate.generate_statistics=true 일 때만 등록)
+ * - jpashop.cache.requests: 조회 횟수 (result=hit|miss)
+ * - jpashop.cache.puts: DB에서 읽어서 캐시에 넣은 횟수
+ * - jpashop.cache.hit.ratio: 적중률 hit / (hit + miss), 조회가 없으면 NaN
+ * /actuator/metrics/jpashop.cache.hit.ratio?tag=region:jpabook.jpashop.domain.Member
+ */
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCacheMetrics implements MeterBinder {
+
+    private final EntityManagerFactory emf;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            FunctionCounter.builder("jpashop.cache.requests", statistics, s -> s.getDomainDataRegionStatistics(region).getHitCount())
+                    .tag("region", region)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("jpashop.cache.requests", statistics, s -> s.getDomainDataRegionStatistics(region).getMissCount())
+                    .tag("region", region)
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("jpashop.cache.puts", statistics, s -> s.getDomainDataRegionStatistics(region).getPutCount())
+                    .tag("region", region)
+                    .register(registry);
+            Gauge.builder("jpashop.cache.hit.ratio", statistics, s -> hitRatio(s.getDomainDataRegionStatistics(region)))
+                    .tag("region", region)
+                    .description("2차 캐시 적중률")
+                    .register(registry);
+        }
+    }
+
+    private static double hitRatio(CacheRegionStatistics region) {
+        long hits = region.getHitCount();
+        long total = hits + region.getMissCount();
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+}
@@ -0,0 +1,27 @@
+package jpabook.jpashop.monitor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * API 한 번에 허용하는 SQL 실행 수
+ * N+1 같은 문제가 다시 생기면 로그를 남기거나(LOG) 요청을 실패시킴(FAIL)
+ * 응답 body를 쓰기 직전까지 실행된 SQL만 검사 -> @ResponseBody(@RestController) 메서드에만 적용
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SqlBudget {
+
+    /**
+     * 허용하는 최대 SQL 수
+     */
+    int value();
+
+    Action action() default Action.LOG;
+
+    enum Action {
+        LOG, FAIL
+    }
+}
@@ -0,0 +1,57 @@
+package jpabook.jpashop.monitor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청마다 SQL 수를 세서 메트릭으로 남김
+ * - jpashop.sql.statements: 요청당 SQL 수 (uri 패턴별)
+ * - jpashop.sql.time: 요청당 SQL 실행 시간 합
+ * 응답 헤더(X-Sql-Count, X-Sql-Time-Ms)는 SqlCountResponseAdvice에서 body를 쓰기 직전에 추가
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlCountFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlCounter counter = SqlCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlCounter.stop();
+            record(request, counter);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlCounter counter) {
+        //uri 그대로 쓰면 /orders/1, /orders/2 ... 태그가 끝없이 늘어나므로 매핑된 패턴을 사용
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        DistributionSummary.builder("jpashop.sql.statements")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(counter.getCount());
+        Timer.builder("jpashop.sql.time")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(counter.getElapsedNanos(), TimeUnit.NANOSECONDS);
+    }
+}
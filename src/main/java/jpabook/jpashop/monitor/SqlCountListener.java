@@ -0,0 +1,24 @@
+package jpabook.jpashop.monitor;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+/**
+ * p6spy 이벤트 리스너: statement 실행(query, update, batch)마다 현재 스레드의 SqlCounter에 더함
+ * batch는 DB 왕복 기준으로 1번으로 셈
+ * p6spy-spring-boot-starter가 JdbcEventListener 빈을 자동으로 등록
+ */
+@Component
+public class SqlCountListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        SqlCounter counter = SqlCounter.current();
+        if (counter != null) {
+            counter.record(timeElapsedNanos);
+        }
+    }
+}
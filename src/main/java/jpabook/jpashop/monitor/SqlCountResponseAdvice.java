@@ -0,0 +1,59 @@
+package jpabook.jpashop.monitor;
+
+import jpabook.jpashop.exception.SqlBudgetExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * body를 쓰기 직전에 지금까지의 SQL 수를 응답 헤더에 추가하고 @SqlBudget을 검사
+ * (body를 쓰기 시작하면 응답이 커밋되어 헤더를 바꿀 수 없음)
+ * jpashop.sql-budget.fail-all=true 이면 LOG로 지정한 예산도 초과 시 실패시킴(테스트, CI용)
+ */
+@Slf4j
+@ControllerAdvice
+public class SqlCountResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String COUNT_HEADER = "X-Sql-Count";
+    public static final String TIME_HEADER = "X-Sql-Time-Ms";
+
+    private final boolean failAll;
+
+    public SqlCountResponseAdvice(@Value("${jpashop.sql-budget.fail-all:false}") boolean failAll) {
+        this.failAll = failAll;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        SqlCounter counter = SqlCounter.current();
+        if (counter == null) {
+            return body;
+        }
+        response.getHeaders().set(COUNT_HEADER, String.valueOf(counter.getCount()));
+        response.getHeaders().set(TIME_HEADER, String.valueOf(counter.getElapsedMillis()));
+
+        SqlBudget budget = returnType.getMethodAnnotation(SqlBudget.class);
+        if (budget != null && counter.getCount() > budget.value()) {
+            String message = String.format("SQL 예산 초과: %s %s, 실행 %d회 (예산 %d회)",
+                    request.getMethod(), request.getURI().getPath(), counter.getCount(), budget.value());
+            if (failAll || budget.action() == SqlBudget.Action.FAIL) {
+                throw new SqlBudgetExceededException(message);
+            }
+            log.warn(message);
+        }
+        return body;
+    }
+}
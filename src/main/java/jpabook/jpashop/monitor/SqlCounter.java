@@ -0,0 +1,76 @@
+package jpabook.jpashop.monitor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 현재 스레드에서 실행된 SQL 수와 실행 시간
+ * 요청마다 SqlCountFilter가 시작/종료하고, p6spy가 SQL을 실행할 때마다 SqlCountListener가 더함
+ * 테스트에서는 start()로 직접 시작해서 특정 구간의 SQL 수를 셀 수 있음
+ *
+ * 스레드 단위로 세므로 BatchInLoader 병렬 모드처럼 다른 스레드에서 실행된 SQL은 포함되지 않음
+ */
+public class SqlCounter {
+
+    private static final ThreadLocal<SqlCounter> CURRENT = new ThreadLocal<>();
+
+    private int count;
+    private long elapsedNanos;
+
+    private SqlCounter() {
+    }
+
+    public static SqlCounter start() {
+        SqlCounter counter = new SqlCounter();
+        CURRENT.set(counter);
+        return counter;
+    }
+
+    /**
+     * 집계 중이 아니면 null
+     */
+    public static SqlCounter current() {
+        return CURRENT.get();
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * action 동안 실행된 SQL만 따로 셈. 바깥에서 집계 중이던 SqlCounter(요청)에도 그대로 더해짐
+     */
+    static SqlCounter measure(Runnable action) {
+        SqlCounter outer = CURRENT.get();
+        SqlCounter inner = new SqlCounter();
+        CURRENT.set(inner);
+        try {
+            action.run();
+        } finally {
+            if (outer != null) {
+                outer.count += inner.count;
+                outer.elapsedNanos += inner.elapsedNanos;
+                CURRENT.set(outer);
+            } else {
+                CURRENT.remove();
+            }
+        }
+        return inner;
+    }
+
+    void record(long timeElapsedNanos) {
+        count++;
+        elapsedNanos += timeElapsedNanos;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+}
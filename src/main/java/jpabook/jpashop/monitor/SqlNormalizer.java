@@ -0,0 +1,82 @@
+package jpabook.jpashop.monitor;
+
+import java.util.regex.Pattern;
+
+/**
+ * SQL을 모양(shape) 단위로 묶기 위한 정규화
+ * - 문자열/숫자 리터럴 -> ?
+ * - in (?, ?, ...) -> in (?...) : BatchInLoader padding, batch fetch 크기마다 다른 SQL이 하나로 묶임
+ * - 주석(use_sql_comments의 블록 주석, -- 줄 주석) -> 공백
+ * - 공백, 줄바꿈(format_sql) -> 공백 하나, 소문자
+ */
+public final class SqlNormalizer {
+
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+    private SqlNormalizer() {
+    }
+
+    public static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                //문자열 리터럴, '' 는 escape
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                sb.append('?');
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                appendSpace(sb);
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i + 2);
+                i = end < 0 ? length : end + 1;
+                appendSpace(sb);
+            } else if (Character.isDigit(c) && !isIdentifierPart(sb)) {
+                //식별자 안의 숫자(order0_)는 그대로 둠
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                sb.append('?');
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                appendSpace(sb);
+            } else {
+                sb.append(Character.toLowerCase(c));
+                i++;
+            }
+        }
+        String normalized = sb.toString().trim();
+        return IN_LIST.matcher(normalized).replaceAll("(?...)");
+    }
+
+    //연속된 공백, 주석은 공백 하나로
+    private static void appendSpace(StringBuilder sb) {
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+            sb.append(' ');
+        }
+    }
+
+    private static boolean isIdentifierPart(StringBuilder sb) {
+        if (sb.length() == 0) {
+            return false;
+        }
+        char prev = sb.charAt(sb.length() - 1);
+        return Character.isLetterOrDigit(prev) || prev == '_' || prev == '$';
+    }
+}
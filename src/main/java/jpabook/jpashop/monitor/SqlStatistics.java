@@ -0,0 +1,235 @@
+package jpabook.jpashop.monitor;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * SQL 모양(shape)별 실행 통계와 느린 SQL 기록(선택 기능, jpashop.sql-stats.enabled)
+ * 외부 APM 없이 OrderRepository, 쿼리 레포지토리 중 어떤 SQL이 시간을 가장 많이 쓰는지 확인
+ *
+ * 메모리를 일정하게 유지하기 위해 전부 고정 크기
+ * - 모양은 최대 maxShapes개, 넘으면 (other)로 합침
+ * - 실행 시간은 2배씩 커지는 버킷(1ms 미만, 2ms 미만 ... )의 히스토그램으로만 보관
+ * - 느린 SQL은 최근 slowCapacity개만 ring buffer에 바인딩 값과 함께 보관
+ */
+@Component
+public class SqlStatistics {
+
+    static final String OTHER = "(other)";
+    private static final int BUCKETS = 18; //마지막 버킷: 2^16ms(약 65초) 이상
+
+    private final boolean enabled;
+    private final int maxShapes;
+    private final long slowThresholdNanos;
+
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    //Hibernate가 만드는 SQL 문자열은 매번 같으므로 정규화 결과를 재사용
+    private final Map<String, String> normalized = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<SlowQuery> slowQueries;
+    private final AtomicLong slowSequence = new AtomicLong();
+
+    public SqlStatistics(@Value("${jpashop.sql-stats.enabled:false}") boolean enabled,
+                         @Value("${jpashop.sql-stats.max-shapes:500}") int maxShapes,
+                         @Value("${jpashop.sql-stats.slow-threshold-ms:100}") long slowThresholdMillis,
+                         @Value("${jpashop.sql-stats.slow-capacity:100}") int slowCapacity) {
+        this.enabled = enabled;
+        this.maxShapes = maxShapes;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.slowQueries = new AtomicReferenceArray<>(slowCapacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param sqlWithValues 바인딩 값이 들어간 SQL, 느린 SQL이거나 처음 본 모양일 때만 호출
+     */
+    public void record(String sql, Supplier<String> sqlWithValues, long elapsedNanos, boolean failed) {
+        if (!enabled || sql == null || sql.isEmpty()) {
+            return;
+        }
+        String shape = shapeOf(sql);
+        ShapeStats stats = shapes.get(shape);
+        if (stats == null) {
+            if (shapes.size() >= maxShapes) {
+                shape = OTHER;
+            }
+            String key = shape;
+            stats = shapes.computeIfAbsent(key, k -> new ShapeStats(k, sqlWithValues.get()));
+        }
+        stats.record(elapsedNanos, failed);
+
+        if (elapsedNanos >= slowThresholdNanos) {
+            long sequence = slowSequence.getAndIncrement();
+            slowQueries.set((int) (sequence % slowQueries.length()),
+                    new SlowQuery(sequence, shape, sqlWithValues.get(), elapsedNanos, Thread.currentThread().getName()));
+        }
+    }
+
+    private String shapeOf(String sql) {
+        String shape = normalized.get(sql);
+        if (shape == null) {
+            shape = SqlNormalizer.normalize(sql);
+            if (normalized.size() < maxShapes * 4) {
+                normalized.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * 총 실행 시간이 큰 순서
+     */
+    public List<ShapeReport> top(int limit) {
+        return shapes.values().stream()
+                .map(ShapeReport::new)
+                .sorted(Comparator.comparingDouble(ShapeReport::getTotalMillis).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 최근 느린 SQL, 최신순
+     */
+    public List<SlowQuery> slowQueries() {
+        List<SlowQuery> result = new ArrayList<>();
+        for (int i = 0; i < slowQueries.length(); i++) {
+            SlowQuery query = slowQueries.get(i);
+            if (query != null) {
+                result.add(query);
+            }
+        }
+        result.sort(Comparator.comparingLong(SlowQuery::getSequence).reversed());
+        return result;
+    }
+
+    public void reset() {
+        shapes.clear();
+        for (int i = 0; i < slowQueries.length(); i++) {
+            slowQueries.set(i, null);
+        }
+    }
+
+    //[0, 1ms) [1, 2ms) [2, 4ms) ...
+    static int bucketOf(long elapsedNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        if (micros < 1000) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(micros / 1000);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    //버킷의 상한(ms)
+    static long bucketUpperMillis(int bucket) {
+        return 1L << bucket;
+    }
+
+    private static final class ShapeStats {
+        private final String shape;
+        private final String sample; //처음 본 SQL(바인딩 값 포함), 실행 계획 확인용
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private ShapeStats(String shape, String sample) {
+            this.shape = shape;
+            this.sample = sample;
+        }
+
+        private void record(long elapsedNanos, boolean failed) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+            histogram.incrementAndGet(bucketOf(elapsedNanos));
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+
+    @Getter
+    public static class ShapeReport {
+        private final String shape;
+        private final String sample;
+        private final long count;
+        private final long errors;
+        private final double totalMillis;
+        private final double avgMillis;
+        private final double maxMillis;
+        private final long p50Millis; //히스토그램 버킷 상한 기준(이하)
+        private final long p95Millis;
+        private final long p99Millis;
+        private final long[] histogram;
+
+        private ShapeReport(ShapeStats stats) {
+            this.shape = stats.shape;
+            this.sample = stats.sample;
+            this.count = stats.count.sum();
+            this.errors = stats.errors.sum();
+            this.totalMillis = stats.totalNanos.sum() / 1_000_000.0;
+            this.avgMillis = count == 0 ? 0 : totalMillis / count;
+            this.maxMillis = stats.maxNanos.get() / 1_000_000.0;
+            this.histogram = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = stats.histogram.get(i);
+            }
+            this.p50Millis = percentile(0.50);
+            this.p95Millis = percentile(0.95);
+            this.p99Millis = percentile(0.99);
+        }
+
+        private long percentile(double p) {
+            long total = 0;
+            for (long c : histogram) {
+                total += c;
+            }
+            long rank = (long) Math.ceil(total * p);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= rank && seen > 0) {
+                    return bucketUpperMillis(i);
+                }
+            }
+            return 0;
+        }
+    }
+
+    @Getter
+    public static class SlowQuery {
+        private final long sequence;
+        private final String shape;
+        private final String sql; //바인딩 값 포함
+        private final double millis;
+        private final String thread;
+        private final LocalDateTime executedAt = LocalDateTime.now();
+
+        private SlowQuery(long sequence, String shape, String sql, long elapsedNanos, String thread) {
+            this.sequence = sequence;
+            this.shape = shape;
+            this.sql = sql;
+            this.millis = elapsedNanos / 1_000_000.0;
+            this.thread = thread;
+        }
+    }
+}
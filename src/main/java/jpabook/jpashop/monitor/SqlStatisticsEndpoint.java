@@ -0,0 +1,42 @@
+package jpabook.jpashop.monitor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GET /actuator/sqlstats?top=20: 총 실행 시간이 큰 SQL 모양
+ * GET /actuator/sqlstats/slow: 최근 느린 SQL(바인딩 값 포함)
+ * DELETE /actuator/sqlstats: 집계 초기화
+ */
+@Component
+@Endpoint(id = "sqlstats")
+@RequiredArgsConstructor
+public class SqlStatisticsEndpoint {
+
+    private final SqlStatistics sqlStatistics;
+
+    @ReadOperation
+    public List<SqlStatistics.ShapeReport> top(@Nullable Integer top) {
+        return sqlStatistics.top(top == null ? 20 : top);
+    }
+
+    @ReadOperation
+    public List<SqlStatistics.SlowQuery> slow(@Selector String section) {
+        if (!"slow".equals(section)) {
+            throw new IllegalArgumentException("지원하지 않는 항목입니다: " + section);
+        }
+        return sqlStatistics.slowQueries();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        sqlStatistics.reset();
+    }
+}
@@ -0,0 +1,26 @@
+package jpabook.jpashop.monitor;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+/**
+ * p6spy 이벤트 리스너: 실행된 SQL을 SqlStatistics에 기록
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlStatisticsListener extends SimpleJdbcEventListener {
+
+    private final SqlStatistics sqlStatistics;
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (sqlStatistics.isEnabled()) {
+            sqlStatistics.record(statementInformation.getSql(), statementInformation::getSqlWithValues,
+                    timeElapsedNanos, e != null);
+        }
+    }
+}
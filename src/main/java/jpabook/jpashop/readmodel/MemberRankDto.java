@@ -0,0 +1,24 @@
+package jpabook.jpashop.readmodel;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+@Getter
+public class MemberRankDto {
+    private Long memberId;
+    private String name;
+    private long orderCount;
+    private long cancelledCount;
+    private long totalSpent;
+    private LocalDateTime lastOrderDate;
+
+    public MemberRankDto(Long memberId, String name, long orderCount, long cancelledCount, long totalSpent, LocalDateTime lastOrderDate) {
+        this.memberId = memberId;
+        this.name = name;
+        this.orderCount = orderCount;
+        this.cancelledCount = cancelledCount;
+        this.totalSpent = totalSpent;
+        this.lastOrderDate = lastOrderDate;
+    }
+}
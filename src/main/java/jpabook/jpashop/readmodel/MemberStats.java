@@ -0,0 +1,51 @@
+package jpabook.jpashop.readmodel;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 회원별 주문 통계: 회원 하나당 한 row
+ * 주문/취소할 때 같은 트랜잭션에서 증감(delta)만 반영하므로 매출 순위를 주문, 주문상품을 읽지 않고 바로 조회할 수 있음
+ * 어긋난 값은 MemberStatsRecomputer가 원본으로 다시 계산해서 맞춤
+ * - orderCount: 취소 포함 전체 주문 수
+ * - cancelledCount: 취소된 주문 수
+ * - totalSpent: 취소되지 않은 주문의 총 금액
+ */
+@Entity
+@Table(name = "member_stats", indexes = {
+        @Index(name = "idx_member_stats_spent_id", columnList = "totalSpent, member_id") //매출 순위 키셋 페이징
+})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class MemberStats {
+
+    @Id
+    @Column(name = "member_id")
+    private Long memberId;
+
+    //MemberStatsRepository.ensureRows가 member_id만 넣어도 row가 만들어지도록 default 0
+    @ColumnDefault("0")
+    private long orderCount;
+    @ColumnDefault("0")
+    private long cancelledCount;
+    @ColumnDefault("0")
+    private long totalSpent;
+    private LocalDateTime lastOrderDate;
+
+    public MemberStats(Long memberId) {
+        this.memberId = memberId;
+    }
+
+    //다시 계산한 값으로 덮어씀
+    public void replace(long orderCount, long cancelledCount, long totalSpent, LocalDateTime lastOrderDate) {
+        this.orderCount = orderCount;
+        this.cancelledCount = cancelledCount;
+        this.totalSpent = totalSpent;
+        this.lastOrderDate = lastOrderDate;
+    }
+}
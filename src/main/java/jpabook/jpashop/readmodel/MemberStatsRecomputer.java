@@ -0,0 +1,130 @@
+package jpabook.jpashop.readmodel;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jpabook.jpashop.sharding.ShardedOrderStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 회원별 주문 통계(member_stats) 전체 다시 계산
+ * 평소에는 주문/취소할 때 증감만 반영하고, 이 작업으로 원본과 어긋난 값(이벤트 없이 들어간 주문 등)을 맞춤
+ * - 회원 id를 chunk-size개씩 나눠서 threads개 스레드로 동시에 계산, chunk마다 별도 트랜잭션
+ * - chunk 안의 통계 row에 lock을 잡고 계산하므로 도는 동안 들어온 주문/취소도 잃지 않음(MemberStatsRepository.recompute)
+ * 샤딩 모드에서는 주문이 기존 DB에 없으므로 실행하지 않음(증감 반영만 함)
+ *
+ * 메트릭: jpashop.member-stats.recompute(전체 다시 계산 시간)
+ */
+@Slf4j
+@Component
+public class MemberStatsRecomputer {
+
+    private final MemberStatsRepository memberStatsRepository;
+    private final ShardedOrderStore shardedOrderStore;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+    private final boolean recomputeOnStartup;
+    private final int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Timer duration;
+
+    public MemberStatsRecomputer(MemberStatsRepository memberStatsRepository, ShardedOrderStore shardedOrderStore,
+                                 EntityManager em, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                 @Value("${jpashop.member-stats.recompute-on-startup:true}") boolean recomputeOnStartup,
+                                 @Value("${jpashop.member-stats.threads:4}") int threads,
+                                 @Value("${jpashop.member-stats.chunk-size:500}") int chunkSize) {
+        this.memberStatsRepository = memberStatsRepository;
+        this.shardedOrderStore = shardedOrderStore;
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.recomputeOnStartup = recomputeOnStartup;
+        this.chunkSize = chunkSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "member-stats-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.duration = Timer.builder("jpashop.member-stats.recompute")
+                .description("회원별 주문 통계 전체 다시 계산 시간")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    //InitDB, DataGenerator 주문은 증감 반영 없이 들어가므로 시작할 때 백그라운드에서 계산
+    @EventListener(ApplicationReadyEvent.class)
+    public void recomputeOnStartup() {
+        if (!recomputeOnStartup || shardedOrderStore.isEnabled()) {
+            return;
+        }
+        Thread thread = new Thread(this::recomputeAll, "member-stats-recompute");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Scheduled(initialDelayString = "${jpashop.member-stats.interval-ms:3600000}",
+            fixedDelayString = "${jpashop.member-stats.interval-ms:3600000}")
+    public void scheduled() {
+        if (!shardedOrderStore.isEnabled()) {
+            recomputeAll();
+        }
+    }
+
+    /**
+     * 모든 회원의 통계를 다시 계산하고 계산한 회원 수를 반환
+     * 이미 실행 중이면 바로 0 (스케줄과 수동 실행이 겹치지 않게)
+     */
+    public int recomputeAll() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            return duration.recordCallable(() -> {
+                List<Long> memberIds = transactionTemplate.execute(status ->
+                        em.createQuery("select m.id from Member m order by m.id", Long.class).getResultList());
+                List<Future<Integer>> futures = new ArrayList<>();
+                for (int from = 0; from < memberIds.size(); from += chunkSize) {
+                    List<Long> chunk = memberIds.subList(from, Math.min(from + chunkSize, memberIds.size()));
+                    futures.add(workers.submit(() -> transactionTemplate.execute(status -> memberStatsRepository.recompute(chunk))));
+                }
+                int total = 0;
+                for (Future<Integer> future : futures) {
+                    total += future.get();
+                }
+                log.info("회원 주문 통계 다시 계산: 회원 {}명", total);
+                return total;
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("회원 주문 통계를 다시 계산하지 못했습니다.", e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("회원 주문 통계를 다시 계산하지 못했습니다.", e);
+        } finally {
+            running.set(false);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package jpabook.jpashop.readmodel;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Repository
+@RequiredArgsConstructor
+public class MemberStatsRepository {
+
+    private final EntityManager em;
+
+    public void save(MemberStats stats) {
+        em.persist(stats);
+    }
+
+    /**
+     * 주문 1건 반영, row가 없으면 만들어서 반영
+     * 읽고 고치지 않고 update 한 번으로 더함 -> 같은 회원의 주문이 동시에 와도 row lock 순서대로 모두 반영됨
+     */
+    public void recordOrder(Long memberId, int amount, LocalDateTime orderDate) {
+        String jpql = "update MemberStats s set s.orderCount = s.orderCount + 1, s.totalSpent = s.totalSpent + :amount," +
+                " s.lastOrderDate = case when s.lastOrderDate is null or s.lastOrderDate < :orderDate then :orderDate else s.lastOrderDate end" +
+                " where s.memberId = :memberId";
+        if (update(jpql, memberId, amount, orderDate) == 0) {
+            ensureRows(List.of(memberId)); //다시 계산하기 전에 가입한 회원 등
+            update(jpql, memberId, amount, orderDate);
+        }
+    }
+
+    /**
+     * 취소 1건 반영: 주문 수는 그대로, 취소 수 +1, 금액은 뺌
+     */
+    public void recordCancel(Long memberId, int amount) {
+        String jpql = "update MemberStats s set s.cancelledCount = s.cancelledCount + 1, s.totalSpent = s.totalSpent - :amount" +
+                " where s.memberId = :memberId";
+        if (update(jpql, memberId, amount, null) == 0) {
+            ensureRows(List.of(memberId));
+            update(jpql, memberId, amount, null);
+        }
+    }
+
+    /**
+     * 통계 row가 없는 회원만 0으로 만듦
+     * 없으면 persist 하는 방식은 같은 회원의 주문이 동시에 오면 둘 다 insert 해서 PK 위반
+     * -> H2 merge ... key: 다른 트랜잭션이 같은 row를 넣는 중이면 커밋을 기다렸다가 update로 처리
+     * 컬럼은 member_id만 지정하므로 이미 있는 row의 값은 바뀌지 않고, 새 row의 나머지 컬럼은 default(0)
+     */
+    private void ensureRows(Collection<Long> memberIds) {
+        StringBuilder sql = new StringBuilder("merge into member_stats (member_id) key(member_id) values ");
+        for (int i = 1; i <= memberIds.size(); i++) {
+            sql.append(i == 1 ? "" : ", ").append("(?").append(i).append(')');
+        }
+        //네이티브 SQL은 query space를 지정하지 않으면 2차 캐시 영역을 모두 비우므로 MemberStats만 지정
+        NativeQuery<?> merge = em.createNativeQuery(sql.toString())
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(MemberStats.class);
+        int position = 1;
+        for (Long memberId : memberIds) {
+            merge.setParameter(position++, memberId);
+        }
+        merge.executeUpdate();
+    }
+
+    private int update(String jpql, Long memberId, int amount, LocalDateTime orderDate) {
+        Query update = em.createQuery(jpql)
+                .setParameter("memberId", memberId)
+                .setParameter("amount", (long) amount);
+        if (orderDate != null) {
+            update.setParameter("orderDate", orderDate);
+        }
+        return update.executeUpdate();
+    }
+
+    /**
+     * 회원 id 목록의 통계를 원본(주문 + 보관 주문)으로 다시 계산해서 덮어씀
+     * 먼저 통계 row에 lock을 잡음: 진행 중인 주문/취소 트랜잭션(같은 row를 update)이 끝나길 기다렸다가 집계하고,
+     * 집계 뒤에 오는 주문/취소는 이 트랜잭션이 끝난 뒤 다시 계산한 값 위에 더해짐 -> 다시 계산하는 동안의 증감도 잃지 않음
+     */
+    public int recompute(List<Long> memberIds) {
+        if (memberIds.isEmpty()) {
+            return 0;
+        }
+        Map<Long, MemberStats> locked = lock(memberIds);
+        List<Long> missing = memberIds.stream()
+                .filter(id -> !locked.containsKey(id))
+                .sorted()
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            ensureRows(missing); //새 row도 이 트랜잭션이 끝날 때까지 lock이 잡혀 있음
+            locked.putAll(lock(missing));
+        }
+
+        Map<Long, Totals> totals = new HashMap<>();
+        for (String order : List.of("Order", "OrderArchive")) {
+            List<Object[]> counts = em.createQuery(
+                            "select o.member.id, count(o), sum(case when o.status = :cancel then 1 else 0 end), max(o.orderDate)" +
+                                    " from " + order + " o" +
+                                    " where o.member.id in :memberIds" +
+                                    " group by o.member.id", Object[].class)
+                    .setParameter("cancel", OrderStatus.CANCEL)
+                    .setParameter("memberIds", memberIds)
+                    .getResultList();
+            for (Object[] row : counts) {
+                totals.computeIfAbsent((Long) row[0], id -> new Totals())
+                        .addCounts((Long) row[1], (Long) row[2], (LocalDateTime) row[3]);
+            }
+        }
+        for (String orderItem : List.of("OrderItem", "OrderItemArchive")) {
+            List<Object[]> spent = em.createQuery(
+                            "select o.member.id, sum(oi.orderPrice * oi.count)" +
+                                    " from " + orderItem + " oi join oi.order o" +
+                                    " where o.member.id in :memberIds and o.status <> :cancel" +
+                                    " group by o.member.id", Object[].class)
+                    .setParameter("cancel", OrderStatus.CANCEL)
+                    .setParameter("memberIds", memberIds)
+                    .getResultList();
+            for (Object[] row : spent) {
+                totals.computeIfAbsent((Long) row[0], id -> new Totals()).totalSpent += ((Number) row[1]).longValue();
+            }
+        }
+
+        for (Long memberId : memberIds) {
+            MemberStats stats = locked.get(memberId);
+            Totals t = totals.getOrDefault(memberId, new Totals());
+            stats.replace(t.orderCount, t.cancelledCount, t.totalSpent, t.lastOrderDate);
+        }
+        return memberIds.size();
+    }
+
+    private Map<Long, MemberStats> lock(Collection<Long> memberIds) {
+        return em.createQuery(
+                        "select s from MemberStats s where s.memberId in :memberIds order by s.memberId", MemberStats.class)
+                .setParameter("memberIds", memberIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList().stream()
+                .collect(Collectors.toMap(MemberStats::getMemberId, Function.identity(), (a, b) -> a, HashMap::new));
+    }
+
+    /**
+     * 매출 순위: 총 금액 내림차순 키셋 페이징, 주문 테이블은 읽지 않음(member_stats + 회원 이름)
+     */
+    @Transactional(readOnly = true) //controller에서 바로 호출
+    public List<MemberRankDto> findRanking(SpendCursor cursor, int limit) {
+        String jpql = "select new jpabook.jpashop.readmodel.MemberRankDto(s.memberId, m.name, s.orderCount, s.cancelledCount, s.totalSpent, s.lastOrderDate)" +
+                " from MemberStats s" +
+                " join Member m on m.id = s.memberId";
+        if (cursor != null) {
+            jpql += " where s.totalSpent < :totalSpent" +
+                    " or (s.totalSpent = :totalSpent and s.memberId < :memberId)";
+        }
+        jpql += " order by s.totalSpent desc, s.memberId desc";
+        TypedQuery<MemberRankDto> query = em.createQuery(jpql, MemberRankDto.class)
+                .setMaxResults(limit);
+        if (cursor != null) {
+            query.setParameter("totalSpent", cursor.getTotalSpent())
+                    .setParameter("memberId", cursor.getMemberId());
+        }
+        return query.getResultList();
+    }
+
+    private static final class Totals {
+        long orderCount;
+        long cancelledCount;
+        long totalSpent;
+        LocalDateTime lastOrderDate;
+
+        void addCounts(long orderCount, long cancelledCount, LocalDateTime lastOrderDate) {
+            this.orderCount += orderCount;
+            this.cancelledCount += cancelledCount;
+            if (this.lastOrderDate == null || (lastOrderDate != null && lastOrderDate.isAfter(this.lastOrderDate))) {
+                this.lastOrderDate = lastOrderDate;
+            }
+        }
+    }
+}
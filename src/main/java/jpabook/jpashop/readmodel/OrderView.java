@@ -0,0 +1,51 @@
+package jpabook.jpashop.readmodel;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 조회 모델(CQRS): 주문 하나당 한 row, 조회에 필요한 값을 모두 복사해 둠
+ * orders, member, delivery, order_item, item을 join하지 않고 (order_date, order_id) 인덱스 한 번으로 응답을 만듦
+ * 주문/취소/회원 이름 변경 이벤트를 받아서 OrderViewProjector가 비동기로 갱신 -> 원본보다 조금 늦을 수 있음
+ */
+@Entity
+@Table(name = "order_view", indexes = {
+        @Index(name = "idx_order_view_order_date_id", columnList = "orderDate, order_id"), //최신순 키셋 페이징
+        @Index(name = "idx_order_view_member_id", columnList = "memberId") //회원 이름 변경 반영
+})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderView {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    private Long memberId;
+    private String memberName;
+
+    @Embedded
+    private Address address;
+
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @Enumerated(EnumType.STRING)
+    private DeliveryStatus deliveryStatus;
+
+    @Lob
+    private String items; //주문상품 목록 JSON, 응답에 그대로 씀
+
+    private LocalDateTime updatedAt; //마지막으로 반영한 시간
+
+    //저장은 OrderViewRepository.upsert/insertIfAbsent(네이티브 merge)로만 함
+}
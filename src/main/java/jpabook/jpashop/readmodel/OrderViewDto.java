@@ -0,0 +1,29 @@
+package jpabook.jpashop.readmodel;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+//V4~V6의 OrderQueryDto와 같은 모양으로 응답, 주문상품은 저장해 둔 JSON을 다시 파싱하지 않고 그대로 씀
+@Getter
+public class OrderViewDto {
+    private Long orderId;
+    private String name;
+    private LocalDateTime orderDate;
+    private OrderStatus orderStatus;
+    private Address address;
+    @JsonRawValue
+    private String orderItems;
+
+    public OrderViewDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address, String orderItems) {
+        this.orderId = orderId;
+        this.name = name;
+        this.orderDate = orderDate;
+        this.orderStatus = orderStatus;
+        this.address = address;
+        this.orderItems = orderItems;
+    }
+}
@@ -0,0 +1,194 @@
+package jpabook.jpashop.readmodel;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jpabook.jpashop.event.DomainEvent;
+import jpabook.jpashop.event.MemberRenamed;
+import jpabook.jpashop.event.OrderCancelled;
+import jpabook.jpashop.event.OrderPlaced;
+import jpabook.jpashop.event.OutboxMessage;
+import jpabook.jpashop.event.OutboxSubscriber;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.sharding.ShardedOrderStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * order_view 갱신(outbox 구독자)
+ * - 주문/취소 이벤트: 이벤트 값으로 row를 고치지 않고 해당 주문을 원본에서 다시 읽어서 덮어씀(upsert)
+ *   -> 같은 이벤트가 두 번 와도, 순서가 섞여도 결과가 같음(멱등). 원본에 없으면(보관 등) row 삭제
+ *   묶음 안의 주문은 in 절로 한번에 조회(주문 1번 + 주문상품 1번)
+ *   재구성과 같은 주문을 동시에 넣다가 실패하면 예외 -> outbox가 다시 전달
+ * - 회원 이름 변경: member_id로 한번에 update
+ * 상품 이름 변경은 반영하지 않음(주문 당시 상품 이름을 보여줌)
+ *
+ * 메트릭: jpashop.order-view.staleness(이벤트 저장부터 order_view 반영까지, 조회 모델이 원본보다 늦은 정도)
+ */
+@Slf4j
+@Component
+public class OrderViewProjector implements OutboxSubscriber {
+
+    private static final int REBUILD_CHUNK_SIZE = 500;
+    private static final int REBUILD_MAX_ATTEMPTS = 3;
+
+    private final OrderViewRepository orderViewRepository;
+    private final OrderQueryRepository orderQueryRepository;
+    private final ShardedOrderStore shardedOrderStore;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean rebuildOnStartup;
+    private final Timer staleness;
+
+    public OrderViewProjector(OrderViewRepository orderViewRepository, OrderQueryRepository orderQueryRepository,
+                              ShardedOrderStore shardedOrderStore, ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                              @Value("${jpashop.order-view.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.orderViewRepository = orderViewRepository;
+        this.orderQueryRepository = orderQueryRepository;
+        this.shardedOrderStore = shardedOrderStore;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.staleness = Timer.builder("jpashop.order-view.staleness")
+                .description("outbox 이벤트 저장부터 order_view 반영까지")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void handle(List<OutboxMessage> messages) {
+        Set<Long> orderIds = new LinkedHashSet<>();
+        Map<Long, String> renames = new LinkedHashMap<>(); //같은 회원이 여러 번 바뀌면 마지막 이름
+        for (OutboxMessage message : messages) {
+            DomainEvent event = message.getEvent();
+            if (event instanceof OrderPlaced) {
+                orderIds.add(((OrderPlaced) event).getOrderId());
+            } else if (event instanceof OrderCancelled) {
+                orderIds.add(((OrderCancelled) event).getOrderId());
+            } else if (event instanceof MemberRenamed) {
+                renames.put(((MemberRenamed) event).getMemberId(), ((MemberRenamed) event).getName());
+            }
+        }
+        if (orderIds.isEmpty() && renames.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            refresh(orderIds, false);
+            renames.forEach(orderViewRepository::renameMember);
+        });
+        LocalDateTime now = LocalDateTime.now();
+        for (OutboxMessage message : messages) {
+            DomainEvent event = message.getEvent();
+            if (event instanceof OrderPlaced || event instanceof OrderCancelled || event instanceof MemberRenamed) {
+                staleness.record(Duration.between(message.getCreatedAt(), now));
+            }
+        }
+    }
+
+    //주문을 원본에서 다시 읽어서 order_view에 덮어씀, 원본에 없는 주문은 삭제
+    //onlyAbsent: 재구성 - 이미 있는 row는 구독자가 더 최신 값으로 넣었을 수 있으므로 없는 row만 넣음
+    private void refresh(Collection<Long> orderIds, boolean onlyAbsent) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        Map<Long, OrderQueryDto> orders = orderQueryRepository.findAllByDto_optimization(orderIds).stream()
+                .collect(Collectors.toMap(OrderQueryDto::getOrderId, Function.identity()));
+        LocalDateTime now = LocalDateTime.now();
+        for (OrderQueryDto order : orders.values()) {
+            if (onlyAbsent && shardedOrderStore.isEnabled()) {
+                orderViewRepository.insertIfAbsent(order, toJson(order.getOrderItems()), now); //기존 DB의 orders는 비어 있음
+            } else if (onlyAbsent) {
+                orderViewRepository.insertIfAbsentAndExists(order, toJson(order.getOrderItems()), now);
+            } else {
+                orderViewRepository.upsert(order, toJson(order.getOrderItems()), now);
+            }
+        }
+        List<Long> vanished = orderIds.stream()
+                .filter(id -> !orders.containsKey(id))
+                .collect(Collectors.toList());
+        if (!vanished.isEmpty()) {
+            orderViewRepository.deleteByIds(vanished);
+        }
+    }
+
+    private String toJson(List<OrderItemQueryDto> orderItems) {
+        try {
+            return objectMapper.writeValueAsString(orderItems == null ? Collections.emptyList() : orderItems);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("주문상품을 JSON으로 바꿀 수 없습니다.", e);
+        }
+    }
+
+    /**
+     * order_view에 없는 주문을 원본으로 채움
+     * 이벤트 없이 들어간 주문(DataGenerator)이 있거나 조회 모델을 처음 만들 때 사용. 구독자와 동시에 돌아도 결과는 같음
+     * - 있는 row는 덮어쓰지 않음: 재구성이 읽은 값보다 구독자가 나중에 읽은 값이 최신
+     * - 구독자가 같은 주문을 넣는 중이라 실패한 chunk는 새 트랜잭션에서 다시 시도(이미 들어간 row는 건너뜀)
+     * @return 처리한 주문 수(끝내 실패한 chunk는 로그를 남기고 건너뜀)
+     */
+    public int rebuild() {
+        List<Long> orderIds = transactionTemplate.execute(status -> orderQueryRepository.findOrderIds());
+        int failed = 0;
+        for (int from = 0; from < orderIds.size(); from += REBUILD_CHUNK_SIZE) {
+            List<Long> chunk = orderIds.subList(from, Math.min(from + REBUILD_CHUNK_SIZE, orderIds.size()));
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> refresh(chunk, true));
+                    break;
+                } catch (RuntimeException e) {
+                    if (attempt >= REBUILD_MAX_ATTEMPTS) {
+                        log.error("order_view 재구성 chunk 실패: 주문 {}~{}", chunk.get(0), chunk.get(chunk.size() - 1), e);
+                        failed += chunk.size();
+                        break;
+                    }
+                    log.warn("order_view 재구성 chunk 재시도({}/{}): 주문 {}~{}, {}", attempt, REBUILD_MAX_ATTEMPTS,
+                            chunk.get(0), chunk.get(chunk.size() - 1), e.toString());
+                }
+            }
+        }
+        return orderIds.size() - failed;
+    }
+
+    //ddl-auto: create라 시작할 때마다 order_view가 비어 있으므로 백그라운드에서 채움
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                int count = rebuild();
+                log.info("order_view 재구성: 주문 {}개, {}ms", count, System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                //잡지 않으면 스레드만 조용히 끝나고 order_view가 비어 있는 채로 남음
+                log.error("order_view 재구성 실패", e);
+            }
+        }, "order-view-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,121 @@
+package jpabook.jpashop.readmodel;
+
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class OrderViewRepository {
+
+    private final EntityManager em;
+
+    public List<OrderView> findByIds(Collection<Long> orderIds) {
+        return em.createQuery("select v from OrderView v where v.orderId in :orderIds", OrderView.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    private static final String COLUMNS = "order_id, member_id, member_name, city, street, zipcode," +
+            " order_date, status, delivery_status, items, updated_at";
+    private static final String VALUES = ":memberId, :memberName, :city, :street, :zipcode," +
+            " :orderDate, :status, :deliveryStatus, :items, :updatedAt";
+
+    /**
+     * 원본에서 읽은 주문으로 row를 덮어씀(없으면 insert) - 구독자용
+     * 조회 후 없으면 persist 하는 방식은 동시에 같은 주문을 넣으면 PK 위반 -> DB에서 한 문장으로 처리
+     * 다른 트랜잭션이 같은 주문을 넣는 중이면 실패할 수 있음 -> 호출한 쪽에서 다시 시도(outbox 재전달)
+     */
+    public void upsert(OrderQueryDto order, String items, LocalDateTime updatedAt) {
+        bind(em.createNativeQuery("merge into order_view (" + COLUMNS + ") key(order_id)" +
+                " values (:orderId, " + VALUES + ")"), order, items, updatedAt)
+                .setParameter("orderId", order.getOrderId())
+                .executeUpdate();
+    }
+
+    /**
+     * row가 없고 주문이 아직 orders에 있을 때만 insert - 재구성용
+     * 재구성은 읽은 뒤 쓰기까지 시간이 걸려서 그 사이 구독자가 더 최신 값을 넣었을 수 있음 -> 있는 row는 건드리지 않음
+     * 그 사이 보관(삭제)된 주문은 orders에 없으므로 넣지 않음
+     */
+    public void insertIfAbsentAndExists(OrderQueryDto order, String items, LocalDateTime updatedAt) {
+        insertIfAbsent("select o.order_id from orders o where o.order_id = :orderId", order, items, updatedAt);
+    }
+
+    /**
+     * row가 없을 때만 insert - 샤딩 모드 재구성용
+     * 주문이 shard에 있어서 기존 DB의 orders로는 확인할 수 없음(샤딩 모드에서는 보관을 돌리지 않으므로 확인하지 않아도 됨)
+     */
+    public void insertIfAbsent(OrderQueryDto order, String items, LocalDateTime updatedAt) {
+        insertIfAbsent("select cast(:orderId as bigint) order_id", order, items, updatedAt);
+    }
+
+    private void insertIfAbsent(String source, OrderQueryDto order, String items, LocalDateTime updatedAt) {
+        bind(em.createNativeQuery("merge into order_view v" +
+                " using (" + source + ") s on (v.order_id = s.order_id)" +
+                " when not matched then insert (" + COLUMNS + ") values (s.order_id, " + VALUES + ")"), order, items, updatedAt)
+                .setParameter("orderId", order.getOrderId())
+                .executeUpdate();
+    }
+
+    //네이티브 SQL은 query space를 지정하지 않으면 2차 캐시 영역을 모두 비우므로 OrderView만 지정
+    private NativeQuery<?> bind(Query query, OrderQueryDto order, String items, LocalDateTime updatedAt) {
+        return query.unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(OrderView.class)
+                .setParameter("memberId", order.getMemberId())
+                .setParameter("memberName", order.getName())
+                .setParameter("city", order.getAddress() == null ? null : order.getAddress().getCity())
+                .setParameter("street", order.getAddress() == null ? null : order.getAddress().getStreet())
+                .setParameter("zipcode", order.getAddress() == null ? null : order.getAddress().getZipcode())
+                .setParameter("orderDate", order.getOrderDate())
+                .setParameter("status", order.getOrderStatus().name())
+                .setParameter("deliveryStatus", order.getDeliveryStatus() == null ? null : order.getDeliveryStatus().name())
+                .setParameter("items", items)
+                .setParameter("updatedAt", updatedAt);
+    }
+
+    public int deleteByIds(Collection<Long> orderIds) {
+        return em.createQuery("delete from OrderView v where v.orderId in :orderIds")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    //회원 이름을 복사해 둔 row를 한번에 고침(member_id 인덱스)
+    public int renameMember(Long memberId, String name) {
+        return em.createQuery("update OrderView v set v.memberName = :name where v.memberId = :memberId")
+                .setParameter("name", name)
+                .setParameter("memberId", memberId)
+                .executeUpdate();
+    }
+
+    /**
+     * 최신순 키셋 페이징, join 없이 order_view 하나만 읽음
+     */
+    @Transactional(readOnly = true) //controller에서 바로 호출
+    public List<OrderViewDto> findPage(OrderCursor cursor, int limit) {
+        String jpql = "select new jpabook.jpashop.readmodel.OrderViewDto(v.orderId, v.memberName, v.orderDate, v.status, v.address, v.items)" +
+                " from OrderView v";
+        if (cursor != null) {
+            jpql += " where v.orderDate < :orderDate" +
+                    " or (v.orderDate = :orderDate and v.orderId < :orderId)";
+        }
+        jpql += " order by v.orderDate desc, v.orderId desc";
+        TypedQuery<OrderViewDto> query = em.createQuery(jpql, OrderViewDto.class)
+                .setMaxResults(limit);
+        if (cursor != null) {
+            query.setParameter("orderDate", cursor.getOrderDate())
+                    .setParameter("orderId", cursor.getOrderId());
+        }
+        return query.getResultList();
+    }
+}
@@ -0,0 +1,49 @@
+package jpabook.jpashop.readmodel;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 매출 순위 키셋 페이징용 커서: (totalSpent, member_id) 기준, OrderCursor와 같은 방식
+ */
+@Getter
+public class SpendCursor {
+
+    private static final String DELIMITER = "|";
+
+    private final long totalSpent;
+    private final Long memberId;
+
+    private SpendCursor(long totalSpent, Long memberId) {
+        this.totalSpent = totalSpent;
+        this.memberId = memberId;
+    }
+
+    public static SpendCursor of(long totalSpent, Long memberId) {
+        return new SpendCursor(totalSpent, memberId);
+    }
+
+    public String encode() {
+        String raw = totalSpent + DELIMITER + memberId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 토큰 해석, 토큰이 없으면 첫 페이지(null)
+     */
+    public static SpendCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idx = raw.lastIndexOf(DELIMITER);
+            return new SpendCursor(Long.parseLong(raw.substring(0, idx)), Long.valueOf(raw.substring(idx + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다.", e);
+        }
+    }
+}
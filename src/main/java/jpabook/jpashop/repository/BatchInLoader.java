@@ -0,0 +1,146 @@
+package jpabook.jpashop.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * in 절 연관 조회를 청크로 나눠서 실행
+ * id를 in 절 하나에 전부 넣으면
+ * 1. DB의 바인딩 파라미터 개수 제한에 걸릴 수 있음
+ * 2. id 개수마다 다른 SQL이 만들어져 쿼리 플랜 캐시가 오염됨
+ * -> 정해진 크기(8, 16, 32 ... MAX_CHUNK_SIZE)로만 나누고 남는 자리는 마지막 id로 채움(padding)
+ *
+ * 병렬 모드: 청크마다 별도의 EntityManager(=별도 커넥션)로 동시에 조회
+ * 호출한 트랜잭션의 커밋되지 않은 변경은 보이지 않으므로 조회 전용 경로에서만 사용
+ */
+@Component
+public class BatchInLoader {
+
+    static final int MIN_CHUNK_SIZE = 8;
+    static final int MAX_CHUNK_SIZE = 512;
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final boolean parallel;
+    private final ThreadPoolExecutor executor;
+
+    public BatchInLoader(EntityManager em, EntityManagerFactory emf,
+                         @Value("${jpashop.batch-loader.parallel:false}") boolean parallel,
+                         @Value("${jpashop.batch-loader.threads:4}") int threads) {
+        this.em = em;
+        this.emf = emf;
+        this.parallel = parallel;
+        //스레드 수와 대기열을 제한해서 커넥션 풀을 다 가져가지 않게 함. 꽉 차면 호출한 스레드가 직접 실행
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 4),
+                r -> {
+                    Thread thread = new Thread(r, "batch-in-loader-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * ids를 청크로 나눠 조회한 뒤 key(보통 부모 id) 기준으로 묶어서 반환
+     * @param query 청크 하나를 조회하는 쿼리 (EntityManager, 청크 id 목록)
+     * @param keyMapper 결과를 묶을 key
+     */
+    public <T> Map<Long, List<T>> loadGrouped(Collection<Long> ids,
+                                              BiFunction<EntityManager, List<Long>, List<T>> query,
+                                              Function<T, Long> keyMapper) {
+        Map<Long, List<T>> result = new HashMap<>();
+        for (List<T> rows : load(ids, query)) {
+            for (T row : rows) {
+                result.computeIfAbsent(keyMapper.apply(row), k -> new ArrayList<>()).add(row);
+            }
+        }
+        return result;
+    }
+
+    private <T> List<List<T>> load(Collection<Long> ids, BiFunction<EntityManager, List<Long>, List<T>> query) {
+        List<List<Long>> chunks = chunk(ids);
+        List<List<T>> results = new ArrayList<>(chunks.size());
+        if (!parallel || chunks.size() < 2) {
+            for (List<Long> chunk : chunks) {
+                results.add(query.apply(em, chunk));
+            }
+            return results;
+        }
+
+        List<Future<List<T>>> futures = new ArrayList<>(chunks.size());
+        for (List<Long> chunk : chunks) {
+            futures.add(executor.submit(() -> {
+                EntityManager chunkEm = emf.createEntityManager();
+                try {
+                    return query.apply(chunkEm, chunk);
+                } finally {
+                    chunkEm.close();
+                }
+            }));
+        }
+        try {
+            for (Future<List<T>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("청크 조회가 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("청크 조회에 실패했습니다.", e.getCause());
+        }
+        return results;
+    }
+
+    static List<List<Long>> chunk(Collection<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += MAX_CHUNK_SIZE) {
+            List<Long> chunk = new ArrayList<>(distinct.subList(from, Math.min(from + MAX_CHUNK_SIZE, distinct.size())));
+            int padded = paddedSize(chunk.size());
+            Long last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < padded) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static int paddedSize(int size) {
+        int padded = MIN_CHUNK_SIZE;
+        while (padded < size) {
+            padded <<= 1;
+        }
+        return Math.min(padded, MAX_CHUNK_SIZE);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
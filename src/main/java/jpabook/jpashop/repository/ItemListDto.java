@@ -0,0 +1,19 @@
+package jpabook.jpashop.repository;
+
+import lombok.Getter;
+
+//상품 목록 화면용, 캐시에 담아 여러 요청이 같이 쓰므로 불변(setter 없음)
+@Getter
+public class ItemListDto {
+    private final Long id;
+    private final String name;
+    private final int price;
+    private final int stockQuantity;
+
+    public ItemListDto(Long id, String name, int price, int stockQuantity) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.stockQuantity = stockQuantity;
+    }
+}
@@ -1,16 +1,28 @@
 package jpabook.jpashop.repository;
 
+import jpabook.jpashop.cache.DataVersions;
 import jpabook.jpashop.domain.Item.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 @RequiredArgsConstructor
 public class ItemRepository {
+    private static final String STOCK_QUERY_SPACE = "item_stock";
+
     private final EntityManager em;
+    private final DataVersions dataVersions;
 
     public void save(Item item) {
         if (item.getId() == null) {
@@ -27,8 +39,132 @@ public class ItemRepository {
         return em.find(Item.class, id);
     }
 
+    //in 절 한번으로 여러 상품 조회
+    public List<Item> findByIds(Collection<Long> ids) {
+        return em.createQuery("select i from Item i where i.id in :ids", Item.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
     public List<Item> findAll() {
         return em.createQuery("select i from Item i", Item.class)
                 .getResultList();
     }
+
+    //목록 캐시용: 엔티티가 아닌 DTO로 조회(영속성 컨텍스트에 묶이지 않음)
+    public List<ItemListDto> findAllListDto() {
+        return em.createQuery(
+                        "select new jpabook.jpashop.repository.ItemListDto(i.id, i.name, i.price, i.stockQuantity) from Item i", ItemListDto.class)
+                .getResultList();
+    }
+
+    /**
+     * 재고 감소(조건부 update 한 번으로 처리)
+     * 조회 -> 메모리에서 변경 -> 변경감지로 반영하면 동시에 주문이 들어올 때 나중에 커밋한 쪽이 덮어씀(lost update)
+     * -> DB에서 재고가 충분할 때만 차감하고, 변경된 row가 없으면 재고 부족
+     */
+    public Item removeStock(Long itemId, int quantity) {
+        decreaseStock(itemId, quantity);
+        return syncStock(itemId);
+    }
+
+    //영속성 컨텍스트는 맞추지 않고 조건부 update만 실행 (여러 상품을 한번에 주문할 때 사용)
+    public void decreaseStock(Long itemId, int quantity) {
+        int updated = updateStock(itemId, em.createNativeQuery(
+                        "update item set stock_quantity = stock_quantity - :quantity" +
+                                " where item_id = :itemId and stock_quantity >= :quantity")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId));
+        if (updated == 0) {
+            throw new NotEnoughStockException("need more stock");
+        }
+    }
+
+    /**
+     * 재고 증가(주문 취소 시 복구)
+     */
+    public Item addStock(Long itemId, int quantity) {
+        updateStock(itemId, em.createNativeQuery(
+                        "update item set stock_quantity = stock_quantity + :quantity" +
+                                " where item_id = :itemId")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId));
+        return syncStock(itemId);
+    }
+
+    /**
+     * 재고 변화량 반영(StockLedger가 모아둔 delta). 재고 확인은 장부에서 이미 끝났으므로 조건 없이 반영
+     */
+    public void applyStockDelta(Long itemId, long delta) {
+        updateStock(itemId, em.createNativeQuery(
+                        "update item set stock_quantity = stock_quantity + :delta" +
+                                " where item_id = :itemId")
+                .setParameter("delta", Math.toIntExact(delta))
+                .setParameter("itemId", itemId));
+    }
+
+    /**
+     * 이름, 가격만 변경(재고 컬럼은 건드리지 않음). 재고를 StockLedger가 관리하는 상품에 사용
+     * 변경감지로 고치면 전체 컬럼을 update하므로 읽은 뒤에 바뀐 재고를 예전 값으로 덮어씀
+     */
+    public void updateNameAndPrice(Long itemId, String name, int price) {
+        executeItemUpdate(itemId, em.createNativeQuery("update item set name = :name, price = :price where item_id = :itemId")
+                .setParameter("name", name)
+                .setParameter("price", price)
+                .setParameter("itemId", itemId));
+        syncStock(itemId);
+    }
+
+    public int findStockQuantity(Long itemId) {
+        List<Integer> result = em.createQuery(
+                        "select i.stockQuantity from Item i where i.id = :itemId", Integer.class)
+                .setParameter("itemId", itemId)
+                .getResultList();
+        if (result.isEmpty()) {
+            throw new IllegalStateException("존재하지 않는 상품입니다.");
+        }
+        return result.get(0);
+    }
+
+    /**
+     * 재고 update는 네이티브 SQL로 실행하고 2차 캐시에서 해당 상품만 제거
+     * JPQL 벌크 update는 Item 캐시 영역 전체를 비움 -> 주문이 들어올 때마다 상품 캐시가 모두 사라짐
+     * 네이티브 SQL도 query space를 지정하지 않으면 모든 캐시 영역을 비우므로 테이블과 상관없는 이름을 지정
+     * -> auto flush도 그 이름 기준으로만 동작하므로, 아직 insert 되지 않은 상품이 있을 수 있어 직접 flush
+     * 커밋 전에 다른 트랜잭션이 예전 재고를 다시 캐시에 올릴 수 있으므로 트랜잭션이 끝난 뒤에 한번 더 제거
+     */
+    private int updateStock(Long itemId, Query query) {
+        int updated = executeItemUpdate(itemId, query);
+        dataVersions.bumpAfterCompletion(DataVersions.Kind.STOCK); //상품 목록 캐시(재고 표시)
+        return updated;
+    }
+
+    //상품 한 건 네이티브 update + 2차 캐시에서 해당 상품만 제거
+    private int executeItemUpdate(Long itemId, Query query) {
+        em.flush();
+        int updated = query.unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(STOCK_QUERY_SPACE)
+                .executeUpdate();
+        Cache cache = em.getEntityManagerFactory().getCache();
+        cache.evict(Item.class, itemId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.evict(Item.class, itemId);
+                }
+            });
+        }
+        return updated;
+    }
+
+    //벌크 update는 영속성 컨텍스트를 거치지 않음(재고 외의 컬럼을 고친 경우도 같음)
+    //이미 올라와 있는 엔티티는 refresh로 DB 값을 다시 읽고, 없으면 프록시를 반환해서 사용할 때 최신 값을 조회
+    private Item syncStock(Long itemId) {
+        Item item = em.getReference(Item.class, itemId);
+        if (Hibernate.isInitialized(item)) {
+            em.refresh(item);
+        }
+        return item;
+    }
 }
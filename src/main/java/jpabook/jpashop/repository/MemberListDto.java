@@ -0,0 +1,18 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Address;
+import lombok.Getter;
+
+//회원 목록 화면용, 캐시에 담아 여러 요청이 같이 쓰므로 불변(setter 없음, Address도 값 타입이라 불변)
+@Getter
+public class MemberListDto {
+    private final Long id;
+    private final String name;
+    private final Address address;
+
+    public MemberListDto(Long id, String name, Address address) {
+        this.id = id;
+        this.name = name;
+        this.address = address;
+    }
+}
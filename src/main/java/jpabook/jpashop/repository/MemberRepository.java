@@ -28,6 +28,13 @@ public class MemberRepository  {
                 .getResultList();
     }
 
+    //목록 캐시용: 엔티티가 아닌 DTO로 조회(영속성 컨텍스트에 묶이지 않음)
+    public List<MemberListDto> findAllListDto() {
+        return em.createQuery(
+                        "select new jpabook.jpashop.repository.MemberListDto(m.id, m.name, m.address) from Member m", MemberListDto.class)
+                .getResultList();
+    }
+
     public List<Member> findByName(String name) {
         //parameter name binding .setParameter("name1", name) -> :name1
         return em.createQuery("select m from Member m where m.name = :name", Member.class)
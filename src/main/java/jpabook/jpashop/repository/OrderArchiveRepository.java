@@ -0,0 +1,143 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.archive.DeliveryArchive;
+import jpabook.jpashop.domain.archive.OrderArchive;
+import jpabook.jpashop.domain.archive.OrderItemArchive;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 보관(hot -> cold)
+ * 기본 주문 조회는 orders만 읽으므로, 더 이상 바뀌지 않는 오래된 주문을 보관 테이블로 옮겨서 hot 테이블을 작게 유지
+ * 보관 대상: 주문일이 기준보다 오래되었고 취소(CANCEL)되었거나 배송완료(COMP)된 주문
+ * -> 둘 다 다시 바뀌지 않는 상태라 옮기는 도중에 다른 트랜잭션이 고칠 일이 없음
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderArchiveRepository {
+
+    private final EntityManager em;
+
+    /**
+     * 보관 대상 주문 id, 오래된 순으로 limit개
+     * (order_date, order_id) 인덱스 범위 조회
+     */
+    public List<Long> findArchivableIds(LocalDateTime cutoff, int limit) {
+        return em.createQuery(
+                        "select o.id from Order o" +
+                                " join o.delivery d" +
+                                " where o.orderDate < :cutoff" +
+                                " and (o.status = :cancel or d.status = :comp)" +
+                                " order by o.orderDate, o.id", Long.class)
+                .setParameter("cutoff", cutoff)
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("comp", DeliveryStatus.COMP)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * 주문, 배송, 주문상품을 보관 테이블로 복사(insert ... select)한 뒤 hot 테이블에서 삭제
+     * 한 트랜잭션 안에서 호출해야 함. 엔티티를 읽지 않고 DB 안에서만 옮기므로 메모리에 올라가지 않음
+     */
+    public int archive(List<Long> orderIds, LocalDateTime archivedAt) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        List<Long> deliveryIds = em.createQuery(
+                        "select o.delivery.id from Order o where o.id in :orderIds", Long.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+
+        copy("insert into delivery_archive (delivery_id, city, street, zipcode, status)" +
+                " select d.delivery_id, d.city, d.street, d.zipcode, d.status" +
+                " from delivery d join orders o on o.delivery_id = d.delivery_id" +
+                " where o.order_id in (:orderIds)", orderIds, DeliveryArchive.class)
+                .executeUpdate();
+        int archived = copy("insert into orders_archive (order_id, member_id, delivery_id, order_date, status, archived_at)" +
+                " select order_id, member_id, delivery_id, order_date, status, :archivedAt" +
+                " from orders where order_id in (:orderIds)", orderIds, OrderArchive.class)
+                .setParameter("archivedAt", archivedAt)
+                .executeUpdate();
+        copy("insert into order_item_archive (order_item_id, item_id, order_id, order_price, count)" +
+                " select order_item_id, item_id, order_id, order_price, count" +
+                " from order_item where order_id in (:orderIds)", orderIds, OrderItemArchive.class)
+                .executeUpdate();
+
+        //FK 순서대로 삭제: order_item -> orders -> delivery
+        em.createQuery("delete from OrderItem oi where oi.order.id in :orderIds")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        em.createQuery("delete from Order o where o.id in :orderIds")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        if (!deliveryIds.isEmpty()) {
+            em.createQuery("delete from Delivery d where d.id in :deliveryIds")
+                    .setParameter("deliveryIds", deliveryIds)
+                    .executeUpdate();
+        }
+        //주문 조회 모델에서도 뺌(보관 주문은 includeArchived 검색으로만 조회)
+        em.createQuery("delete from OrderView v where v.orderId in :orderIds")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        return archived;
+    }
+
+    //네이티브 insert는 query space를 지정하지 않으면 2차 캐시 영역을 모두 비우므로 보관 엔티티만 지정
+    private NativeQuery<?> copy(String sql, List<Long> orderIds, Class<?> archiveClass) {
+        return em.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(archiveClass)
+                .setParameter("orderIds", orderIds);
+    }
+
+    public long count() {
+        return em.createQuery("select count(a) from OrderArchive a", Long.class)
+                .getSingleResult();
+    }
+
+    /**
+     * 보관 주문 검색(OrderRepository.findAllByString과 같은 조건), 최근 순으로 limit개
+     * 주문상품은 batch fetch로 가져옴
+     */
+    public List<Order> findAllByString(OrderSearch orderSearch, int limit) {
+        String jpql = "select a from OrderArchive a" +
+                " join fetch a.member m" +
+                " join fetch a.delivery d";
+        boolean hasStatus = orderSearch.getOrderStatus() != null;
+        boolean hasName = StringUtils.hasText(orderSearch.getMemberName());
+        if (hasStatus || hasName) {
+            jpql += " where";
+        }
+        if (hasStatus) {
+            jpql += " a.status = :status";
+        }
+        if (hasName) {
+            jpql += (hasStatus ? " and" : "") + " m.name like :name";
+        }
+        jpql += " order by a.orderDate desc, a.id desc";
+
+        TypedQuery<OrderArchive> query = em.createQuery(jpql, OrderArchive.class)
+                .setMaxResults(limit);
+        if (hasStatus) {
+            query.setParameter("status", orderSearch.getOrderStatus());
+        }
+        if (hasName) {
+            query.setParameter("name", orderSearch.getMemberName());
+        }
+        return query.getResultList().stream()
+                .map(OrderArchive::toOrder)
+                .collect(Collectors.toList());
+    }
+}
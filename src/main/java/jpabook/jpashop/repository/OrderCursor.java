@@ -0,0 +1,58 @@
+package jpabook.jpashop.repository;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 키셋(seek) 페이징용 커서: (orderDate, order_id) 기준
+ * offset 방식은 앞의 row를 모두 읽고 버리기 때문에 뒤 페이지로 갈수록 느려짐
+ * -> 마지막으로 본 (orderDate, orderId) 다음부터 읽으므로 몇 번째 페이지든 비용이 같음
+ * 클라이언트에는 내부 구조를 숨긴 불투명한(opaque) 토큰으로 전달
+ */
+@Getter
+public class OrderCursor {
+
+    private static final String DELIMITER = "|";
+
+    private final LocalDateTime orderDate;
+    private final Long orderId;
+
+    private OrderCursor(LocalDateTime orderDate, Long orderId) {
+        this.orderDate = orderDate;
+        this.orderId = orderId;
+    }
+
+    public static OrderCursor of(LocalDateTime orderDate, Long orderId) {
+        return new OrderCursor(orderDate, orderId);
+    }
+
+    /**
+     * 토큰 생성
+     */
+    public String encode() {
+        String raw = orderDate + DELIMITER + orderId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 토큰 해석, 토큰이 없으면 첫 페이지(null)
+     */
+    public static OrderCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int idx = raw.lastIndexOf(DELIMITER);
+            return new OrderCursor(LocalDateTime.parse(raw.substring(0, idx)),
+                    Long.valueOf(raw.substring(idx + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다.", e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.sharding.ShardedOrderStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
@@ -16,16 +17,35 @@ import java.util.List;
 @RequiredArgsConstructor
 public class OrderRepository {
     private final EntityManager em;
+    private final ShardedOrderStore shardedOrderStore; //샤딩 모드(jpashop.sharding.enabled)에서는 주문을 shard에서 읽고 씀
 
     public void save(Order order) {
+        if (shardedOrderStore.isEnabled()) {
+            shardedOrderStore.insert(order);
+            return;
+        }
         em.persist(order);
     }
 
     public Order findOne(Long id) {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findOne(id);
+        }
         return em.find(Order.class, id);
     }
 
+    //주문 상태 변경 반영: JPA는 변경 감지로 처리되므로 할 일이 없고, shard에서 읽은 주문은 직접 update
+    public void updateStatus(Order order) {
+        if (shardedOrderStore.isEnabled()) {
+            shardedOrderStore.updateStatus(order);
+        }
+    }
+
     public List<Order> findAllByString(OrderSearch orderSearch) {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findAll(orderSearch.getOrderStatus(),
+                    StringUtils.hasText(orderSearch.getMemberName()) ? orderSearch.getMemberName() : null, 1000);
+        }
 
         String jpql = "select o from Order o join o.member m";
         boolean isFirstCondition = true;
@@ -68,6 +88,10 @@ public class OrderRepository {
      * JPA Criteria
      */
     public List<Order> findAllByCriteria(OrderSearch orderSearch) {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findAll(orderSearch.getOrderStatus(),
+                    StringUtils.hasText(orderSearch.getMemberName()) ? "%" + orderSearch.getMemberName() + "%" : null, 1000);
+        }
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Order> cq = cb.createQuery(Order.class);
         Root<Order> o = cq.from(Order.class);
@@ -95,6 +119,9 @@ public class OrderRepository {
     //join으로 한번에 다 가져옴. LAZY 무시.
     //기본 강의로 fetch join에 대해서 완벽히 이해하고 넘어가기
     public List<Order> findAllWithMemberDelivery() {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findAll();
+        }
         return em.createQuery(
                 "select o from Order o" +
                         " join fetch o.member m" +
@@ -103,6 +130,9 @@ public class OrderRepository {
     }
 
     public List<Order> findAllWithItem() {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findAll();
+        }
         return em.createQuery(
                 "select distinct o from Order o" + // distinct 를 넣으면 root(여기서는 Order)가 중복인 경우(Id 기준) Jpa에서 자체적으로 줄임.
                         " join fetch o.member m" +
@@ -113,6 +143,9 @@ public class OrderRepository {
     }
 
     public List<Order> findAllWithMemberDelivery(int offset, int limit) {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findAll(offset, limit);
+        }
         return em.createQuery(
                 "select o from Order o" +
                         " join fetch o.member m" +
@@ -122,6 +155,30 @@ public class OrderRepository {
                 .getResultList();
     }
 
+    //키셋 페이징: offset 대신 마지막으로 본 (orderDate, orderId) 이후만 조회
+    //(order_date, order_id) 인덱스를 타므로 뒤 페이지도 첫 페이지와 비용이 같음
+    public List<Order> findAllWithMemberDelivery(OrderCursor cursor, int limit) {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findAll(cursor, limit);
+        }
+        String jpql = "select o from Order o" +
+                " join fetch o.member m" +
+                " join fetch o.delivery d";
+        if (cursor != null) {
+            jpql += " where o.orderDate < :orderDate" +
+                    " or (o.orderDate = :orderDate and o.id < :orderId)";
+        }
+        jpql += " order by o.orderDate desc, o.id desc";
+
+        TypedQuery<Order> query = em.createQuery(jpql, Order.class)
+                .setMaxResults(limit);
+        if (cursor != null) {
+            query.setParameter("orderDate", cursor.getOrderDate())
+                    .setParameter("orderId", cursor.getOrderId());
+        }
+        return query.getResultList();
+    }
+
 
     /**
      * Querydsl: 동적 쿼리 해결, 정적 쿼리도 복잡하다면 Querydsl로 짜는 것을 권유
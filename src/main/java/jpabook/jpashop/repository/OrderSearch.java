@@ -9,4 +9,5 @@ import lombok.Setter;
 public class OrderSearch {
     private String memberName; //회원 이름
     private OrderStatus orderStatus; //주문 상태[ORDER, CANCEL]
+    private boolean includeArchived; //true: 보관(orders_archive)된 오래된 주문까지 검색
 }
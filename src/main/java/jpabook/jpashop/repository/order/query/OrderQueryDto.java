@@ -1,6 +1,8 @@
 package jpabook.jpashop.repository.order.query;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.OrderStatus;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -18,6 +20,14 @@ public class OrderQueryDto {
     private Address address;
     private List<OrderItemQueryDto> orderItems;
 
+    //응답에는 포함하지 않음. 배송 완료(COMP)된 주문은 더 이상 바뀌지 않으므로 JSON을 캐시해도 됨(OrderJsonWriter)
+    @JsonIgnore
+    private DeliveryStatus deliveryStatus;
+
+    //응답에는 포함하지 않음. 주문 조회 모델(order_view)에서 회원 이름 변경을 반영할 때 사용
+    @JsonIgnore
+    private Long memberId;
+
     public OrderQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address) {
         this.orderId = orderId;
         this.name = name;
@@ -34,4 +44,14 @@ public class OrderQueryDto {
         this.address = address;
         this.orderItems = orderItems;
     }
+
+    public OrderQueryDto(Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address, DeliveryStatus deliveryStatus) {
+        this(orderId, name, orderDate, orderStatus, address);
+        this.deliveryStatus = deliveryStatus;
+    }
+
+    public OrderQueryDto(Long orderId, Long memberId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address, DeliveryStatus deliveryStatus) {
+        this(orderId, name, orderDate, orderStatus, address, deliveryStatus);
+        this.memberId = memberId;
+    }
 }
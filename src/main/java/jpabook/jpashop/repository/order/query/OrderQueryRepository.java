@@ -1,20 +1,41 @@
 package jpabook.jpashop.repository.order.query;
 
+import jpabook.jpashop.repository.BatchInLoader;
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.sharding.ShardedOrderStore;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 //화면이나 api에 의존관계가 있는 경우
 @Repository
+@Transactional(readOnly = true) //controller에서 바로 호출: 조회 전용 트랜잭션으로 replica에서 읽음
 @RequiredArgsConstructor
 public class OrderQueryRepository {
+    //스트리밍 조회 시 JDBC가 한번에 가져오는 row 수
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final EntityManager em;
+    private final BatchInLoader batchInLoader;
+    private final ShardedOrderStore shardedOrderStore; //샤딩 모드에서는 모든 shard에 조회를 보내고 합침
+
 
     public List<OrderQueryDto> findOrderQueryDtos() {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findOrderQueryDtos(); //shard에서는 주문상품도 in 절로 한번에 조회
+        }
         List<OrderQueryDto> result = findOrders(); //query 1번 -> N개
         result.forEach(o -> {
            List<OrderItemQueryDto> orderItems = findOrderItems(o.getOrderId());// Query N번: N+1 문제
@@ -26,6 +47,9 @@ public class OrderQueryRepository {
     //in 절로 한번에 가져옴
     //query 2번으로 해결. fetch join 보다 data select 하는 양이 줄어듦
     public List<OrderQueryDto> findAllByDto_optimization() {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findOrderQueryDtos();
+        }
         List<OrderQueryDto> result = findOrders();
 
         Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(toOrderIds(result));
@@ -34,19 +58,63 @@ public class OrderQueryRepository {
         return result;
     }
 
-    private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
-        List<OrderItemQueryDto> orderItems = em.createQuery(
-                        "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
-                                " from OrderItem oi" +
-                                " join oi.item i" +
-                                " where oi.order.id in :orderIds", OrderItemQueryDto.class)
+    //키셋 페이징 + in 절: 루트(Order)를 커서 기준으로 limit 만큼 자른 뒤 컬렉션은 in 절로 조회
+    public List<OrderQueryDto> findAllByDto_optimization(OrderCursor cursor, int limit) {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findOrderQueryDtos(cursor, limit);
+        }
+        List<OrderQueryDto> result = findOrders(cursor, limit);
+        if (result.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(toOrderIds(result));
+
+        result.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
+        return result;
+    }
+
+    //주문 id 목록으로 조회(+ 회원 id, 배송 상태), 캐시에 없는 주문만 조회할 때 사용. 순서는 보장하지 않음
+    public List<OrderQueryDto> findAllByDto_optimization(Collection<Long> orderIds) {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findOrderQueryDtos(orderIds);
+        }
+        List<OrderQueryDto> result = em.createQuery(
+                        "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.id, m.name, o.orderDate, o.status, d.address, d.status)" +
+                                " from Order o" +
+                                " join o.member m" +
+                                " join o.delivery d" +
+                                " where o.id in :orderIds", OrderQueryDto.class)
                 .setParameter("orderIds", orderIds)
                 .getResultList();
 
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(toOrderIds(result));
+
+        result.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
+        return result;
+    }
+
+    //전체 주문 id(id 순), 응답 JSON 캐시에서 먼저 찾아보고 없는 주문만 조회
+    public List<Long> findOrderIds() {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findOrderIds();
+        }
+        return em.createQuery("select o.id from Order o order by o.id", Long.class)
+                .getResultList();
+    }
+
+    //주문이 많으면 in 절 하나로는 파라미터 개수 제한에 걸리므로 BatchInLoader로 청크를 나눠서 조회
+    private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
         //Key: orderId, Value: List<OrderItemQueryDto>
-        Map<Long, List<OrderItemQueryDto>> orderItemMap = orderItems.stream()
-                .collect(Collectors.groupingBy(OrderItemQueryDto::getOrderId));
-        return orderItemMap;
+        return batchInLoader.loadGrouped(orderIds,
+                (entityManager, chunk) -> entityManager.createQuery(
+                                "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
+                                        " from OrderItem oi" +
+                                        " join oi.item i" +
+                                        " where oi.order.id in :orderIds", OrderItemQueryDto.class)
+                        .setParameter("orderIds", chunk)
+                        .getResultList(),
+                OrderItemQueryDto::getOrderId);
     }
 
     private List<Long> toOrderIds(List<OrderQueryDto> result) {
@@ -76,7 +144,48 @@ public class OrderQueryRepository {
                 .getResultList();
     }
 
+    private List<OrderQueryDto> findOrders(OrderCursor cursor, int limit) {
+        String jpql = "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address)" +
+                " from Order o" +
+                " join o.member m" +
+                " join o.delivery d" +
+                keysetCondition(cursor) +
+                " order by o.orderDate desc, o.id desc";
+        return bindCursor(em.createQuery(jpql, OrderQueryDto.class), cursor)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    //페이지에 해당하는 order id만 먼저 조회
+    private List<Long> findOrderIds(OrderCursor cursor, int limit) {
+        String jpql = "select o.id from Order o" +
+                keysetCondition(cursor) +
+                " order by o.orderDate desc, o.id desc";
+        return bindCursor(em.createQuery(jpql, Long.class), cursor)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private String keysetCondition(OrderCursor cursor) {
+        if (cursor == null) {
+            return "";
+        }
+        return " where o.orderDate < :orderDate" +
+                " or (o.orderDate = :orderDate and o.id < :orderId)";
+    }
+
+    private <T> TypedQuery<T> bindCursor(TypedQuery<T> query, OrderCursor cursor) {
+        if (cursor != null) {
+            query.setParameter("orderDate", cursor.getOrderDate())
+                    .setParameter("orderId", cursor.getOrderId());
+        }
+        return query;
+    }
+
     public List<OrderFlatDto> findAllByDto_flat() {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findFlats();
+        }
         return em.createQuery(
                         "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
                                 " from Order o" +
@@ -86,4 +195,96 @@ public class OrderQueryRepository {
                                 " join oi.item i", OrderFlatDto.class)
                 .getResultList();
     }
+
+    //플랫 조회는 row가 OrderItem 기준이라 limit을 바로 걸 수 없음
+    //-> 키셋으로 order id 페이지를 먼저 자르고, 그 id들에 대해서만 join 결과를 조회 (query 2번)
+    public List<OrderFlatDto> findAllByDto_flat(OrderCursor cursor, int limit) {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findFlats(cursor, limit);
+        }
+        List<Long> orderIds = findOrderIds(cursor, limit);
+        if (orderIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return em.createQuery(
+                        "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                                " from Order o" +
+                                " join o.member m" +
+                                " join o.delivery d" +
+                                " join o.orderItems oi" +
+                                " join oi.item i" +
+                                " where o.id in :orderIds" +
+                                " order by o.orderDate desc, o.id desc", OrderFlatDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    //전체 내보내기용 스트리밍 조회: 결과를 List로 모으지 않고 forward-only 커서로 한 줄씩 읽음
+    //order id 순으로 정렬해서 같은 주문의 row가 붙어 나오게 하고, 주문이 바뀌는 시점에 완성된 주문을 바로 넘김
+    //-> 주문 수와 상관없이 메모리에는 주문 1개 분량만 올라감
+    //DTO 조회라 영속성 컨텍스트에 쌓이지 않음. 커서가 열려있는 동안 커넥션을 유지해야 하므로 트랜잭션 안에서 실행
+    @Transactional(readOnly = true)
+    public void streamAllByDto_flat(Consumer<OrderQueryDto> consumer) {
+        if (shardedOrderStore.isEnabled()) {
+            shardedOrderStore.stream(consumer); //shard마다 커서를 열고 order id 순으로 합치면서 스트리밍
+            return;
+        }
+        try (Stream<OrderFlatDto> flats = em.createQuery(
+                        "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                                " from Order o" +
+                                " join o.member m" +
+                                " join o.delivery d" +
+                                " join o.orderItems oi" +
+                                " join oi.item i" +
+                                " order by o.id", OrderFlatDto.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .getResultStream()) {
+            groupAdjacent(flats.iterator(), consumer);
+        }
+    }
+
+    //플랫 데이터를 order id 순으로 받아서 한번에 묶음(single-pass)
+    //groupingBy는 row마다 key DTO를 만들고 전체 주문을 HashMap에 올리며, 순서도 보장하지 않음
+    //-> 정렬된 상태에서 이웃한 row끼리만 합치므로 HashMap이 필요 없고 조회 순서가 그대로 유지됨
+    public List<OrderQueryDto> findAllByDto_flatGrouped() {
+        if (shardedOrderStore.isEnabled()) {
+            List<OrderQueryDto> result = new ArrayList<>();
+            shardedOrderStore.stream(result::add);
+            return result;
+        }
+        List<OrderFlatDto> flats = em.createQuery(
+                        "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                                " from Order o" +
+                                " join o.member m" +
+                                " join o.delivery d" +
+                                " join o.orderItems oi" +
+                                " join oi.item i" +
+                                " order by o.id", OrderFlatDto.class)
+                .getResultList();
+        return groupAdjacent(flats);
+    }
+
+    public static List<OrderQueryDto> groupAdjacent(List<OrderFlatDto> flats) {
+        List<OrderQueryDto> result = new ArrayList<>();
+        groupAdjacent(flats.iterator(), result::add);
+        return result;
+    }
+
+    //같은 주문의 row가 붙어있다는 전제(order id로 정렬된 결과)에서 주문이 바뀔 때마다 완성된 주문을 넘김
+    public static void groupAdjacent(Iterator<OrderFlatDto> flats, Consumer<OrderQueryDto> consumer) {
+        OrderQueryDto current = null;
+        while (flats.hasNext()) {
+            OrderFlatDto flat = flats.next();
+            if (current == null || !current.getOrderId().equals(flat.getOrderId())) {
+                if (current != null) {
+                    consumer.accept(current);
+                }
+                current = new OrderQueryDto(flat.getOrderId(), flat.getName(), flat.getOrderDate(), flat.getOrderStatus(), flat.getAddress(), new ArrayList<>());
+            }
+            current.getOrderItems().add(new OrderItemQueryDto(flat.getOrderId(), flat.getItemName(), flat.getOrderPrice(), flat.getCount()));
+        }
+        if (current != null) {
+            consumer.accept(current);
+        }
+    }
 }
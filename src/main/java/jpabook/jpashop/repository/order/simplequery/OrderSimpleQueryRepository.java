@@ -1,16 +1,27 @@
 package jpabook.jpashop.repository.order.simplequery;
 
+import jpabook.jpashop.cache.SingleFlight;
+import jpabook.jpashop.sharding.ShardedOrderStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import java.util.List;
 
 @Repository
+@Transactional(readOnly = true) //controller에서 바로 호출: 조회 전용 트랜잭션으로 replica에서 읽음
 @RequiredArgsConstructor
 public class OrderSimpleQueryRepository {
     private final EntityManager em;
+    private final ShardedOrderStore shardedOrderStore;
+
+    //동시에 들어온 같은 조회는 한 번만 실행하고 결과를 같이 사용
+    @SingleFlight
     public List<OrderSimpleQueryDto> findOrderDtos() {
+        if (shardedOrderStore.isEnabled()) {
+            return shardedOrderStore.findSimpleDtos(); //모든 shard에서 조회해서 order id 순으로 합침
+        }
         return em.createQuery(
                         "select new jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto(o.id, m.name, o.orderDate, o.status, d.address) " +
                                 " from Order o" +
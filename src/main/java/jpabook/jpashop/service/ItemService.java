@@ -1,7 +1,10 @@
 package jpabook.jpashop.service;
 
+import jpabook.jpashop.cache.DataVersions;
+import jpabook.jpashop.cache.VersionedListCache;
 import jpabook.jpashop.domain.Item.Book;
 import jpabook.jpashop.domain.Item.Item;
+import jpabook.jpashop.repository.ItemListDto;
 import jpabook.jpashop.repository.ItemRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -14,10 +17,14 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemService {
     private final ItemRepository itemRepository;
+    private final StockLedger stockLedger;
+    private final DataVersions dataVersions;
+    private final VersionedListCache<ItemListDto> itemListCache = new VersionedListCache<>();
 
     @Transactional
     public void saveItem(Item item) {
         itemRepository.save(item);
+        dataVersions.bumpAfterCompletion(DataVersions.Kind.ITEM);
     }
 
     //이것 전체를 merge라고 볼 수 있음(+반환). JPA가 한 줄로 해줌
@@ -30,18 +37,38 @@ public class ItemService {
     public void updateItem(Long itemId, String name, int price, int stockQuantity) {
         //Transaction 안에서 entity를 조회해야 영속성 상태로 조회가 되고
         // 해당 상태에서 값을 변경해야 변경 감지가 일어남
+        //재고 장부에 올라와 있는 상품은 재고를 장부에서 커밋 뒤에 차이만큼 반영
+        //엔티티를 변경감지로 고치면 update에 트랜잭션 시작 때 읽은 stock_quantity까지 들어가서
+        //그 사이 장부가 DB에 반영한 재고를 덮어씀 -> 이름, 가격만 직접 update
+        if (stockLedger.adjustTo(itemId, stockQuantity)) {
+            itemRepository.updateNameAndPrice(itemId, name, price);
+            dataVersions.bumpAfterCompletion(DataVersions.Kind.ITEM);
+            return;
+        }
         Item findItem = itemRepository.findOne(itemId);
         //사실 이런 식으로 단발성 update를 하면 안됨: set이 아닌 의미있는 method를 사용할 것
         findItem.setPrice(price);
         findItem.setName(name);
         findItem.setStockQuantity(stockQuantity);
+        dataVersions.bumpAfterCompletion(DataVersions.Kind.ITEM);
+        //2차 캐시의 상품도 변경 감지로 나가는 update와 함께 커밋 시점에 갱신됨(saveItem의 merge도 동일)
         // findItem로 찾은 것은 영속 상태이므로 호출할 필요 없음. 변경 감지로 인해서 변경됨
         //@Transactional로 인해서 Transaction이 commit됨 -> flush: 변경된 것을 탐지 -> update query를 날림
 //        itemRepository.save(findItem);
     }
 
-    public List<Item> findItems() {
-        return itemRepository.findAll();
+    //상품 목록은 버전이 바뀔 때만 다시 조회
+    //엔티티는 직접 캐싱하면 안됨(영속성 컨텍스트에 묶인 객체를 여러 스레드가 같이 씀) -> 불변 DTO를 캐싱
+    //목록에 재고도 보여주므로 상품 변경(ITEM)과 재고 변경(STOCK) 모두 확인, 두 버전 모두 증가만 하므로 합도 변경될 때마다 증가
+    //몰려온 요청 중 목록을 만드는 건 한 스레드뿐(@SingleFlight 불필요): 버전이 바뀐 직후에는 이전 스냅샷을 돌려주고,
+    //스냅샷이 없는 시작 직후에는 만드는 스레드를 기다림(VersionedListCache)
+    public List<ItemListDto> findItems() {
+        if (dataVersions.isChangedInCurrentTransaction(DataVersions.Kind.ITEM)
+                || dataVersions.isChangedInCurrentTransaction(DataVersions.Kind.STOCK)) {
+            return itemRepository.findAllListDto();
+        }
+        long version = dataVersions.current(DataVersions.Kind.ITEM) + dataVersions.current(DataVersions.Kind.STOCK);
+        return itemListCache.get(version, itemRepository::findAllListDto);
     }
 
     public Item findOne(Long itemId) {
@@ -1,6 +1,13 @@
 package jpabook.jpashop.service;
 
+import jpabook.jpashop.cache.DataVersions;
+import jpabook.jpashop.cache.VersionedListCache;
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.event.MemberRenamed;
+import jpabook.jpashop.event.Outbox;
+import jpabook.jpashop.readmodel.MemberStats;
+import jpabook.jpashop.readmodel.MemberStatsRepository;
+import jpabook.jpashop.repository.MemberListDto;
 import jpabook.jpashop.repository.MemberRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -17,6 +24,10 @@ public class MemberService {
     //변경할 일이 없기에 final로 하는 것을 권장
     //컴파일 시점에 체크를 해줄 수 있음
     private final MemberRepository memberRepository;
+    private final DataVersions dataVersions;
+    private final Outbox outbox;
+    private final MemberStatsRepository memberStatsRepository;
+    private final VersionedListCache<MemberListDto> memberListCache = new VersionedListCache<>();
 
     //생성자 인젝션
     //생성할 때 완성. 중간에 setter로 바꿀 수 없음
@@ -42,6 +53,8 @@ public class MemberService {
         //따라서 DB에서 name을 unique로 제약하는 것이 안전
         validateDuplicateMember(member);
         memberRepository.save(member);
+        memberStatsRepository.save(new MemberStats(member.getId())); //첫 주문부터 update로 증감만 반영
+        dataVersions.bumpAfterCompletion(DataVersions.Kind.MEMBER);
         return member.getId();
     }
 
@@ -55,7 +68,17 @@ public class MemberService {
 
     //회원 전체 조회
     //조회하는 곳에서는 읽기전용으로 설정하면 성능이 최적화됨
-    public List<Member> findMembers() {
+    //회원 가입, 수정으로 버전이 바뀔 때만 다시 조회하고 나머지는 스냅샷을 반환
+    //엔티티는 직접 캐싱하면 안됨 -> 불변 DTO를 캐싱
+    public List<MemberListDto> findMembers() {
+        if (dataVersions.isChangedInCurrentTransaction(DataVersions.Kind.MEMBER)) {
+            return memberRepository.findAllListDto();
+        }
+        return memberListCache.get(dataVersions.current(DataVersions.Kind.MEMBER), memberRepository::findAllListDto);
+    }
+
+    //캐시 없이 엔티티 그대로 조회(v1 API: 엔티티를 직접 노출하는 예시)
+    public List<Member> findMemberEntities() {
         return memberRepository.findAll();
     }
 
@@ -63,9 +86,15 @@ public class MemberService {
         return memberRepository.findOne(memberId);
     }
 
+    //findOne은 2차 캐시에서 조회, 변경 감지로 update 되면 커밋 시점에 캐시도 갱신됨
     @Transactional
     public void update(Long id, String name) {
         Member member = memberRepository.findOne(id);
+        boolean renamed = !name.equals(member.getName());
         member.setName(name);
+        dataVersions.bumpAfterCompletion(DataVersions.Kind.MEMBER);
+        if (renamed) {
+            outbox.append(new MemberRenamed(id, name)); //주문 조회 모델의 회원 이름
+        }
     }
 }
@@ -0,0 +1,104 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.cache.DataVersions;
+import jpabook.jpashop.repository.OrderArchiveRepository;
+import jpabook.jpashop.sharding.ShardedOrderStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 오래된 주문 보관 작업(선택 기능, jpashop.order-archive.enabled)
+ * 주기마다 age-days보다 오래된 취소/배송완료 주문을 chunk-size개씩 보관 테이블로 옮김
+ * - chunk마다 별도 트랜잭션: 한번에 옮기면 트랜잭션이 길어지고 lock, undo가 커짐
+ * - 남은 대상이 없거나 한 주기에 max-chunks-per-run만큼 옮기면 다음 주기로 넘김
+ * 샤딩 모드에서는 주문이 기존 DB에 없으므로 실행하지 않음
+ */
+@Slf4j
+@Component
+public class OrderArchiver {
+
+    private final OrderArchiveRepository orderArchiveRepository;
+    private final ShardedOrderStore shardedOrderStore;
+    private final DataVersions dataVersions;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int ageDays;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter archived;
+
+    public OrderArchiver(OrderArchiveRepository orderArchiveRepository, ShardedOrderStore shardedOrderStore,
+                         DataVersions dataVersions, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                         @Value("${jpashop.order-archive.enabled:false}") boolean enabled,
+                         @Value("${jpashop.order-archive.age-days:365}") int ageDays,
+                         @Value("${jpashop.order-archive.chunk-size:500}") int chunkSize,
+                         @Value("${jpashop.order-archive.max-chunks-per-run:100}") int maxChunksPerRun) {
+        this.orderArchiveRepository = orderArchiveRepository;
+        this.shardedOrderStore = shardedOrderStore;
+        this.dataVersions = dataVersions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.ageDays = ageDays;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.archived = Counter.builder("jpashop.order-archive.archived")
+                .description("보관 테이블로 옮긴 주문 수")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${jpashop.order-archive.interval-ms:600000}",
+            fixedDelayString = "${jpashop.order-archive.interval-ms:600000}")
+    public void scheduled() {
+        if (enabled && !shardedOrderStore.isEnabled()) {
+            archive(LocalDateTime.now().minusDays(ageDays));
+        }
+    }
+
+    /**
+     * cutoff보다 오래된 보관 대상 주문을 옮기고 옮긴 주문 수를 반환
+     * 이미 실행 중이면 바로 0 (스케줄과 수동 실행이 겹치지 않게)
+     */
+    public int archive(LocalDateTime cutoff) {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int total = 0;
+            for (int chunk = 0; chunk < maxChunksPerRun; chunk++) {
+                Integer moved = transactionTemplate.execute(status -> {
+                    List<Long> orderIds = orderArchiveRepository.findArchivableIds(cutoff, chunkSize);
+                    int count = orderArchiveRepository.archive(orderIds, LocalDateTime.now());
+                    if (count > 0) {
+                        dataVersions.bumpAfterCompletion(DataVersions.Kind.ORDER); //주문 목록 캐시, ETag
+                    }
+                    return count;
+                });
+                total += moved;
+                archived.increment(moved);
+                if (moved < chunkSize) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                log.info("{} 이전 주문 {}개 보관", cutoff, total);
+            }
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+}
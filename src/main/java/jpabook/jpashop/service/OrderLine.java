@@ -0,0 +1,14 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 주문 한 줄: 상품 id + 수량
+ */
+@Getter
+@AllArgsConstructor
+public class OrderLine {
+    private Long itemId;
+    private int count;
+}
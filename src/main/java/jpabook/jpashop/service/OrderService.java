@@ -1,28 +1,47 @@
 package jpabook.jpashop.service;
 
+import jpabook.jpashop.cache.DataVersions;
 import jpabook.jpashop.domain.Delivery;
 import jpabook.jpashop.domain.Item.Item;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.event.Outbox;
+import jpabook.jpashop.event.OrderCancelled;
+import jpabook.jpashop.event.OrderPlaced;
+import jpabook.jpashop.event.StockChanged;
+import jpabook.jpashop.readmodel.MemberStatsRepository;
 import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderArchiveRepository;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class OrderService {
 
+    private static final int SEARCH_LIMIT = 1000;
+
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final StockLedger stockLedger;
+    private final DataVersions dataVersions;
+    private final OrderArchiveRepository orderArchiveRepository;
+    private final Outbox outbox;
+    private final MemberStatsRepository memberStatsRepository;
     /**
      * 주문
      */
@@ -30,7 +49,8 @@ public class OrderService {
     public Long order(Long memberId, Long itemId, int count) {
         //엔티티 조회
         Member member = memberRepository.findOne(memberId);
-        Item item = itemRepository.findOne(itemId);
+        //재고 차감, 부족하면 NotEnoughStockException
+        Item item = reserveStock(itemId, count);
 
         //배송정보 생성
         Delivery delivery = new Delivery();
@@ -47,10 +67,64 @@ public class OrderService {
 
         //주문 저장
         orderRepository.save(order);
+        dataVersions.bumpAfterCompletion(DataVersions.Kind.ORDER);
+        recordStats(order);
+        publishPlaced(order);
 
         return order.getId();
     }
 
+    /**
+     * 여러 상품 주문(장바구니)
+     * 상품마다 order()를 호출하면 트랜잭션과 조회 쿼리가 상품 수만큼 반복됨
+     * -> 한 트랜잭션에서 상품은 in 절 한번으로 조회, 재고를 모두 차감한 뒤 주문/주문상품은 JDBC batch insert
+     */
+    @Transactional
+    public Long order(Long memberId, List<OrderLine> lines) {
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("주문 상품이 없습니다.");
+        }
+        Member member = memberRepository.findOne(memberId);
+
+        //같은 상품이 여러 줄이면 합치고, 상품 id 순으로 정렬해서 재고 차감(row lock을 항상 같은 순서로 잡아 데드락 방지)
+        Map<Long, Integer> counts = new TreeMap<>();
+        for (OrderLine line : lines) {
+            checkCount(line.getCount());
+            counts.merge(line.getItemId(), line.getCount(), Integer::sum);
+        }
+        //상품은 재고 차감 전에 확인: 없는 상품은 조건부 update가 0건이라 재고 부족과 구분되지 않음
+        //여기서 읽은 엔티티의 재고는 차감 전 값이지만 주문에서는 가격만 사용
+        Map<Long, Item> items = itemRepository.findByIds(counts.keySet()).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        if (items.size() < counts.size()) {
+            throw new IllegalStateException("존재하지 않는 상품입니다.");
+        }
+        counts.forEach((itemId, count) -> {
+            if (stockLedger.isEnabled()) {
+                stockLedger.reserve(itemId, count);
+            } else {
+                itemRepository.decreaseStock(itemId, count);
+            }
+        });
+
+        OrderItem[] orderItems = counts.entrySet().stream()
+                .map(e -> {
+                    Item item = items.get(e.getKey());
+                    return OrderItem.createOrderItem(item, item.getPrice(), e.getValue());
+                })
+                .toArray(OrderItem[]::new);
+
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+
+        Order order = Order.createOrder(member, delivery, orderItems);
+        orderRepository.save(order);
+        dataVersions.bumpAfterCompletion(DataVersions.Kind.ORDER);
+        recordStats(order);
+        publishPlaced(order);
+        return order.getId();
+    }
+
     /**
      * 취소
      */
@@ -58,8 +132,67 @@ public class OrderService {
     public void cancelOrder(Long orderId) {
         //주문 엔티티 조회
         Order order = orderRepository.findOne(orderId);
+        if (order == null) {
+            //보관(orders_archive)된 주문도 여기로 옴: 보관 주문은 이미 취소/배송완료라 취소할 수 없음
+            throw new IllegalStateException("취소할 수 있는 주문이 없습니다.");
+        }
         //주문 취소
         order.cancel();
+        orderRepository.updateStatus(order); //샤딩 모드: shard에서 읽은 주문은 변경 감지가 없으므로 직접 반영
+        dataVersions.bumpAfterCompletion(DataVersions.Kind.ORDER);
+        //재고 복구도 주문과 같은 방식으로 처리
+        for (OrderItem orderItem : order.getOrderItems()) {
+            restoreStock(orderItem.getItem().getId(), orderItem.getCount());
+        }
+        //회원 통계: 같은 트랜잭션에서 증감만 반영(금액은 메모리의 주문상품으로 계산, 추가 조회 없음)
+        memberStatsRepository.recordCancel(order.getMember().getId(), order.getTotalPrice());
+        outbox.append(OrderCancelled.of(order));
+        for (OrderItem orderItem : order.getOrderItems()) {
+            outbox.append(new StockChanged(orderItem.getItem().getId(), orderItem.getCount(), order.getId()));
+        }
+    }
+
+    //회원 통계는 outbox로 미루지 않음: 증감은 두 번 반영되면 틀어지므로 주문과 같은 트랜잭션에서 정확히 한 번
+    private void recordStats(Order order) {
+        memberStatsRepository.recordOrder(order.getMember().getId(), order.getTotalPrice(), order.getOrderDate());
+    }
+
+    //후속 작업(조회 모델 등)은 같은 트랜잭션에서 outbox에 이벤트로만 남기고 커밋 뒤에 따로 처리
+    private void publishPlaced(Order order) {
+        outbox.append(OrderPlaced.of(order));
+        for (OrderItem orderItem : order.getOrderItems()) {
+            outbox.append(new StockChanged(orderItem.getItem().getId(), -orderItem.getCount(), order.getId()));
+        }
+    }
+
+    //재고 장부를 사용하면 메모리 카운터에서, 아니면 조건부 update로 DB에서 바로 차감
+    //없는 상품은 조건부 update가 0건이라 재고 부족으로 보이므로 먼저 확인
+    private Item reserveStock(Long itemId, int count) {
+        checkCount(count);
+        Item item = itemRepository.findOne(itemId);
+        if (item == null) {
+            throw new IllegalStateException("존재하지 않는 상품입니다.");
+        }
+        if (stockLedger.isEnabled()) {
+            stockLedger.reserve(itemId, count);
+            return item;
+        }
+        return itemRepository.removeStock(itemId, count);
+    }
+
+    //음수 수량으로 조건부 update를 실행하면 재고가 늘어남 -> controller(@Positive)를 거치지 않는 호출도 막음
+    private static void checkCount(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("주문 수량은 1개 이상이어야 합니다.");
+        }
+    }
+
+    private void restoreStock(Long itemId, int count) {
+        if (stockLedger.isEnabled()) {
+            stockLedger.release(itemId, count);
+        } else {
+            itemRepository.addStock(itemId, count);
+        }
     }
 
     /**
@@ -67,6 +200,12 @@ public class OrderService {
      * 단순하게 화면에서 조회하는 기능이면 controller에서 repository를 바로 불러도 괜찮음
      */
     public List<Order> findOrders(OrderSearch orderSearch) {
-        return orderRepository.findAllByString(orderSearch);
+        List<Order> orders = orderRepository.findAllByString(orderSearch);
+        //보관 주문 포함 검색: hot 주문 뒤에 보관 주문(최근 순)을 이어 붙임, 합쳐서 SEARCH_LIMIT개까지
+        if (orderSearch.isIncludeArchived() && orders.size() < SEARCH_LIMIT) {
+            orders = new ArrayList<>(orders);
+            orders.addAll(orderArchiveRepository.findAllByString(orderSearch, SEARCH_LIMIT - orders.size()));
+        }
+        return orders;
     }
 }
@@ -0,0 +1,267 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 인기 상품용 메모리 재고 장부(선택 기능, jpashop.stock-ledger.enabled)
+ * 조건부 update도 같은 row의 lock을 잡기 때문에 한 상품에 주문이 몰리면 주문이 줄을 서게 됨
+ * -> 재고를 여러 칸(stripe)으로 나눈 atomic 카운터에서 lock 없이 차감하고
+ *    DB에는 일정 주기마다 변화량(delta)만 모아서 반영
+ *
+ * - 처음 요청된 상품(cold)은 DB 재고를 조회해서 카운터를 채움
+ * - 주문 트랜잭션이 롤백되면 차감한 재고를 되돌림
+ * - 반영 전에 서버가 내려가면 그 사이의 변화량은 유실되고, 서버가 여러 대면 각자 재고를 따로 세므로 단일 인스턴스에서만 사용
+ */
+@Slf4j
+@Component
+public class StockLedger {
+
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int stripes;
+
+    private final Map<Long, Stripes> ledger = new ConcurrentHashMap<>();
+
+    public StockLedger(ItemRepository itemRepository, PlatformTransactionManager transactionManager,
+                       @Value("${jpashop.stock-ledger.enabled:false}") boolean enabled,
+                       @Value("${jpashop.stock-ledger.stripes:8}") int stripes) {
+        this.itemRepository = itemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.stripes = stripes;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 재고 차감, 부족하면 NotEnoughStockException
+     * 트랜잭션 안에서 호출되면 롤백 시 자동으로 되돌림
+     */
+    public void reserve(Long itemId, int quantity) {
+        Stripes stock = stripesOf(itemId);
+        if (!stock.tryReserve(quantity)) {
+            throw new NotEnoughStockException("need more stock");
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        stock.release(quantity);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 재고 복구(주문 취소), 트랜잭션 안에서는 커밋된 뒤에 반영
+     */
+    public void release(Long itemId, int quantity) {
+        Stripes stock = stripesOf(itemId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stock.release(quantity);
+                }
+            });
+        } else {
+            stock.release(quantity);
+        }
+    }
+
+    /**
+     * 관리자가 재고 수량을 직접 바꾼 경우: 장부에 올라와 있으면 true, 차이는 커밋된 뒤에 장부에 반영
+     * (롤백되면 장부도 그대로). 장부에 없으면 false -> 호출한 쪽에서 DB에 직접 반영
+     */
+    public boolean adjustTo(Long itemId, int stockQuantity) {
+        Stripes stock = enabled ? ledger.get(itemId) : null;
+        if (stock == null) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stock.adjustTo(stockQuantity);
+                }
+            });
+        } else {
+            stock.adjustTo(stockQuantity);
+        }
+        return true;
+    }
+
+    //cold 상품은 DB 재고로 카운터를 채움. 상품마다 한 번만 조회
+    Stripes stripesOf(Long itemId) {
+        Stripes stock = ledger.get(itemId);
+        if (stock != null) {
+            return stock;
+        }
+        return ledger.computeIfAbsent(itemId, id -> new Stripes(stripes, itemRepository.findStockQuantity(id)));
+    }
+
+    /**
+     * 쌓인 변화량을 한 트랜잭션으로 DB에 반영, 실패하면 다음 주기에 다시 시도
+     */
+    @Scheduled(fixedDelayString = "${jpashop.stock-ledger.flush-interval-ms:200}")
+    public void flush() {
+        if (!enabled || ledger.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> deltas = new HashMap<>();
+        ledger.forEach((itemId, stock) -> {
+            long delta = stock.drainPending();
+            if (delta != 0) {
+                deltas.put(itemId, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    deltas.forEach(itemRepository::applyStockDelta));
+        } catch (RuntimeException e) {
+            log.warn("재고 변화량 반영 실패, 다음 주기에 재시도: {}", e.getMessage());
+            deltas.forEach((itemId, delta) -> ledger.get(itemId).restorePending(delta));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 상품 하나의 재고 카운터
+     * stripe마다 [재고, 미반영 변화량]을 한 캐시 라인(8 long = 64byte)에 두어 false sharing을 피함
+     */
+    static final class Stripes {
+        private static final int PAD = 8;
+        private static final int PENDING = 1;
+
+        private final int size;
+        private final AtomicLongArray cells;
+
+        Stripes(int size, int stockQuantity) {
+            this.size = size;
+            this.cells = new AtomicLongArray(size * PAD);
+            for (int i = 0; i < size; i++) {
+                cells.set(i * PAD, stockQuantity / size + (i < stockQuantity % size ? 1 : 0));
+            }
+        }
+
+        boolean tryReserve(int quantity) {
+            int home = home();
+            //lock 없이 자기 칸부터 차례로 시도
+            for (int i = 0; i < size; i++) {
+                int idx = ((home + i) % size) * PAD;
+                long current;
+                while ((current = cells.get(idx)) >= quantity) {
+                    if (cells.compareAndSet(idx, current, current - quantity)) {
+                        cells.addAndGet(idx + PENDING, -quantity);
+                        return true;
+                    }
+                }
+            }
+            return reserveAcrossStripes(quantity);
+        }
+
+        //한 칸으로는 부족하지만 합치면 충분할 수 있는 경우(드묾): 여러 칸에서 나눠서 차감
+        private synchronized boolean reserveAcrossStripes(long quantity) {
+            long[] taken = new long[size];
+            long remaining = quantity;
+            for (int i = 0; i < size && remaining > 0; i++) {
+                int idx = i * PAD;
+                long current;
+                while ((current = cells.get(idx)) > 0) {
+                    long take = Math.min(current, remaining);
+                    if (cells.compareAndSet(idx, current, current - take)) {
+                        taken[i] = take;
+                        remaining -= take;
+                        break;
+                    }
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                if (remaining > 0) {
+                    cells.addAndGet(i * PAD, taken[i]);
+                } else {
+                    cells.addAndGet(i * PAD + PENDING, -taken[i]);
+                }
+            }
+            return remaining == 0;
+        }
+
+        void release(long quantity) {
+            int idx = home() * PAD;
+            cells.addAndGet(idx, quantity);
+            cells.addAndGet(idx + PENDING, quantity);
+        }
+
+        /**
+         * 재고를 target으로 맞춤, 차이는 미반영 변화량에도 더해서 DB에 반영
+         * 수량 변경끼리는 순서대로(synchronized), 주문 차감은 lock 없이 계속 들어오므로
+         * 줄이는 경우 그 사이 주문이 가져가서 부족하면 다시 계산
+         */
+        synchronized void adjustTo(long target) {
+            while (true) {
+                long delta = target - available();
+                if (delta >= 0) {
+                    release(delta);
+                    return;
+                }
+                //한 칸만 음수가 되지 않도록 여러 칸에서 나눠서 차감
+                if (reserveAcrossStripes(-delta)) {
+                    return;
+                }
+            }
+        }
+
+        long available() {
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += cells.get(i * PAD);
+            }
+            return sum;
+        }
+
+        long drainPending() {
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += cells.getAndSet(i * PAD + PENDING, 0);
+            }
+            return sum;
+        }
+
+        void restorePending(long delta) {
+            cells.addAndGet(home() * PAD + PENDING, delta);
+        }
+
+        private int home() {
+            return (int) (Thread.currentThread().getId() % size);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package jpabook.jpashop.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 주문(orders, delivery, order_item)을 나눠 담는 shard DataSource 목록
+ * - 회원 id의 hash로 shard를 고름: 한 회원의 주문은 모두 같은 shard에 있음
+ * - 주문 id = shard 시퀀스 * shard 수 + shard 번호 -> 주문 id만으로 shard를 알 수 있음
+ * - scatter: 모든(또는 일부) shard에 같은 조회를 동시에 보내고 shard 순서대로 결과를 모음
+ * 회원, 상품은 기존 DB(spring.datasource)에 그대로 있음
+ */
+@Component
+public class OrderShards {
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final ExecutorService executor;
+
+    public OrderShards(ShardingSettings settings) {
+        if (!settings.isEnabled()) {
+            this.executor = null;
+            return;
+        }
+        if (settings.getUrls().isEmpty()) {
+            throw new IllegalStateException("jpashop.sharding.urls가 비어 있습니다.");
+        }
+        for (String url : settings.getUrls()) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .username(settings.getUsername())
+                    .password(settings.getPassword())
+                    .build();
+            dataSource.setPoolName("shard-" + shards.size());
+            dataSource.setMaximumPoolSize(settings.getMaximumPoolSize());
+            shards.add(new Shard(shards.size(), dataSource));
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(settings.getThreads(), r -> {
+            Thread thread = new Thread(r, "order-shard-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return !shards.isEmpty();
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public List<Shard> all() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    //id가 순서대로 발급되므로 그대로 나머지를 쓰면 한 shard에 몰릴 수 있어 섞은 뒤 나눔
+    public Shard forMember(Long memberId) {
+        long mixed = memberId * 0x9E3779B97F4A7C15L;
+        return shards.get(Math.floorMod(Long.hashCode(mixed), shards.size()));
+    }
+
+    public Shard forOrder(Long orderId) {
+        return shards.get((int) Math.floorMod(orderId, (long) shards.size()));
+    }
+
+    /**
+     * 모든 shard에 동시에 실행, 결과는 shard 번호 순서
+     */
+    public <T> List<T> scatter(Function<Shard, T> query) {
+        return scatter(shards, query);
+    }
+
+    /**
+     * 대상 shard에만 동시에 실행, 하나라도 실패하면 나머지는 취소하고 예외를 그대로 던짐
+     */
+    public <T> List<T> scatter(Collection<Shard> targets, Function<Shard, T> query) {
+        if (targets.size() == 1) {
+            return Collections.singletonList(query.apply(targets.iterator().next()));
+        }
+        List<Future<T>> futures = new ArrayList<>(targets.size());
+        for (Shard shard : targets) {
+            futures.add(executor.submit(() -> query.apply(shard)));
+        }
+        List<T> results = new ArrayList<>(targets.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("shard 조회가 중단되었습니다.", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("shard 조회에 실패했습니다.", e.getCause());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        shards.forEach(shard -> shard.dataSource.close());
+    }
+
+    @Getter
+    public static class Shard {
+        private final int index;
+        private final HikariDataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private final TransactionTemplate transactionTemplate; //shard 안에서만 원자적, 기존 DB 트랜잭션과는 별개
+
+        private Shard(int index, HikariDataSource dataSource) {
+            this.index = index;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        }
+
+        @Override
+        public String toString() {
+            return "shard-" + index;
+        }
+    }
+}
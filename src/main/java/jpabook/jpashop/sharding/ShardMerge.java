@@ -0,0 +1,88 @@
+package jpabook.jpashop.sharding;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * shard마다 같은 기준으로 정렬된 결과를 하나의 정렬된 결과로 합침(k-way merge)
+ * 각 shard의 맨 앞 값만 heap에 올려두고 가장 앞선 값을 꺼낼 때마다 그 shard에서 다음 값을 하나 읽음
+ * -> 전체를 모아서 다시 정렬하지 않고, shard 결과를 스트리밍으로 읽으면 메모리에는 shard 수만큼만 올라감
+ */
+public final class ShardMerge {
+
+    private ShardMerge() {
+    }
+
+    public static <T> Iterator<T> sorted(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator) {
+        return new MergingIterator<>(sources, comparator);
+    }
+
+    /**
+     * 정렬된 목록들을 합쳐서 앞에서부터 limit개
+     * 키셋 페이징: shard마다 limit개씩만 가져와도 합친 결과의 앞 limit개는 정확함
+     */
+    public static <T> List<T> sorted(List<? extends List<? extends T>> sources, Comparator<? super T> comparator, int limit) {
+        List<Iterator<? extends T>> iterators = new ArrayList<>(sources.size());
+        for (List<? extends T> source : sources) {
+            iterators.add(source.iterator());
+        }
+        Iterator<T> merged = sorted(iterators, comparator);
+        List<T> result = new ArrayList<>();
+        while (merged.hasNext() && result.size() < limit) {
+            result.add(merged.next());
+        }
+        return result;
+    }
+
+    private static final class MergingIterator<T> implements Iterator<T> {
+
+        private final List<? extends Iterator<? extends T>> sources;
+        private final PriorityQueue<Head<T>> heads;
+
+        private MergingIterator(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator) {
+            this.sources = sources;
+            //값이 같으면 shard 번호 순서(결과가 매번 같도록)
+            this.heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                    Comparator.<Head<T>, T>comparing(head -> head.value, comparator).thenComparingInt(head -> head.source));
+            for (int i = 0; i < sources.size(); i++) {
+                advance(i);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            Head<T> head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.source);
+            return head.value;
+        }
+
+        private void advance(int source) {
+            Iterator<? extends T> iterator = sources.get(source);
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), source));
+            }
+        }
+    }
+
+    private static final class Head<T> {
+        private final T value;
+        private final int source;
+
+        private Head(T value, int source) {
+            this.value = value;
+            this.source = source;
+        }
+    }
+}
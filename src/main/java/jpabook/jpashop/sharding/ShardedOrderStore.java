@@ -0,0 +1,547 @@
+package jpabook.jpashop.sharding;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Item.Item;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.repository.order.query.OrderFlatDto;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
+import jpabook.jpashop.sharding.OrderShards.Shard;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 샤딩 모드(jpashop.sharding.enabled=true)에서 주문(orders, delivery, order_item)을 shard에 저장하고 조회
+ * 회원/상품은 기존 DB에 있으므로 shard에는 id만 저장하고 join은 애플리케이션에서 함
+ * - 엔티티 조회: 회원/상품은 em.getReference 프록시로 채움(쓸 때 기존 DB에서 batch fetch로 조회)
+ * - DTO 조회: 회원 이름, 상품 이름을 기존 DB에서 in 절로 한번에 조회해서 채움
+ * - 주문상품은 항상 주문과 같은 shard에 있으므로 shard 안에서 조회
+ *
+ * 여러 shard 조회(scatter-gather)
+ * - 전체/조건 조회: 모든 shard에 동시에 보내고 order id 순으로 합침
+ * - 회원 이름 검색: 회원 id를 먼저 찾고 그 회원들이 있는 shard에만 보냄
+ * - 키셋 페이징: shard마다 limit개씩 가져와서 (orderDate, id) 순으로 합친 뒤 limit개, 주문상품은 남은 주문만 조회
+ * - 스트리밍: shard마다 커서를 열고 order id 순으로 한 row씩 합침(ShardMerge)
+ *
+ * 쓰기는 shard 트랜잭션으로 바로 커밋하고, 기존 DB 트랜잭션이 롤백되면 되돌림(보상)
+ * 두 DB를 묶는 분산 트랜잭션은 아니므로 기존 DB 커밋 자체가 실패하는 경우는 맞춰지지 않음
+ * shard DataSource는 p6spy를 거치지 않으므로 SQL 수(jpashop.sql.*)에는 기존 DB SQL만 포함됨
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class ShardedOrderStore {
+
+    private static final int IN_CHUNK_SIZE = 1_000;
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final int STREAM_BATCH_SIZE = 500; //스트리밍 중 회원/상품 이름을 한번에 조회할 주문 수
+
+    private static final String ORDER_SELECT =
+            "select o.order_id, o.member_id, o.order_date, o.status, d.city, d.street, d.zipcode, d.status delivery_status" +
+                    " from orders o" +
+                    " join delivery d on d.delivery_id = o.delivery_id";
+    private static final String FLAT_SELECT =
+            "select o.order_id, o.member_id, o.order_date, o.status, d.city, d.street, d.zipcode, d.status delivery_status," +
+                    " oi.item_id, oi.order_price, oi.count" +
+                    " from orders o" +
+                    " join delivery d on d.delivery_id = o.delivery_id" +
+                    " join order_item oi on oi.order_id = o.order_id";
+    private static final String KEYSET_CONDITION = " (o.order_date < ? or (o.order_date = ? and o.order_id < ?))";
+    private static final String LATEST_FIRST_SQL = " order by o.order_date desc, o.order_id desc";
+
+    private static final Comparator<OrderRow> BY_ID = Comparator.comparing(OrderRow::getOrderId);
+    private static final Comparator<OrderRow> LATEST_FIRST =
+            Comparator.comparing(OrderRow::getOrderDate).thenComparing(OrderRow::getOrderId).reversed();
+
+    private final OrderShards shards;
+    private final ShardingSettings settings;
+    private final EntityManager em;
+
+    public boolean isEnabled() {
+        return shards.isEnabled();
+    }
+
+    @PostConstruct
+    public void createSchema() {
+        for (Shard shard : shards.all()) {
+            JdbcTemplate jdbc = shard.getJdbcTemplate();
+            if (settings.isRecreateSchema()) {
+                jdbc.execute("drop table if exists order_item");
+                jdbc.execute("drop table if exists orders");
+                jdbc.execute("drop table if exists delivery");
+                jdbc.execute("drop sequence if exists orders_seq");
+            }
+            jdbc.execute("create sequence if not exists orders_seq start with 1");
+            jdbc.execute("create table if not exists delivery (" +
+                    "delivery_id bigint primary key, city varchar(255), street varchar(255), zipcode varchar(255), status varchar(255))");
+            jdbc.execute("create table if not exists orders (" +
+                    "order_id bigint primary key, member_id bigint not null, delivery_id bigint references delivery," +
+                    " order_date timestamp, status varchar(255))");
+            jdbc.execute("create table if not exists order_item (" +
+                    "order_item_id bigint generated by default as identity primary key," +
+                    " order_id bigint not null references orders, item_id bigint not null, order_price int not null, count int not null)");
+            jdbc.execute("create index if not exists idx_orders_order_date_id on orders (order_date, order_id)");
+            jdbc.execute("create index if not exists idx_orders_status on orders (status)");
+            jdbc.execute("create index if not exists idx_orders_member_id on orders (member_id)");
+            jdbc.execute("create index if not exists idx_order_item_order_id on order_item (order_id)");
+        }
+        if (shards.isEnabled()) {
+            log.info("주문 shard {}개 사용", shards.size());
+        }
+    }
+
+    //==쓰기==//
+
+    /**
+     * 주문, 배송, 주문상품을 회원의 shard에 저장하고 주문/배송 id를 채움(배송 id = 주문 id)
+     */
+    public void insert(Order order) {
+        insertAll(Collections.singletonList(order));
+    }
+
+    public void insertAll(List<Order> orders) {
+        Map<Shard, List<Order>> byShard = new LinkedHashMap<>();
+        for (Order order : orders) {
+            byShard.computeIfAbsent(shards.forMember(order.getMember().getId()), s -> new ArrayList<>()).add(order);
+        }
+        byShard.forEach((shard, shardOrders) -> {
+            shard.getTransactionTemplate().executeWithoutResult(status -> insert(shard, shardOrders));
+            List<Long> orderIds = shardOrders.stream().map(Order::getId).collect(Collectors.toList());
+            onRollback(() -> delete(shard, orderIds));
+        });
+    }
+
+    private void insert(Shard shard, List<Order> orders) {
+        JdbcTemplate jdbc = shard.getJdbcTemplate();
+        List<Long> sequences = jdbc.queryForList(
+                "select next value for orders_seq from system_range(1, ?)", Long.class, orders.size());
+        List<Object[]> deliveries = new ArrayList<>(orders.size());
+        List<Object[]> orderRows = new ArrayList<>(orders.size());
+        List<Object[]> itemRows = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            Order order = orders.get(i);
+            Long orderId = sequences.get(i) * shards.size() + shard.getIndex();
+            order.setId(orderId);
+            Delivery delivery = order.getDelivery();
+            delivery.setId(orderId);
+            Address address = delivery.getAddress();
+            deliveries.add(new Object[]{orderId,
+                    address == null ? null : address.getCity(),
+                    address == null ? null : address.getStreet(),
+                    address == null ? null : address.getZipcode(),
+                    name(delivery.getStatus())});
+            orderRows.add(new Object[]{orderId, order.getMember().getId(), orderId, order.getOrderDate(), name(order.getStatus())});
+            for (OrderItem orderItem : order.getOrderItems()) {
+                itemRows.add(new Object[]{orderId, orderItem.getItem().getId(), orderItem.getOrderPrice(), orderItem.getCount()});
+            }
+        }
+        jdbc.batchUpdate("insert into delivery (delivery_id, city, street, zipcode, status) values (?, ?, ?, ?, ?)", deliveries);
+        jdbc.batchUpdate("insert into orders (order_id, member_id, delivery_id, order_date, status) values (?, ?, ?, ?, ?)", orderRows);
+        jdbc.batchUpdate("insert into order_item (order_id, item_id, order_price, count) values (?, ?, ?, ?)", itemRows);
+    }
+
+    private void delete(Shard shard, List<Long> orderIds) {
+        shard.getTransactionTemplate().executeWithoutResult(status -> {
+            for (List<Long> chunk : chunks(orderIds)) {
+                Object[] args = chunk.toArray();
+                shard.getJdbcTemplate().update("delete from order_item where order_id in " + placeholders(chunk.size()), args);
+                shard.getJdbcTemplate().update("delete from orders where order_id in " + placeholders(chunk.size()), args);
+                shard.getJdbcTemplate().update("delete from delivery where delivery_id in " + placeholders(chunk.size()), args);
+            }
+        });
+        log.info("기존 DB 트랜잭션 롤백으로 {}의 주문 {}개 삭제", shard, orderIds.size());
+    }
+
+    /**
+     * 주문 상태 반영. shard에서 읽은 Order는 변경 감지가 없으므로 직접 update
+     */
+    public void updateStatus(Order order) {
+        JdbcTemplate jdbc = shards.forOrder(order.getId()).getJdbcTemplate();
+        String previous = jdbc.queryForObject("select status from orders where order_id = ?", String.class, order.getId());
+        jdbc.update("update orders set status = ? where order_id = ?", name(order.getStatus()), order.getId());
+        onRollback(() -> jdbc.update("update orders set status = ? where order_id = ?", previous, order.getId()));
+    }
+
+    //기존 DB 트랜잭션 안이면 롤백될 때 shard에 이미 커밋한 변경을 되돌림
+    private static void onRollback(Runnable compensation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    compensation.run();
+                }
+            }
+        });
+    }
+
+    //==엔티티 조회(OrderRepository)==//
+
+    public Order findOne(Long orderId) {
+        Shard shard = shards.forOrder(orderId);
+        List<OrderRow> rows = shard.getJdbcTemplate().query(ORDER_SELECT + " where o.order_id = ?", OrderRow.MAPPER, orderId);
+        return rows.isEmpty() ? null : toOrders(rows).get(0);
+    }
+
+    /**
+     * 주문 상태, 회원 이름(like 패턴)으로 검색. order id 순으로 limit개
+     */
+    public List<Order> findAll(OrderStatus status, String memberNamePattern, int limit) {
+        return toOrders(findRows(status, memberNamePattern, limit));
+    }
+
+    public List<Order> findAll() {
+        return toOrders(findRows(null, null, Integer.MAX_VALUE));
+    }
+
+    //offset 페이징: 어느 shard에서 몇 개가 나올지 모르므로 shard마다 offset + limit개를 읽어서 합친 뒤 offset만큼 버림
+    //-> 뒤 페이지일수록 shard 수 배로 비싸짐, 키셋 페이징을 쓸 것
+    public List<Order> findAll(int offset, int limit) {
+        int window = offset + limit;
+        List<List<OrderRow>> pages = shards.scatter(shard -> shard.getJdbcTemplate().query(
+                ORDER_SELECT + " order by o.order_id limit ?", OrderRow.MAPPER, window));
+        List<OrderRow> merged = ShardMerge.sorted(pages, BY_ID, window);
+        return toOrders(merged.subList(Math.min(offset, merged.size()), merged.size()));
+    }
+
+    public List<Order> findAll(OrderCursor cursor, int limit) {
+        return toOrders(findLatestRows(cursor, limit));
+    }
+
+    //==DTO 조회(OrderQueryRepository, OrderSimpleQueryRepository)==//
+
+    public List<OrderQueryDto> findOrderQueryDtos() {
+        return toQueryDtos(findRows(null, null, Integer.MAX_VALUE));
+    }
+
+    public List<OrderQueryDto> findOrderQueryDtos(OrderCursor cursor, int limit) {
+        return toQueryDtos(findLatestRows(cursor, limit));
+    }
+
+    //주문 id에 shard 번호가 들어 있으므로 해당 shard에만 조회. 순서는 보장하지 않음
+    public List<OrderQueryDto> findOrderQueryDtos(Collection<Long> orderIds) {
+        Map<Shard, List<Long>> byShard = groupBy(orderIds, shards::forOrder);
+        List<List<OrderRow>> results = shards.scatter(byShard.keySet(),
+                shard -> queryIn(shard, ORDER_SELECT + " where o.order_id in ", "", byShard.get(shard), OrderRow.MAPPER));
+        return toQueryDtos(results.stream().flatMap(List::stream).collect(Collectors.toList()));
+    }
+
+    //shard마다 id 순으로 읽으면서 합침
+    public List<Long> findOrderIds() {
+        List<Long> result = new ArrayList<>();
+        stream("select order_id from orders order by order_id", (rs, rowNum) -> rs.getLong(1),
+                Comparator.naturalOrder(), merged -> merged.forEachRemaining(result::add));
+        return result;
+    }
+
+    public List<OrderSimpleQueryDto> findSimpleDtos() {
+        List<OrderRow> rows = findRows(null, null, Integer.MAX_VALUE);
+        Map<Long, String> memberNames = memberNames(rows);
+        return rows.stream()
+                .map(row -> new OrderSimpleQueryDto(row.getOrderId(), memberNames.get(row.getMemberId()),
+                        row.getOrderDate(), row.getStatus(), row.getAddress()))
+                .collect(Collectors.toList());
+    }
+
+    public List<OrderFlatDto> findFlats() {
+        return toFlats(findOrderQueryDtos());
+    }
+
+    public List<OrderFlatDto> findFlats(OrderCursor cursor, int limit) {
+        return toFlats(findOrderQueryDtos(cursor, limit));
+    }
+
+    /**
+     * 모든 shard의 주문을 order id 순으로 스트리밍
+     * shard마다 (주문 x 주문상품) 커서를 열고 order id 순으로 한 row씩 합치면서 같은 주문끼리 묶음
+     * STREAM_BATCH_SIZE개 주문마다 회원/상품 이름을 조회해서 넘기므로 메모리에는 그만큼만 올라감
+     */
+    public void stream(Consumer<OrderQueryDto> consumer) {
+        stream(FLAT_SELECT + " order by o.order_id", FlatRow.MAPPER, Comparator.comparing(FlatRow::getOrderId), merged -> {
+            List<OrderRow> batch = new ArrayList<>();
+            Map<Long, List<ItemRow>> batchItems = new HashMap<>();
+            while (merged.hasNext()) {
+                FlatRow flat = merged.next();
+                if (batch.isEmpty() || !batch.get(batch.size() - 1).getOrderId().equals(flat.getOrderId())) {
+                    if (batch.size() == STREAM_BATCH_SIZE) {
+                        toQueryDtos(batch, batchItems).forEach(consumer);
+                        batch.clear();
+                        batchItems.clear();
+                    }
+                    batch.add(flat.getOrder());
+                }
+                batchItems.computeIfAbsent(flat.getOrderId(), id -> new ArrayList<>()).add(flat.getItem());
+            }
+            toQueryDtos(batch, batchItems).forEach(consumer);
+        });
+    }
+
+    //==shard 조회==//
+
+    //조건에 맞는 주문을 shard마다 order id 순으로 limit개 읽어서 합침
+    private List<OrderRow> findRows(OrderStatus status, String memberNamePattern, int limit) {
+        Map<Shard, List<Long>> membersByShard = null;
+        if (memberNamePattern != null) {
+            List<Long> memberIds = em.createQuery("select m.id from Member m where m.name like :name", Long.class)
+                    .setParameter("name", memberNamePattern)
+                    .getResultList();
+            if (memberIds.isEmpty()) {
+                return new ArrayList<>();
+            }
+            membersByShard = groupBy(memberIds, shards::forMember);
+        }
+        Map<Shard, List<Long>> members = membersByShard;
+        Collection<Shard> targets = members == null ? shards.all() : members.keySet();
+        String statusCondition = status == null ? "" : " o.status = '" + status.name() + "'";
+        String limitSql = limit == Integer.MAX_VALUE ? "" : " limit " + limit;
+
+        List<List<OrderRow>> results = shards.scatter(targets, shard -> {
+            if (members == null) {
+                String where = statusCondition.isEmpty() ? "" : " where" + statusCondition;
+                return shard.getJdbcTemplate().query(ORDER_SELECT + where + " order by o.order_id" + limitSql, OrderRow.MAPPER);
+            }
+            String and = statusCondition.isEmpty() ? "" : " and" + statusCondition;
+            List<OrderRow> rows = queryIn(shard, ORDER_SELECT + " where o.member_id in ", and, members.get(shard), OrderRow.MAPPER);
+            rows.sort(BY_ID);
+            return rows;
+        });
+        return ShardMerge.sorted(results, BY_ID, limit);
+    }
+
+    //키셋 페이징: shard마다 커서 이후 limit개씩 최신순으로 읽어서 합친 뒤 limit개
+    private List<OrderRow> findLatestRows(OrderCursor cursor, int limit) {
+        List<List<OrderRow>> pages = shards.scatter(shard -> {
+            if (cursor == null) {
+                return shard.getJdbcTemplate().query(ORDER_SELECT + LATEST_FIRST_SQL + " limit ?", OrderRow.MAPPER, limit);
+            }
+            return shard.getJdbcTemplate().query(ORDER_SELECT + " where" + KEYSET_CONDITION + LATEST_FIRST_SQL + " limit ?",
+                    OrderRow.MAPPER, cursor.getOrderDate(), cursor.getOrderDate(), cursor.getOrderId(), limit);
+        });
+        return ShardMerge.sorted(pages, LATEST_FIRST, limit);
+    }
+
+    //주문상품: 주문과 같은 shard에서 in 절로 조회
+    private Map<Long, List<ItemRow>> findItems(List<OrderRow> rows) {
+        Map<Shard, List<Long>> byShard = groupBy(rows.stream().map(OrderRow::getOrderId).collect(Collectors.toList()), shards::forOrder);
+        List<List<ItemRow>> results = shards.scatter(byShard.keySet(), shard -> queryIn(shard,
+                "select order_id, item_id, order_price, count from order_item where order_id in ", " order by order_item_id",
+                byShard.get(shard), ItemRow.MAPPER));
+        Map<Long, List<ItemRow>> items = new HashMap<>();
+        for (List<ItemRow> result : results) {
+            for (ItemRow item : result) {
+                items.computeIfAbsent(item.getOrderId(), id -> new ArrayList<>()).add(item);
+            }
+        }
+        return items;
+    }
+
+    //in 절 파라미터가 너무 많아지지 않도록 IN_CHUNK_SIZE개씩 나눠서 조회
+    private <T> List<T> queryIn(Shard shard, String sqlBeforeIn, String sqlAfterIn, List<Long> ids, RowMapper<T> mapper) {
+        List<T> result = new ArrayList<>();
+        for (List<Long> chunk : chunks(ids)) {
+            result.addAll(shard.getJdbcTemplate().query(
+                    sqlBeforeIn + placeholders(chunk.size()) + sqlAfterIn, mapper, chunk.toArray()));
+        }
+        return result;
+    }
+
+    //shard마다 정렬된 커서를 열어서 합친 iterator를 넘김. 모두 읽거나 실패하면 커서를 닫음
+    private <T> void stream(String sql, RowMapper<T> mapper, Comparator<? super T> comparator, Consumer<Iterator<T>> reader) {
+        List<Stream<T>> streams = new ArrayList<>();
+        try {
+            for (Shard shard : shards.all()) {
+                JdbcTemplate jdbc = new JdbcTemplate(shard.getDataSource());
+                jdbc.setFetchSize(STREAM_FETCH_SIZE);
+                streams.add(jdbc.queryForStream(sql, mapper));
+            }
+            List<Iterator<T>> iterators = streams.stream().map(Stream::iterator).collect(Collectors.toList());
+            reader.accept(ShardMerge.sorted(iterators, comparator));
+        } finally {
+            streams.forEach(Stream::close);
+        }
+    }
+
+    //==변환==//
+
+    private List<Order> toOrders(List<OrderRow> rows) {
+        Map<Long, List<ItemRow>> items = findItems(rows);
+        List<Order> orders = new ArrayList<>(rows.size());
+        for (OrderRow row : rows) {
+            Delivery delivery = new Delivery();
+            delivery.setId(row.getOrderId());
+            delivery.setAddress(row.getAddress());
+            delivery.setStatus(row.getDeliveryStatus());
+            List<OrderItem> orderItems = new ArrayList<>();
+            for (ItemRow item : items.getOrDefault(row.getOrderId(), Collections.emptyList())) {
+                orderItems.add(OrderItem.createOrderItem(em.getReference(Item.class, item.getItemId()), item.getOrderPrice(), item.getCount()));
+            }
+            orders.add(Order.restore(row.getOrderId(), em.getReference(Member.class, row.getMemberId()), delivery,
+                    row.getOrderDate(), row.getStatus(), orderItems));
+        }
+        return orders;
+    }
+
+    private List<OrderQueryDto> toQueryDtos(List<OrderRow> rows) {
+        return toQueryDtos(rows, findItems(rows));
+    }
+
+    private List<OrderQueryDto> toQueryDtos(List<OrderRow> rows, Map<Long, List<ItemRow>> items) {
+        Map<Long, String> memberNames = memberNames(rows);
+        Map<Long, String> itemNames = names("select i.id, i.name from Item i where i.id in :ids",
+                items.values().stream().flatMap(List::stream).map(ItemRow::getItemId).collect(Collectors.toSet()));
+        List<OrderQueryDto> result = new ArrayList<>(rows.size());
+        for (OrderRow row : rows) {
+            OrderQueryDto dto = new OrderQueryDto(row.getOrderId(), row.getMemberId(), memberNames.get(row.getMemberId()), row.getOrderDate(),
+                    row.getStatus(), row.getAddress(), row.getDeliveryStatus());
+            dto.setOrderItems(items.getOrDefault(row.getOrderId(), Collections.emptyList()).stream()
+                    .map(item -> new OrderItemQueryDto(row.getOrderId(), itemNames.get(item.getItemId()), item.getOrderPrice(), item.getCount()))
+                    .collect(Collectors.toList()));
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private static List<OrderFlatDto> toFlats(List<OrderQueryDto> orders) {
+        List<OrderFlatDto> flats = new ArrayList<>();
+        for (OrderQueryDto order : orders) {
+            for (OrderItemQueryDto item : order.getOrderItems()) {
+                flats.add(new OrderFlatDto(order.getOrderId(), order.getName(), order.getOrderDate(), order.getOrderStatus(),
+                        order.getAddress(), item.getItemName(), item.getOrderPrice(), item.getCount()));
+            }
+        }
+        return flats;
+    }
+
+    private Map<Long, String> memberNames(List<OrderRow> rows) {
+        return names("select m.id, m.name from Member m where m.id in :ids",
+                rows.stream().map(OrderRow::getMemberId).collect(Collectors.toSet()));
+    }
+
+    //기존 DB에서 id -> 이름
+    private Map<Long, String> names(String jpql, Set<Long> ids) {
+        Map<Long, String> names = new HashMap<>();
+        for (List<Long> chunk : chunks(new ArrayList<>(ids))) {
+            for (Object[] row : em.createQuery(jpql, Object[].class).setParameter("ids", chunk).getResultList()) {
+                names.put((Long) row[0], (String) row[1]);
+            }
+        }
+        return names;
+    }
+
+    private static Map<Shard, List<Long>> groupBy(Collection<Long> ids, Function<Long, Shard> shardOf) {
+        Map<Shard, List<Long>> byShard = new LinkedHashMap<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            byShard.computeIfAbsent(shardOf.apply(id), s -> new ArrayList<>()).add(id);
+        }
+        return byShard;
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    private static String placeholders(int count) {
+        return "(" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+
+    private static String name(Enum<?> value) {
+        return value == null ? null : value.name();
+    }
+
+    //==row==//
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class OrderRow {
+        private static final RowMapper<OrderRow> MAPPER = (rs, rowNum) -> OrderRow.of(rs);
+
+        private final Long orderId;
+        private final Long memberId;
+        private final LocalDateTime orderDate;
+        private final OrderStatus status;
+        private final Address address;
+        private final DeliveryStatus deliveryStatus;
+
+        private static OrderRow of(ResultSet rs) throws SQLException {
+            String city = rs.getString("city");
+            String street = rs.getString("street");
+            String zipcode = rs.getString("zipcode");
+            //JPA와 같이 컬럼이 모두 null이면 임베디드 값도 null
+            Address address = city == null && street == null && zipcode == null ? null : new Address(city, street, zipcode);
+            String status = rs.getString("status");
+            String deliveryStatus = rs.getString("delivery_status");
+            return new OrderRow(rs.getLong("order_id"), rs.getLong("member_id"),
+                    rs.getObject("order_date", LocalDateTime.class),
+                    status == null ? null : OrderStatus.valueOf(status), address,
+                    deliveryStatus == null ? null : DeliveryStatus.valueOf(deliveryStatus));
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class ItemRow {
+        private static final RowMapper<ItemRow> MAPPER = (rs, rowNum) -> new ItemRow(
+                rs.getLong("order_id"), rs.getLong("item_id"), rs.getInt("order_price"), rs.getInt("count"));
+
+        private final Long orderId;
+        private final Long itemId;
+        private final int orderPrice;
+        private final int count;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class FlatRow {
+        private static final RowMapper<FlatRow> MAPPER = (rs, rowNum) -> {
+            OrderRow order = OrderRow.of(rs);
+            return new FlatRow(order, new ItemRow(order.getOrderId(), rs.getLong("item_id"), rs.getInt("order_price"), rs.getInt("count")));
+        };
+
+        private final OrderRow order;
+        private final ItemRow item;
+
+        private Long getOrderId() {
+            return order.getOrderId();
+        }
+    }
+}
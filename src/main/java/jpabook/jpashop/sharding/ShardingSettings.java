@@ -0,0 +1,31 @@
+package jpabook.jpashop.sharding;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 주문 샤딩 설정(jpashop.sharding.*)
+ * urls의 순서가 shard 번호이고 주문 id에도 shard 번호가 들어가므로, 데이터가 있는 상태에서 개수나 순서를 바꾸면 안 됨
+ */
+@Component
+@ConfigurationProperties(prefix = "jpashop.sharding")
+@Getter @Setter
+public class ShardingSettings {
+
+    private boolean enabled = false;
+
+    private List<String> urls = new ArrayList<>();
+    private String username = "sa";
+    private String password = "";
+    private int maximumPoolSize = 10; //shard마다
+
+    private int threads = 8; //모든 shard에 동시에 조회를 보내는 스레드 수
+
+    //true: 시작할 때 shard의 주문 테이블을 지우고 다시 만듦(ddl-auto: create와 맞춤, 회원/상품 id가 새로 만들어지므로)
+    private boolean recreateSchema = true;
+}
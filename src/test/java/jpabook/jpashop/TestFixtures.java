@@ -0,0 +1,42 @@
+package jpabook.jpashop;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.domain.Member;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 테스트 공통 데이터(상품, 회원)
+ * 커밋이 필요한 테스트는 TransactionTemplate 안에서 호출
+ *
+ * Book book = tx.execute(status -> TestFixtures.createBook(em, "시골 JPA", 10000, 10));
+ */
+public final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    public static Book createBook(EntityManager em, String name, int price, int stockQuantity) {
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(price);
+        book.setStockQuantity(stockQuantity);
+        em.persist(book);
+        return book;
+    }
+
+    public static Member createMember(EntityManager em, String name) {
+        Member member = newMember(name);
+        em.persist(member);
+        return member;
+    }
+
+    //저장하지 않은 회원, MemberService.join으로 가입시킬 때 사용
+    public static Member newMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        return member;
+    }
+}
@@ -0,0 +1,45 @@
+package jpabook.jpashop.api;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class OrderApiControllerTest {
+
+    @Autowired MockMvc mockMvc;
+
+    @Test
+    public void limit이_범위를_벗어나면_400() throws Exception {
+        String[] uris = {"/api/v3.1/orders", "/api/v3.2/orders", "/api/v5.1/orders", "/api/v6.1/orders", "/api/v7/orders"};
+        for (String uri : uris) {
+            mockMvc.perform(get(uri).param("limit", "-1"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get(uri).param("limit", "0"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get(uri).param("limit", String.valueOf(OrderApiController.MAX_LIMIT + 1)))
+                    .andExpect(status().isBadRequest());
+        }
+        mockMvc.perform(get("/api/v3.1/orders").param("offset", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void 범위_안의_limit은_그대로_조회() throws Exception {
+        mockMvc.perform(get("/api/v5.1/orders").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(1));
+        mockMvc.perform(get("/api/v6.1/orders").param("limit", String.valueOf(OrderApiController.MAX_LIMIT)))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,218 @@
+package jpabook.jpashop.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class CompletedOrderJsonCacheTest {
+
+    private static final int CAPACITY = 1024 * 1024; //capacity-mb: 1
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int MAX_RECORD = CAPACITY / 16;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CompletedOrderJsonCache cache = new CompletedOrderJsonCache(true, 1, meterRegistry);
+
+    @Test
+    public void 저장한_JSON을_그대로_반환() throws Exception {
+        //when
+        cache.put(1L, json(1L, 100), 0);
+
+        //then
+        assertArrayEquals(json(1L, 100), cache.get(1L, 0));
+        assertNull("저장하지 않은 주문", cache.get(2L, 0));
+        assertNull("버퍼의 1/16보다 큰 JSON은 저장하지 않음", put(3L, MAX_RECORD - HEADER_SIZE + 1, 0));
+    }
+
+    @Test
+    public void 꺼져_있으면_저장하지_않음() throws Exception {
+        //given
+        CompletedOrderJsonCache disabled = new CompletedOrderJsonCache(false, 1, new SimpleMeterRegistry());
+
+        //when
+        disabled.put(1L, json(1L, 100), 0);
+
+        //then
+        assertNull(disabled.get(1L, 0));
+    }
+
+    @Test
+    public void 버퍼가_차면_오래된_기록부터_밀어냄() throws Exception {
+        //given: 16개로 버퍼가 꽉 참
+        for (long id = 1; id <= 16; id++) {
+            cache.put(id, json(id, MAX_RECORD - HEADER_SIZE), 0);
+        }
+        assertArrayEquals(json(1L, MAX_RECORD - HEADER_SIZE), cache.get(1L, 0));
+
+        //when
+        cache.put(17L, json(17L, 100), 0);
+
+        //then
+        assertNull("가장 오래된 기록이 밀려남", cache.get(1L, 0));
+        assertArrayEquals(json(2L, MAX_RECORD - HEADER_SIZE), cache.get(2L, 0));
+        assertArrayEquals(json(17L, 100), cache.get(17L, 0));
+        assertEquals(1, evictions(), 0);
+    }
+
+    @Test
+    public void 다시_저장한_주문은_이전_기록이_밀려나도_남음() throws Exception {
+        //given
+        cache.put(1L, json(1L, MAX_RECORD - HEADER_SIZE), 0);
+        for (long id = 2; id <= 15; id++) {
+            cache.put(id, json(id, MAX_RECORD - HEADER_SIZE), 0);
+        }
+        cache.put(1L, json(1L, 50), 0); //같은 주문의 새 기록
+
+        //when: 첫 번째 기록이 밀려남
+        cache.put(16L, json(16L, MAX_RECORD - HEADER_SIZE), 0);
+
+        //then
+        assertArrayEquals(json(1L, 50), cache.get(1L, 0));
+        assertEquals("이전 기록은 index에 없으므로 밀어낸 수에 넣지 않음", 0, evictions(), 0);
+    }
+
+    @Test
+    public void 끝에_남은_자리를_건너뛰고_처음부터_씀() throws Exception {
+        //given: 끝에 HEADER_SIZE보다 큰 자리가 남도록 채움 -> SKIP 기록
+        int size = 60_000;
+        int fit = CAPACITY / (HEADER_SIZE + size); //17개, 끝에 28,372 byte가 남음
+        long id = 1;
+        for (; id <= fit; id++) {
+            cache.put(id, json(id, size), 0);
+        }
+
+        //when: 처음으로 돌아가서 두 바퀴 더 씀(tail이 SKIP 기록도 넘어감)
+        for (; id <= fit * 3L; id++) {
+            cache.put(id, json(id, size), 0);
+        }
+
+        //then
+        assertNull(cache.get(1L, 0));
+        int readable = 0;
+        for (long i = 1; i < id; i++) {
+            byte[] cached = cache.get(i, 0);
+            if (cached != null) {
+                assertArrayEquals("덮어쓴 자리의 JSON이 섞이지 않음", json(i, size), cached);
+                readable++;
+            }
+        }
+        assertTrue(readable >= fit - 1);
+        assertEquals(id - 1 - readable, evictions(), 0);
+    }
+
+    @Test
+    public void 끝에_헤더보다_작은_자리가_남아도_처음부터_씀() throws Exception {
+        //given: 65,536 * 15 + 65,530 -> 끝에 6 byte가 남음(SKIP 헤더도 못 씀)
+        for (long id = 1; id <= 15; id++) {
+            cache.put(id, json(id, MAX_RECORD - HEADER_SIZE), 0);
+        }
+        cache.put(16L, json(16L, MAX_RECORD - HEADER_SIZE - 6), 0);
+
+        //when
+        for (long id = 17; id <= 40; id++) {
+            cache.put(id, json(id, MAX_RECORD - HEADER_SIZE - 6), 0);
+        }
+
+        //then
+        for (long id = 26; id <= 40; id++) {
+            assertArrayEquals(json(id, MAX_RECORD - HEADER_SIZE - 6), cache.get(id, 0));
+        }
+        assertNull(cache.get(16L, 0));
+    }
+
+    @Test
+    public void generation이_바뀌면_기존_기록은_모두_무효() throws Exception {
+        //given
+        cache.put(1L, json(1L, 100), 0);
+        cache.put(2L, json(2L, 100), 0);
+
+        //when: 회원/상품 이름이 바뀐 뒤 저장
+        cache.put(3L, json(3L, 100), 1);
+
+        //then
+        assertNull(cache.get(1L, 0));
+        assertNull(cache.get(1L, 1));
+        assertArrayEquals(json(3L, 100), cache.get(3L, 1));
+        assertNull("조회 전에 읽은 버전이 다르면 사용하지 않음", cache.get(3L, 0));
+
+        //when: 이전 버전으로 만든 JSON이 늦게 저장됨
+        cache.put(2L, json(2L, 100), 0);
+
+        //then
+        assertNull(cache.get(2L, 0));
+        assertNull(cache.get(2L, 1));
+    }
+
+    @Test
+    public void 읽는_중에_덮어써진_기록은_반환하지_않음() throws Exception {
+        //given: 주문마다 다른 byte로 채운 JSON, 반환된 값은 모두 자기 주문의 byte여야 함
+        int size = 4_000;
+        int ids = 1_000; //버퍼보다 4배 많음 -> 계속 덮어씀
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        Future<?> writer = executor.submit(() -> {
+            long id = 0;
+            while (running.get()) {
+                id = id % ids + 1;
+                cache.put(id, json(id, size), 0);
+            }
+        });
+
+        //when
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            readers.add(executor.submit(() -> {
+                int hits = 0;
+                long deadline = System.currentTimeMillis() + 500;
+                while (System.currentTimeMillis() < deadline) {
+                    long id = ThreadLocalRandom.current().nextLong(1, ids + 1);
+                    byte[] cached = cache.get(id, 0);
+                    if (cached != null) {
+                        assertArrayEquals("주문 " + id, json(id, size), cached);
+                        hits++;
+                    }
+                }
+                return hits;
+            }));
+        }
+
+        //then
+        int hits = 0;
+        for (Future<Integer> reader : readers) {
+            hits += reader.get(10, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        writer.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertTrue("읽은 기록이 있어야 검증이 의미 있음", hits > 0);
+    }
+
+    private byte[] put(Long orderId, int size, long generation) {
+        cache.put(orderId, json(orderId, size), generation);
+        return cache.get(orderId, generation);
+    }
+
+    private double evictions() {
+        return meterRegistry.get("jpashop.order-json-cache.evictions").functionCounter().count();
+    }
+
+    //주문 id로 채운 byte: 다른 주문의 기록과 섞이면 바로 드러남
+    private static byte[] json(long orderId, int size) {
+        byte[] json = new byte[size];
+        Arrays.fill(json, (byte) (orderId * 31 + 7));
+        json[0] = (byte) orderId;
+        json[size - 1] = (byte) (orderId >>> 8);
+        return json;
+    }
+}
@@ -0,0 +1,194 @@
+package jpabook.jpashop.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightAspectTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private Loader target;
+    private Loader loader;
+
+    @Before
+    public void setUp() {
+        init(5000);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void 동시에_들어온_같은_호출은_한_번만_실행() throws Exception {
+        //given
+        target.block = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> loader.load("a"));
+        target.started.await(5, TimeUnit.SECONDS);
+
+        //when
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            followers.add(executor.submit(() -> loader.load("a")));
+        }
+        awaitShared(5);
+        Future<String> other = executor.submit(() -> loader.load("b")); //다른 인자는 합치지 않음
+        assertEquals("b-2", other.get(5, TimeUnit.SECONDS));
+        target.block.countDown();
+
+        //then
+        assertEquals("a-1", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> follower : followers) {
+            assertEquals("a-1", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, target.executions.get());
+        assertEquals("끝난 뒤에 온 호출은 다시 실행", "a-3", loader.load("a"));
+    }
+
+    @Test
+    public void 실행한_스레드가_다시_호출하면_기다리지_않고_실행() throws Exception {
+        //given
+        target.reenter = true;
+
+        //when
+        String result = executor.submit(() -> loader.load("a")).get(5, TimeUnit.SECONDS);
+
+        //then
+        assertEquals("a-1(a-2)", result);
+        assertEquals(0, count("timeout"), 0);
+    }
+
+    @Test
+    public void 실행한_호출의_예외를_같이_받음() throws Exception {
+        //given
+        target.block = new CountDownLatch(1);
+        target.fail = true;
+        Future<String> leader = executor.submit(() -> loader.load("a"));
+        target.started.await(5, TimeUnit.SECONDS);
+        Future<String> follower = executor.submit(() -> loader.load("a"));
+        awaitShared(1);
+
+        //when
+        target.block.countDown();
+
+        //then
+        assertSame(IllegalStateException.class, causeOf(leader).getClass());
+        assertSame("기다린 호출도 같은 예외", causeOf(leader), causeOf(follower));
+        assertEquals(1, target.executions.get());
+    }
+
+    @Test
+    public void 쓰기_트랜잭션_안에서는_합치지_않음() throws Exception {
+        //given
+        target.block = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> loader.load("a"));
+        target.started.await(5, TimeUnit.SECONDS);
+
+        //when
+        Future<String> inTransaction = executor.submit(() -> {
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            try {
+                return loader.load("a");
+            } finally {
+                TransactionSynchronizationManager.setActualTransactionActive(false);
+            }
+        });
+
+        //then
+        assertEquals("자기가 바꾼 데이터를 봐야 하므로 직접 실행", "a-2", inTransaction.get(5, TimeUnit.SECONDS));
+        target.block.countDown();
+        assertEquals("a-1", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(0, count("shared"), 0);
+    }
+
+    @Test
+    public void 오래_걸리면_기다리던_호출은_직접_실행() throws Exception {
+        //given
+        init(50);
+        target.block = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> loader.load("a"));
+        target.started.await(5, TimeUnit.SECONDS);
+
+        //when
+        String follower = executor.submit(() -> loader.load("a")).get(5, TimeUnit.SECONDS);
+        target.block.countDown();
+
+        //then
+        assertEquals("a-2", follower);
+        assertEquals("a-1", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(1, count("timeout"), 0);
+    }
+
+    private void init(long waitTimeoutMillis) {
+        target = new Loader();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new SingleFlightAspect(meterRegistry, waitTimeoutMillis));
+        loader = factory.getProxy();
+        target.self = loader;
+    }
+
+    //기다리는 호출이 먼저 온 호출에 붙었는지 밖에서 알 수 없으므로 잠깐 기다림
+    private void awaitShared(int followers) throws InterruptedException {
+        Thread.sleep(100L + followers * 10L);
+    }
+
+    private double count(String result) {
+        return meterRegistry.find("jpashop.single-flight.calls").tag("result", result).counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    private static Throwable causeOf(Future<String> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("예외가 발생해야 한다.");
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    public static class Loader {
+        private final AtomicInteger executions = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch block;
+        private volatile boolean fail;
+        private volatile boolean reenter;
+        private Loader self;
+
+        @SingleFlight
+        public String load(String key) throws InterruptedException {
+            int n = executions.incrementAndGet();
+            started.countDown();
+            if (block != null && n == 1) {
+                assertTrue(block.await(5, TimeUnit.SECONDS));
+            }
+            if (fail) {
+                throw new IllegalStateException("조회 실패");
+            }
+            if (reenter && n == 1) {
+                return key + "-" + n + "(" + self.load(key) + ")";
+            }
+            return key + "-" + n;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package jpabook.jpashop.cache;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.api.OrderApiController;
+import jpabook.jpashop.datasource.ReplicaRoutingDataSource;
+import jpabook.jpashop.service.MemberService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.method.HandlerMethod;
+
+import static jpabook.jpashop.TestFixtures.newMember;
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//버전은 커밋 뒤에 바뀌므로 테스트 데이터를 커밋함(@Transactional 사용 안 함)
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class VersionETagInterceptorTest {
+
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberService memberService;
+    @Autowired MeterRegistry meterRegistry;
+    @Autowired VersionETagInterceptor versionETagInterceptor;
+    @Autowired OrderApiController orderApiController;
+
+    @Test
+    public void ETag가_같으면_SQL_없이_304() throws Exception {
+        //given
+        String etag = etagOf("/api/v5/orders");
+        DistributionSummary statements = sqlStatements("/api/v5/orders");
+        long requests = statements.count();
+        double sqlCount = statements.totalAmount();
+        assertTrue("200 응답은 조회함", sqlCount > 0);
+
+        //when
+        mockMvc.perform(get("/api/v5/orders").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        //then
+        assertEquals(requests + 1, statements.count());
+        assertEquals("304는 조회도 직렬화도 하지 않음", sqlCount, statements.totalAmount(), 0);
+    }
+
+    @Test
+    public void 회원_이름을_바꾸면_주문_ETag도_바뀜() throws Exception {
+        //given
+        Long memberId = memberService.join(newMember("ETag회원"));
+        String orders = etagOf("/api/v5/orders");
+        String members = etagOf("/api/v2/members");
+
+        //when
+        memberService.update(memberId, "ETag회원2");
+
+        //then
+        String changedOrders = mockMvc.perform(get("/api/v5/orders").header(HttpHeaders.IF_NONE_MATCH, orders))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals("주문 응답에 회원 이름이 들어가므로 MEMBER 버전도 포함", orders, changedOrders);
+        mockMvc.perform(get("/api/v2/members").header(HttpHeaders.IF_NONE_MATCH, members))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/v5/orders").header(HttpHeaders.IF_NONE_MATCH, changedOrders))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void 응답을_만드는_동안_읽기를_primary로_고정() throws Exception {
+        //given: 버전은 primary 커밋 기준이므로 replica의 이전 데이터에 새 ETag가 붙으면 안 됨
+        HandlerMethod handler = new HandlerMethod(orderApiController, OrderApiController.class.getMethod("ordersV5"));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v5/orders");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //when
+        assertTrue(versionETagInterceptor.preHandle(request, response, handler));
+
+        //then
+        assertFalse("이미 고정되어 있음", ReplicaRoutingDataSource.pinToPrimary());
+        versionETagInterceptor.afterCompletion(request, response, handler, null);
+        assertTrue("요청이 끝나면 고정을 풂", ReplicaRoutingDataSource.pinToPrimary());
+        ReplicaRoutingDataSource.unpin();
+    }
+
+    private String etagOf(String uri) throws Exception {
+        String etag = mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(uri + " ETag", etag);
+        return etag;
+    }
+
+    //SqlCountFilter가 요청마다 남기는 SQL 수
+    private DistributionSummary sqlStatements(String uri) {
+        return meterRegistry.get("jpashop.sql.statements").tag("method", "GET").tag("uri", uri).summary();
+    }
+}
@@ -0,0 +1,197 @@
+package jpabook.jpashop.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class VersionedListCacheTest {
+
+    private final VersionedListCache<String> cache = new VersionedListCache<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void 버전이_같으면_다시_조회하지_않음() throws Exception {
+        //when
+        List<String> first = cache.get(1, () -> load("a"));
+        List<String> second = cache.get(1, () -> load("b"));
+
+        //then
+        assertEquals(1, loads.get());
+        assertSame(first, second);
+        assertEquals(List.of("a"), second);
+    }
+
+    @Test
+    public void 버전이_바뀌면_다시_조회() throws Exception {
+        //given
+        cache.get(1, () -> load("a"));
+
+        //when
+        List<String> list = cache.get(2, () -> load("b"));
+
+        //then
+        assertEquals(2, loads.get());
+        assertEquals(List.of("b"), list);
+        assertEquals("새 스냅샷이 저장됨", List.of("b"), cache.get(2, () -> load("c")));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void 스냅샷은_바꿀_수_없음() throws Exception {
+        //when
+        List<String> list = cache.get(1, () -> load("a"));
+        list.add("b");
+
+        //then
+        fail("여러 스레드가 같이 쓰는 목록은 바꿀 수 없어야 한다.");
+    }
+
+    @Test
+    public void 늦게_온_이전_버전_조회가_새_스냅샷을_덮어쓰지_않음() throws Exception {
+        //given
+        cache.get(2, () -> load("new"));
+
+        //when: 버전 2가 커밋되기 전에 버전을 읽은 요청
+        List<String> old = cache.get(1, () -> load("old"));
+
+        //then
+        assertEquals(List.of("old"), old);
+        assertEquals(List.of("new"), cache.get(2, () -> load("again")));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void 스냅샷이_없으면_만드는_스레드를_기다림() throws Exception {
+        //given
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        Future<List<String>> owner = executor.submit(() -> cache.get(1, () -> {
+            loading.countDown();
+            await(release);
+            return load("v1");
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+
+        //when: 시작 직후 몰려온 요청
+        List<Future<List<String>>> waiters = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            waiters.add(executor.submit(() -> cache.get(1, () -> load("other"))));
+        }
+        Thread.sleep(100); //기다리는 스레드가 먼저 온 조회에 붙도록
+        release.countDown();
+
+        //then
+        List<String> list = owner.get(5, TimeUnit.SECONDS);
+        for (Future<List<String>> waiter : waiters) {
+            assertSame(list, waiter.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals("한 번만 조회", 1, loads.get());
+    }
+
+    @Test
+    public void 스냅샷이_없을_때_조회가_실패하면_기다리던_스레드도_같은_예외() throws Exception {
+        //given
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("조회 실패");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<List<String>> owner = executor.submit(() -> cache.get(1, () -> {
+            loading.countDown();
+            await(release);
+            throw failure;
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+        Future<List<String>> waiter = executor.submit(() -> cache.get(1, () -> load("other")));
+        Thread.sleep(100);
+
+        //when
+        release.countDown();
+
+        //then
+        assertSame(failure, causeOf(owner));
+        assertSame(failure, causeOf(waiter));
+        executor.shutdown();
+        assertEquals(0, loads.get());
+        assertEquals("다음 조회는 다시 만듦", List.of("v1"), cache.get(1, () -> load("v1")));
+    }
+
+    @Test
+    public void 다시_만드는_중에는_이전_스냅샷을_반환() throws Exception {
+        //given
+        cache.get(1, () -> load("v1"));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<List<String>> rebuild = executor.submit(() -> cache.get(2, () -> {
+            loading.countDown();
+            await(release);
+            return load("v2");
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+
+        //when
+        List<String> during = cache.get(2, () -> load("other"));
+        release.countDown();
+        List<String> after = rebuild.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        //then
+        assertEquals("기다리지 않고 이전 목록", List.of("v1"), during);
+        assertEquals(List.of("v2"), after);
+        assertEquals(List.of("v2"), cache.get(2, () -> load("again")));
+        assertEquals("v1, v2 한 번씩만 조회", 2, loads.get());
+    }
+
+    @Test
+    public void 조회가_실패해도_다음_조회는_다시_만듦() throws Exception {
+        //given
+        cache.get(1, () -> load("v1"));
+
+        //when
+        try {
+            cache.get(2, () -> {
+                throw new IllegalStateException("조회 실패");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            //예외는 호출한 쪽으로 그대로 전달
+        }
+        List<String> list = cache.get(2, () -> load("v2"));
+
+        //then
+        assertEquals("다시 만드는 중 표시가 남아 있으면 계속 이전 목록을 반환함", List.of("v2"), list);
+    }
+
+    private List<String> load(String value) {
+        loads.incrementAndGet();
+        return List.of(value);
+    }
+
+    private static Throwable causeOf(Future<List<String>> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("예외가 발생해야 한다.");
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
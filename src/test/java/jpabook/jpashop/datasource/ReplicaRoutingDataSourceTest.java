@@ -0,0 +1,142 @@
+package jpabook.jpashop.datasource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+//replica 대신 두 번째 H2(메모리 DB)를 띄우고 marker 테이블 값으로 어느 쪽에서 읽었는지 확인
+public class ReplicaRoutingDataSourceTest {
+
+    private static final long WINDOW_MILLIS = 60_000;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @Before
+    public void setUp() {
+        DataSource primary = h2("primary");
+        DataSource replica = h2("replica");
+        init(primary, replica);
+    }
+
+    @After
+    public void tearDown() {
+        ReadYourWrites.stop();
+    }
+
+    @Test
+    public void 읽기_전용_트랜잭션은_replica() throws Exception {
+        assertEquals("replica", readOnly.execute(status -> marker()));
+    }
+
+    @Test
+    public void 쓰기_트랜잭션과_트랜잭션_밖은_primary() throws Exception {
+        assertEquals("primary", readWrite.execute(status -> marker()));
+        ReadYourWrites.stop();
+        assertEquals("primary", marker());
+    }
+
+    @Test
+    public void 쓰기_직후의_읽기는_primary() throws Exception {
+        //given
+        ReadYourWrites.start(0L, null);
+
+        //when
+        readWrite.executeWithoutResult(status -> jdbcTemplate.update("update marker set name = 'primary'"));
+
+        //then
+        assertEquals("primary", readOnly.execute(status -> marker()));
+    }
+
+    @Test
+    public void window가_지나면_다시_replica() throws Exception {
+        //given: 이전 요청의 쿠키에 남은 마지막 쓰기 시각
+        ReadYourWrites.start(System.currentTimeMillis() - WINDOW_MILLIS - 1, null);
+
+        //then
+        assertEquals("replica", readOnly.execute(status -> marker()));
+    }
+
+    @Test
+    public void 커밋하면_커밋_시각을_알림() throws Exception {
+        //given
+        long[] committed = new long[1];
+        ReadYourWrites.start(0L, millis -> committed[0] = millis);
+
+        //when
+        readWrite.executeWithoutResult(status -> jdbcTemplate.update("update marker set name = 'primary'"));
+
+        //then
+        assertTrue(committed[0] > 0);
+    }
+
+    @Test
+    public void readFromPrimary는_읽기_전용이어도_primary() throws Exception {
+        assertEquals("primary", ReplicaRoutingDataSource.readFromPrimary(() -> readOnly.execute(status -> marker())));
+    }
+
+    @Test
+    public void 고정을_풀기_전까지_primary() throws Exception {
+        //given
+        assertTrue(ReplicaRoutingDataSource.pinToPrimary());
+        try {
+            assertFalse("이미 고정되어 있으면 false", ReplicaRoutingDataSource.pinToPrimary());
+
+            //when
+            String marker = ReplicaRoutingDataSource.readFromPrimary(() -> readOnly.execute(status -> marker()));
+
+            //then
+            assertEquals("primary", marker);
+            assertEquals("안쪽 readFromPrimary가 고정을 풀지 않음", "primary", readOnly.execute(status -> marker()));
+        } finally {
+            ReplicaRoutingDataSource.unpin();
+        }
+        assertEquals("replica", readOnly.execute(status -> marker()));
+    }
+
+    @Test
+    public void replica에_연결할_수_없으면_primary() throws Exception {
+        //given
+        DataSource primary = h2("primary");
+        init(primary, new DriverManagerDataSource("jdbc:h2:tcp://localhost:1/unreachable", "sa", ""));
+
+        //then
+        assertEquals("primary", readOnly.execute(status -> marker()));
+    }
+
+    private void init(DataSource primary, DataSource replica) {
+        List<DataSource> replicas = Collections.singletonList(replica);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReplicaRoutingDataSource(primary, replicas, WINDOW_MILLIS));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private String marker() {
+        return jdbcTemplate.queryForObject("select name from marker", String.class);
+    }
+
+    private static DataSource h2(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table if not exists marker (name varchar(20))");
+        jdbc.execute("delete from marker");
+        jdbc.update("insert into marker values (?)", name);
+        return dataSource;
+    }
+}
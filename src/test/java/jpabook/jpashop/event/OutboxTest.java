@@ -0,0 +1,144 @@
+package jpabook.jpashop.event;
+
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.OrderService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import static jpabook.jpashop.TestFixtures.createBook;
+import static jpabook.jpashop.TestFixtures.createMember;
+import static org.junit.Assert.*;
+
+//커밋 뒤 다른 스레드에서 전달되므로 테스트 데이터를 커밋함(@Transactional 사용 안 함)
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "jpashop.outbox.retry-delay-ms=50")
+public class OutboxTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired RecordingSubscriber subscriber;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        RecordingSubscriber recordingSubscriber() {
+            return new RecordingSubscriber();
+        }
+    }
+
+    //받은 이벤트를 모두 기록, failOnce에 있는 주문의 취소 이벤트는 처음 한 번 실패
+    static class RecordingSubscriber implements OutboxSubscriber {
+        final List<DomainEvent> received = new CopyOnWriteArrayList<>();
+        final Set<Long> failOnce = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void handle(List<OutboxMessage> messages) {
+            for (OutboxMessage message : messages) {
+                if (message.getEvent() instanceof OrderCancelled
+                        && failOnce.remove(((OrderCancelled) message.getEvent()).getOrderId())) {
+                    throw new IllegalStateException("구독자 실패");
+                }
+            }
+            messages.forEach(message -> received.add(message.getEvent()));
+        }
+    }
+
+    @Test
+    public void 주문이_롤백되면_이벤트도_남지_않음() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "outbox회원"));
+        Book book = tx.execute(status -> createBook(em, "outbox JPA", 10000, 10));
+        long before = countEvents();
+
+        //when
+        tx.executeWithoutResult(status -> {
+            orderService.order(member.getId(), book.getId(), 2);
+            assertEquals("주문과 같은 트랜잭션에서 주문, 재고 이벤트 저장", before + 2, countEvents());
+            status.setRollbackOnly();
+        });
+
+        //then
+        assertEquals(before, countEvents());
+    }
+
+    @Test
+    public void 커밋되면_구독자에게_전달() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "outbox회원"));
+        Book book = tx.execute(status -> createBook(em, "outbox JPA", 10000, 10));
+
+        //when
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+
+        //then
+        await(e -> e instanceof OrderPlaced && ((OrderPlaced) e).getOrderId().equals(orderId));
+        await(e -> e instanceof StockChanged && ((StockChanged) e).getOrderId().equals(orderId)
+                && ((StockChanged) e).getDelta() == -2);
+        OrderPlaced placed = (OrderPlaced) find(e -> e instanceof OrderPlaced && ((OrderPlaced) e).getOrderId().equals(orderId));
+        assertEquals(member.getId(), placed.getMemberId());
+        assertEquals(20000, placed.getTotalPrice());
+        assertEquals(book.getId(), placed.getItems().get(0).getItemId());
+    }
+
+    @Test
+    public void 전달에_실패하면_다시_전달() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "outbox회원"));
+        Book book = tx.execute(status -> createBook(em, "outbox JPA", 10000, 10));
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        subscriber.failOnce.add(orderId);
+
+        //when
+        orderService.cancelOrder(orderId);
+
+        //then
+        await(e -> e instanceof OrderCancelled && ((OrderCancelled) e).getOrderId().equals(orderId));
+        assertFalse("처음 한 번은 실패했어야 한다", subscriber.failOnce.contains(orderId));
+        //전달 완료(publishedAt)는 모든 구독자가 처리한 뒤에 기록되므로 기다림
+        long deadline = System.currentTimeMillis() + 10_000;
+        Integer attempts;
+        while ((attempts = tx.execute(status -> em.createQuery(
+                        "select max(e.attempts) from OutboxEvent e where e.type = :type and e.publishedAt is not null", Integer.class)
+                .setParameter("type", EventType.ORDER_CANCELLED)
+                .getSingleResult())) == null) {
+            assertTrue("전달 완료가 기록되지 않았습니다.", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        assertTrue("실패한 횟수가 기록되어야 한다", attempts >= 1);
+    }
+
+    private void await(Predicate<DomainEvent> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (find(condition) == null) {
+            assertTrue("이벤트가 전달되지 않았습니다.", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private DomainEvent find(Predicate<DomainEvent> condition) {
+        return subscriber.received.stream().filter(condition).findFirst().orElse(null);
+    }
+
+    private long countEvents() {
+        return em.createQuery("select count(e) from OutboxEvent e", Long.class).getSingleResult();
+    }
+}
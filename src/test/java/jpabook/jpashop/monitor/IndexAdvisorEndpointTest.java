@@ -0,0 +1,31 @@
+package jpabook.jpashop.monitor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class IndexAdvisorEndpointTest {
+
+    @Autowired IndexAdvisorEndpoint indexAdvisorEndpoint;
+
+    @Test
+    public void 기본설정에서는_제안만_가능() throws Exception {
+        //when
+        indexAdvisorEndpoint.advise(5);
+
+        //then
+        try {
+            indexAdvisorEndpoint.measure(false, 5);
+            fail("measure-enabled=false면 DDL을 실행하지 않아야 한다.");
+        } catch (InvalidEndpointRequestException e) {
+            assertTrue(e.getReason().contains("jpashop.index-advisor.measure-enabled"));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package jpabook.jpashop.monitor;
+
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.service.OrderService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static jpabook.jpashop.TestFixtures.createBook;
+import static jpabook.jpashop.TestFixtures.createMember;
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "jpashop.lazy-load-profiler.enabled=true")
+@Transactional
+public class LazyLoadProfilerTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired LazyLoadProfiler lazyLoadProfiler;
+
+    @Test
+    public void 지연로딩을_호출한_위치별로_집계() throws Exception {
+        //given
+        Member member = createMember(em, "프로파일회원");
+        Book book = createBook(em, "프로파일 JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+        em.clear();
+        em.getEntityManagerFactory().getCache().evictAll(); //2차 캐시에서 읽으면 SQL이 나가지 않음
+        lazyLoadProfiler.reset();
+
+        //when
+        Order order = em.find(Order.class, orderId);
+        order.getMember().getName(); //프록시 초기화
+        order.getOrderItems().size(); //컬렉션 초기화
+
+        //then
+        List<LazyLoadProfiler.CallSiteReport> reports = lazyLoadProfiler.top(10);
+        LazyLoadProfiler.CallSiteReport memberLoad = find(reports, LazyLoadProfiler.ENTITY, Member.class.getName());
+        assertEquals(1, memberLoad.getInitializations());
+        assertEquals(1, memberLoad.getStatements());
+        assertTrue(memberLoad.getLoadedEntities() >= 1);
+        assertTrue("초기화를 일으킨 테스트 코드 위치: " + memberLoad.getCallSite(), memberLoad.getCallSite().startsWith("LazyLoadProfilerTest.지연로딩을_호출한_위치별로_집계:"));
+
+        LazyLoadProfiler.CallSiteReport itemsLoad = find(reports, LazyLoadProfiler.COLLECTION, Order.class.getName() + ".orderItems");
+        assertEquals(1, itemsLoad.getInitializations());
+        assertEquals(1, itemsLoad.getStatements());
+        int defaultBatchSize = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getSessionFactoryOptions().getDefaultBatchFetchSize();
+        assertEquals("@BatchSize가 없으면 default_batch_fetch_size", Math.max(1, defaultBatchSize), itemsLoad.getBatchSize());
+        assertNotEquals("프록시와 컬렉션은 다른 줄에서 초기화", memberLoad.getCallSite(), itemsLoad.getCallSite());
+    }
+
+    @Test
+    public void 이미_초기화된_프록시는_집계하지_않음() throws Exception {
+        //given
+        Member member = createMember(em, "프로파일회원2");
+        em.flush();
+        em.clear();
+        lazyLoadProfiler.reset();
+
+        //when
+        Member loaded = em.find(Member.class, member.getId()); //프록시가 아니라 바로 조회
+        loaded.getName();
+
+        //then
+        assertTrue(lazyLoadProfiler.top(10).stream()
+                .noneMatch(r -> r.getRole().equals(Member.class.getName())));
+    }
+
+    private static LazyLoadProfiler.CallSiteReport find(List<LazyLoadProfiler.CallSiteReport> reports, String kind, String role) {
+        return reports.stream()
+                .filter(r -> r.getKind().equals(kind) && r.getRole().equals(role))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError(kind + " " + role + " 집계가 없습니다."));
+    }
+}
@@ -0,0 +1,34 @@
+package jpabook.jpashop.monitor;
+
+import static org.junit.Assert.*;
+
+/**
+ * 테스트에서 SQL 실행 수를 고정(pin)하는 용도
+ * insert/update는 flush 시점에 실행되므로 쓰기 작업은 블록 안에서 em.flush()까지 호출할 것
+ *
+ * assertSqlCount(2, () -> orderQueryRepository.findAllByDto_optimization());
+ */
+public final class SqlAssertions {
+
+    private SqlAssertions() {
+    }
+
+    public static void assertSqlCount(int expected, Runnable block) {
+        assertEquals("실행된 SQL 수", expected, count(block));
+    }
+
+    public static void assertSqlCountAtMost(int max, Runnable block) {
+        int actual = count(block);
+        assertTrue("실행된 SQL 수는 " + max + " 이하여야 한다. 실제: " + actual, actual <= max);
+    }
+
+    public static int count(Runnable block) {
+        SqlCounter counter = SqlCounter.start();
+        try {
+            block.run();
+        } finally {
+            SqlCounter.stop();
+        }
+        return counter.getCount();
+    }
+}
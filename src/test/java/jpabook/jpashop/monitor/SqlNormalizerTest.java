@@ -0,0 +1,49 @@
+package jpabook.jpashop.monitor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SqlNormalizerTest {
+
+    //{설명, 원본 SQL, 정규화 결과}
+    private static final String[][] CASES = {
+            {"숫자 리터럴", "select * from item where item_id = 42", "select * from item where item_id = ?"},
+            {"소수", "update item set price = 12.50 where item_id = 1", "update item set price = ? where item_id = ?"},
+            {"문자열 리터럴", "select * from member where name = 'userA'", "select * from member where name = ?"},
+            {"문자열 안의 escape('')", "select * from member where name = 'it''s'", "select * from member where name = ?"},
+            {"문자열 안의 숫자, 주석 기호", "select * from member where name = 'a 1 -- /*'", "select * from member where name = ?"},
+            {"식별자 안의 숫자는 유지", "select order0_.order_id as order_id1_6_ from orders order0_",
+                    "select order0_.order_id as order_id1_6_ from orders order0_"},
+            {"in 목록", "select * from orders where order_id in (1, 2, 3)", "select * from orders where order_id in (?...)"},
+            {"in 목록(바인딩)", "select * from orders where order_id in (?,?,?,?)", "select * from orders where order_id in (?...)"},
+            {"padding된 in 목록(마지막 값 반복)", "select * from orders where order_id in (1, 2, 3, 3, 3, 3, 3, 3)",
+                    "select * from orders where order_id in (?...)"},
+            {"값이 하나인 in은 그대로", "select * from orders where order_id in (7)", "select * from orders where order_id in (?)"},
+            {"블록 주석", "/* select o from Order o */ select * from orders", "select * from orders"},
+            {"중간 블록 주석", "select * /* 2 columns */ from orders", "select * from orders"},
+            {"줄 주석", "select * from orders -- 최근 주문 10개\nwhere order_id = 1", "select * from orders where order_id = ?"},
+            {"끝나지 않은 주석", "select * from orders /* 끝", "select * from orders"},
+            {"공백, 줄바꿈(format_sql)", "  select\n        o.order_id\n    from\n\torders o  ", "select o.order_id from orders o"},
+            {"대문자", "SELECT * FROM ORDERS WHERE STATUS = 'ORDER'", "select * from orders where status = ?"},
+    };
+
+    @Test
+    public void 정규화() throws Exception {
+        for (String[] c : CASES) {
+            assertEquals(c[0], c[2], SqlNormalizer.normalize(c[1]));
+        }
+    }
+
+    @Test
+    public void 값만_다른_SQL은_같은_모양() throws Exception {
+        //given
+        String batch10 = "select * from order_item where order_id in (1, 2, 3, 4, 5, 6, 7, 8, 9, 10)";
+        String batch100 = "select * from order_item\nwhere order_id in (" + "?, ".repeat(99) + "?)";
+        String commented = "/* load collection */ SELECT * FROM order_item WHERE order_id IN (5, 6)";
+
+        //then
+        assertEquals(SqlNormalizer.normalize(batch10), SqlNormalizer.normalize(batch100));
+        assertEquals(SqlNormalizer.normalize(batch10), SqlNormalizer.normalize(commented));
+    }
+}
@@ -0,0 +1,164 @@
+package jpabook.jpashop.readmodel;
+
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static jpabook.jpashop.TestFixtures.createBook;
+import static jpabook.jpashop.TestFixtures.newMember;
+import static org.junit.Assert.*;
+
+//다시 계산은 chunk마다 새 트랜잭션으로 실행되므로 테스트 데이터를 커밋함(@Transactional 사용 안 함)
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class MemberStatsTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired MemberStatsRepository memberStatsRepository;
+    @Autowired MemberStatsRecomputer memberStatsRecomputer;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 주문과_취소를_증감으로_반영() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long memberId = memberService.join(newMember("통계회원1"));
+        Book book = tx.execute(status -> createBook(em, "통계 JPA", 10000, 20));
+
+        //when
+        Long cancelledId = orderService.order(memberId, book.getId(), 2);
+        orderService.order(memberId, book.getId(), 3);
+        orderService.cancelOrder(cancelledId);
+
+        //then
+        MemberStats stats = find(memberId);
+        assertEquals(2, stats.getOrderCount());
+        assertEquals(1, stats.getCancelledCount());
+        assertEquals("취소한 주문 금액은 빠짐", 30000, stats.getTotalSpent());
+        assertNotNull(stats.getLastOrderDate());
+    }
+
+    @Test
+    public void 다시_계산하면_원본과_같아지고_금액순으로_조회() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long bigId = memberService.join(newMember("통계회원2"));
+        Long smallId = memberService.join(newMember("통계회원3"));
+        Book book = tx.execute(status -> createBook(em, "통계 JPA", 10000, 100));
+        orderService.order(bigId, book.getId(), 50);
+        orderService.order(smallId, book.getId(), 49);
+        tx.executeWithoutResult(status -> em.createQuery("update MemberStats s set s.totalSpent = 0, s.orderCount = 0")
+                .executeUpdate()); //어긋난 통계
+
+        //when
+        while (memberStatsRecomputer.recomputeAll() == 0) { //시작할 때 도는 계산과 겹치면 끝날 때까지 기다림
+            Thread.sleep(20);
+        }
+
+        //then
+        MemberStats big = find(bigId);
+        assertEquals(1, big.getOrderCount());
+        assertEquals(500000, big.getTotalSpent());
+        List<MemberRankDto> first = memberStatsRepository.findRanking(null, 1);
+        assertEquals("금액이 가장 큰 회원이 먼저", bigId, first.get(0).getMemberId());
+        assertEquals("통계회원2", first.get(0).getName());
+        List<MemberRankDto> second = memberStatsRepository.findRanking(SpendCursor.of(big.getTotalSpent(), bigId), 1);
+        assertEquals(smallId, second.get(0).getMemberId());
+    }
+
+    @Test
+    public void 통계_row가_없는_회원에_동시에_주문해도_모두_반영() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long memberId = memberService.join(newMember("통계회원4"));
+        Book book = tx.execute(status -> createBook(em, "통계 JPA", 10000, 100));
+        deleteStats(memberId); //다시 계산하기 전에 들어온 회원
+
+        //when
+        int orders = 8;
+        runConcurrently(orders, () -> orderService.order(memberId, book.getId(), 1));
+
+        //then
+        MemberStats stats = find(memberId);
+        assertEquals(orders, stats.getOrderCount());
+        assertEquals(orders * 10000, stats.getTotalSpent());
+    }
+
+    @Test
+    public void 통계_row가_없는_회원을_주문과_동시에_다시_계산() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long memberId = memberService.join(newMember("통계회원5"));
+        Book book = tx.execute(status -> createBook(em, "통계 JPA", 10000, 100));
+        orderService.order(memberId, book.getId(), 1);
+        deleteStats(memberId);
+
+        //when
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(() -> orderService.order(memberId, book.getId(), 1));
+            tasks.add(() -> tx.execute(status -> memberStatsRepository.recompute(List.of(memberId))));
+        }
+        runConcurrently(tasks);
+
+        //then
+        MemberStats stats = find(memberId);
+        assertEquals(5, stats.getOrderCount());
+        assertEquals(50000, stats.getTotalSpent());
+    }
+
+    private void deleteStats(Long memberId) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> em.createQuery("delete from MemberStats s where s.memberId = :memberId")
+                .setParameter("memberId", memberId)
+                .executeUpdate());
+    }
+
+    private void runConcurrently(int count, Callable<Object> task) throws Exception {
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(task);
+        }
+        runConcurrently(tasks);
+    }
+
+    //한꺼번에 출발시켜서 row가 없는 상태에서 겹치도록 함
+    private void runConcurrently(List<Callable<Object>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (Callable<Object> task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        for (Future<Object> future : futures) {
+            future.get(30, TimeUnit.SECONDS); //PK 위반이면 여기서 예외
+        }
+        executor.shutdown();
+    }
+
+    private MemberStats find(Long memberId) {
+        return new TransactionTemplate(transactionManager).execute(status -> em.find(MemberStats.class, memberId));
+    }
+}
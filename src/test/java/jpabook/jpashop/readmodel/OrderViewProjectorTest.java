@@ -0,0 +1,195 @@
+package jpabook.jpashop.readmodel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.sharding.ShardedOrderStore;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import static jpabook.jpashop.TestFixtures.createBook;
+import static jpabook.jpashop.TestFixtures.createMember;
+import static org.junit.Assert.*;
+
+//조회 모델은 커밋 뒤 outbox 전달 스레드에서 갱신되므로 테스트 데이터를 커밋함(@Transactional 사용 안 함)
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "jpashop.outbox.retry-delay-ms=50")
+public class OrderViewProjectorTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired OrderViewRepository orderViewRepository;
+    @Autowired OrderViewProjector orderViewProjector;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired ObjectMapper objectMapper;
+
+    @Test
+    public void 주문_취소_회원이름변경이_조회모델에_반영() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "조회모델회원"));
+        Book book = tx.execute(status -> createBook(em, "조회모델 JPA", 10000, 10));
+
+        //when
+        Long orderId = orderService.order(member.getId(), book.getId(), 3);
+
+        //then
+        OrderView view = await(orderId, v -> true);
+        assertEquals(member.getId(), view.getMemberId());
+        assertEquals("조회모델회원", view.getMemberName());
+        assertEquals(OrderStatus.ORDER, view.getStatus());
+        assertTrue(view.getItems().contains("\"itemName\":\"조회모델 JPA\""));
+        assertTrue(view.getItems().contains("\"count\":3"));
+
+        //when
+        orderService.cancelOrder(orderId);
+        memberService.update(member.getId(), "바뀐회원");
+
+        //then
+        await(orderId, v -> v.getStatus() == OrderStatus.CANCEL);
+        await(orderId, v -> "바뀐회원".equals(v.getMemberName()));
+        OrderViewDto first = orderViewRepository.findPage(null, 1).get(0);
+        assertEquals("가장 최근 주문이 먼저", orderId, first.getOrderId());
+        assertEquals("바뀐회원", first.getName());
+        assertEquals(OrderStatus.CANCEL, first.getOrderStatus());
+    }
+
+    @Test
+    public void 재구성은_없는_row만_채우고_있는_row는_덮어쓰지_않음() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "재구성회원"));
+        Book book = tx.execute(status -> createBook(em, "재구성 JPA", 10000, 10));
+        Long missingId = orderService.order(member.getId(), book.getId(), 1);
+        Long keptId = orderService.order(member.getId(), book.getId(), 2);
+        await(missingId, v -> true);
+        await(keptId, v -> true);
+        tx.executeWithoutResult(status -> orderViewRepository.deleteByIds(List.of(missingId))); //이벤트 없이 들어간 주문
+        tx.executeWithoutResult(status -> em.createQuery("update OrderView v set v.memberName = :name where v.orderId = :orderId")
+                .setParameter("name", "구독자가 넣은 값")
+                .setParameter("orderId", keptId)
+                .executeUpdate());
+
+        //when
+        orderViewProjector.rebuild();
+
+        //then
+        assertEquals("재구성회원", await(missingId, v -> true).getMemberName());
+        assertEquals("재구성이 읽은 값보다 구독자가 넣은 값이 최신일 수 있음", "구독자가 넣은 값", await(keptId, v -> true).getMemberName());
+    }
+
+    @Test
+    public void 구독자와_재구성이_동시에_돌아도_원본과_같아짐() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "동시재구성회원"));
+        Book book = tx.execute(status -> createBook(em, "동시재구성 JPA", 10000, 100));
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> rebuilds = executor.submit(() -> {
+            int count = 0;
+            while (running.get()) {
+                tx.executeWithoutResult(status -> em.createQuery("delete from OrderView").executeUpdate());
+                int total = tx.execute(status -> em.createQuery("select count(o) from Order o", Long.class).getSingleResult()).intValue();
+                assertTrue("실패한 chunk 없이 재구성", orderViewProjector.rebuild() >= total);
+                count++;
+            }
+            return count;
+        });
+
+        //when
+        List<Long> orderIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Long orderId = orderService.order(member.getId(), book.getId(), 1);
+            orderIds.add(orderId);
+            if (i % 2 == 0) {
+                orderService.cancelOrder(orderId);
+            }
+        }
+        running.set(false);
+        assertTrue(rebuilds.get(30, TimeUnit.SECONDS) > 0);
+        executor.shutdown();
+        orderViewProjector.rebuild(); //마지막 재구성 중에 지운 row를 채움
+
+        //then
+        for (int i = 0; i < orderIds.size(); i++) {
+            OrderStatus expected = i % 2 == 0 ? OrderStatus.CANCEL : OrderStatus.ORDER;
+            await(orderIds.get(i), v -> v.getStatus() == expected);
+        }
+    }
+
+    @Test
+    public void 샤딩_모드에서는_기존_DB에_없는_주문도_재구성() throws Exception {
+        //given: shard에만 있는 주문(기존 DB의 orders에는 없음)
+        Long orderId = 9_000_001L;
+        OrderQueryDto order = new OrderQueryDto(orderId, 1L, "샤드회원", LocalDateTime.now(), OrderStatus.ORDER,
+                new Address("서울", "샤드로", "12345"), DeliveryStatus.READY);
+        ShardedOrderStore shardedOrderStore = new ShardedOrderStore(null, null, null) {
+            @Override
+            public boolean isEnabled() {
+                return true;
+            }
+        };
+        OrderQueryRepository shards = new OrderQueryRepository(null, null, shardedOrderStore) {
+            @Override
+            public List<Long> findOrderIds() {
+                return List.of(orderId);
+            }
+
+            @Override
+            public List<OrderQueryDto> findAllByDto_optimization(Collection<Long> orderIds) {
+                return List.of(order);
+            }
+        };
+        OrderViewProjector projector = new OrderViewProjector(orderViewRepository, shards, shardedOrderStore,
+                objectMapper, transactionManager, new SimpleMeterRegistry(), false);
+
+        //when
+        int count = projector.rebuild();
+
+        //then
+        assertEquals(1, count);
+        assertEquals("샤드회원", await(orderId, v -> true).getMemberName());
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> orderViewRepository.deleteByIds(List.of(orderId)));
+    }
+
+    private OrderView await(Long orderId, Predicate<OrderView> condition) throws InterruptedException {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            List<OrderView> views = tx.execute(status -> orderViewRepository.findByIds(List.of(orderId)));
+            if (!views.isEmpty() && condition.test(views.get(0))) {
+                return views.get(0);
+            }
+            assertTrue("조회 모델이 갱신되지 않았습니다.", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static jpabook.jpashop.TestFixtures.createBook;
+import static jpabook.jpashop.TestFixtures.createMember;
+import static org.junit.Assert.*;
+
+//보관 작업은 chunk마다 새 트랜잭션으로 실행되므로 테스트 데이터를 커밋해야 함(@Transactional 사용 안 함)
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderArchiverTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired OrderArchiver orderArchiver;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 오래된_취소주문_보관() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "보관회원"));
+        Book book = tx.execute(status -> createBook(em, "보관 JPA", 10000, 10));
+        Long cancelledId = orderService.order(member.getId(), book.getId(), 1);
+        orderService.cancelOrder(cancelledId);
+        Long activeId = orderService.order(member.getId(), book.getId(), 2);
+        LocalDateTime old = LocalDateTime.now().minusDays(400);
+        tx.executeWithoutResult(status -> em.createQuery("update Order o set o.orderDate = :old where o.id in :ids")
+                .setParameter("old", old)
+                .setParameter("ids", List.of(cancelledId, activeId))
+                .executeUpdate());
+
+        //when
+        int archived = orderArchiver.archive(LocalDateTime.now().minusDays(365));
+
+        //then
+        assertTrue(archived >= 1);
+        assertNull("보관된 주문은 기본 조회에서 빠져야 한다", orderRepository.findOne(cancelledId));
+        assertNotNull("진행 중인 주문은 오래되어도 보관하지 않는다", orderRepository.findOne(activeId));
+
+        OrderSearch search = new OrderSearch();
+        search.setMemberName("보관회원");
+        assertEquals("기본 검색은 hot 주문만", List.of(activeId), ids(orderService.findOrders(search)));
+
+        search.setIncludeArchived(true);
+        List<Order> orders = orderService.findOrders(search);
+        assertEquals("보관 주문 포함 검색", List.of(activeId, cancelledId), ids(orders));
+        Order archivedOrder = orders.get(1);
+        assertEquals(OrderStatus.CANCEL, archivedOrder.getStatus());
+        assertEquals(10000, archivedOrder.getTotalPrice());
+        assertEquals(book.getId(), archivedOrder.getOrderItems().get(0).getItem().getId());
+    }
+
+    private static List<Long> ids(List<Order> orders) {
+        return orders.stream().map(Order::getId).collect(Collectors.toList());
+    }
+}
@@ -8,6 +8,7 @@ import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +17,9 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.Arrays;
 
+import static jpabook.jpashop.monitor.SqlAssertions.*;
 import static org.junit.Assert.*;
 
 @RunWith(SpringRunner.class)
@@ -27,6 +30,7 @@ public class OrderServiceTest {
     @Autowired EntityManager em;
     @Autowired OrderService orderService;
     @Autowired OrderRepository orderRepository;
+    @Autowired OrderQueryRepository orderQueryRepository;
 
     @Test
     public void 상품주문() throws Exception {
@@ -83,6 +87,121 @@ public class OrderServiceTest {
         assertEquals("주문이 취소된 상품은 그만큼 재고가 증가해야 한다", 10, item.getStockQuantity());
     }
 
+    @Test
+    public void 여러상품주문() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("토비의 스프링", 20000, 5);
+
+        //when
+        Long orderId = orderService.order(member.getId(), Arrays.asList(
+                new OrderLine(book1.getId(), 2),
+                new OrderLine(book2.getId(), 1),
+                new OrderLine(book1.getId(), 1)));
+
+        //then
+        em.flush();
+        em.clear();
+        Order getOrder = orderRepository.findOne(orderId);
+
+        assertEquals("같은 상품은 한 줄로 합쳐진다", 2, getOrder.getOrderItems().size());
+        assertEquals("주문 가격은 상품별 가격 * 수량의 합이다", 10000 * 3 + 20000, getOrder.getTotalPrice());
+        assertEquals("주문 수량만큼 재고가 줄어야 한다", 7, em.find(Book.class, book1.getId()).getStockQuantity());
+        assertEquals("주문 수량만큼 재고가 줄어야 한다", 4, em.find(Book.class, book2.getId()).getStockQuantity());
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 여러상품주문_재고수량초과() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("토비의 스프링", 20000, 1);
+
+        //when
+        orderService.order(member.getId(), Arrays.asList(
+                new OrderLine(book1.getId(), 2),
+                new OrderLine(book2.getId(), 2)));
+
+        //then
+        fail("재고 수량 부족 예외가 발생해야 한다.");
+    }
+
+    @Test
+    public void 없는상품주문() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+
+        //when
+        try {
+            orderService.order(member.getId(), Arrays.asList(
+                    new OrderLine(book.getId(), 2),
+                    new OrderLine(-1L, 1)));
+            fail("존재하지 않는 상품 예외가 발생해야 한다.");
+        } catch (IllegalStateException e) {
+            //재고 부족(NotEnoughStockException)이 아님
+        }
+        try {
+            orderService.order(member.getId(), -1L, 1);
+            fail("존재하지 않는 상품 예외가 발생해야 한다.");
+        } catch (IllegalStateException e) {
+            //재고 부족(NotEnoughStockException)이 아님
+        }
+
+        //then
+        em.flush();
+        em.clear();
+        assertEquals("재고를 차감하기 전에 확인해야 한다", 10, em.find(Book.class, book.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 주문수량이_0이하면_주문할_수_없음() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+
+        //when
+        try {
+            orderService.order(member.getId(), Arrays.asList(
+                    new OrderLine(book.getId(), 2),
+                    new OrderLine(book.getId(), -1)));
+            fail("합치면 양수여도 줄마다 확인해야 한다.");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            orderService.order(member.getId(), book.getId(), -5);
+            fail("음수 수량으로 재고가 늘어나면 안 된다.");
+        } catch (IllegalArgumentException e) {
+        }
+
+        //then
+        em.flush();
+        em.clear();
+        assertEquals(10, em.find(Book.class, book.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 주문조회_SQL수() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("토비의 스프링", 20000, 5);
+        orderService.order(member.getId(), Arrays.asList(
+                new OrderLine(book1.getId(), 1),
+                new OrderLine(book2.getId(), 1)));
+        orderService.order(member.getId(), book1.getId(), 1);
+        em.flush();
+        em.clear();
+        int orderCount = em.createQuery("select count(o) from Order o", Long.class).getSingleResult().intValue();
+
+        //then
+        assertSqlCount(1 + orderCount, () -> orderQueryRepository.findOrderQueryDtos()); //N+1
+        assertSqlCount(2, () -> orderQueryRepository.findAllByDto_optimization());
+        assertSqlCount(1, () -> orderQueryRepository.findAllByDto_flatGrouped());
+        assertSqlCount(1, () -> orderRepository.findAllWithItem());
+    }
+
     private Book createBook(String name, int price, int stockQuantity) {
         Book book = new Book();
         book.setName(name);
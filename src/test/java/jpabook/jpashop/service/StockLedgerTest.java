@@ -0,0 +1,199 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.domain.Item.Item;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static jpabook.jpashop.TestFixtures.createBook;
+import static jpabook.jpashop.TestFixtures.createMember;
+import static org.junit.Assert.*;
+
+//장부는 커밋/롤백 뒤에 반영되고 DB 반영은 별도 트랜잭션이므로 테스트 데이터를 커밋함(@Transactional 사용 안 함)
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "jpashop.stock-ledger.enabled=true",
+        "jpashop.stock-ledger.flush-interval-ms=600000" //테스트에서 직접 flush
+})
+public class StockLedgerTest {
+
+    @Autowired EntityManager em;
+    @Autowired StockLedger stockLedger;
+    @Autowired ItemService itemService;
+    @Autowired OrderService orderService;
+    @Autowired ItemRepository itemRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 재고를_칸에_나눠서_차감하고_변화량을_모음() throws Exception {
+        //given
+        StockLedger.Stripes stock = new StockLedger.Stripes(4, 10); //3, 3, 2, 2
+
+        //when
+        assertTrue(stock.tryReserve(2));
+        assertTrue("한 칸으로 부족하면 여러 칸에서 나눠서 차감", stock.tryReserve(7));
+        stock.release(1);
+
+        //then
+        assertEquals(2, stock.available());
+        assertFalse(stock.tryReserve(3));
+        assertEquals("실패한 차감은 재고를 건드리지 않음", 2, stock.available());
+        assertEquals(-8, stock.drainPending());
+        assertEquals("한 번 가져간 변화량은 비워짐", 0, stock.drainPending());
+    }
+
+    @Test
+    public void 재고_수량_변경은_차이만큼_변화량에_반영() throws Exception {
+        //given
+        StockLedger.Stripes stock = new StockLedger.Stripes(4, 10);
+        assertTrue(stock.tryReserve(3));
+        stock.drainPending();
+
+        //when
+        stock.adjustTo(20);
+        stock.adjustTo(5);
+
+        //then
+        assertEquals(5, stock.available());
+        assertEquals(-2, stock.drainPending()); //7 -> 20 -> 5
+        for (int i = 0; i < 5; i++) {
+            assertTrue("줄일 때 한 칸이 음수가 되면 안 됨", stock.tryReserve(1));
+        }
+        assertFalse(stock.tryReserve(1));
+    }
+
+    @Test
+    public void 동시에_차감해도_재고보다_많이_팔지_않음() throws Exception {
+        //given
+        StockLedger.Stripes stock = new StockLedger.Stripes(8, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                int reserved = 0;
+                for (int i = 0; i < 200; i++) {
+                    if (stock.tryReserve(1)) {
+                        reserved++;
+                    }
+                }
+                return reserved;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            total += future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        //then
+        assertEquals(1000, total);
+        assertEquals(0, stock.available());
+        assertEquals(-1000, stock.drainPending());
+    }
+
+    @Test
+    public void 주문이_롤백되면_장부도_되돌림() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "장부회원1"));
+        Book book = tx.execute(status -> createBook(em, "장부 JPA", 10000, 10));
+
+        //when
+        tx.executeWithoutResult(status -> {
+            orderService.order(member.getId(), book.getId(), 4);
+            status.setRollbackOnly();
+        });
+        orderService.order(member.getId(), book.getId(), 3);
+        stockLedger.flush();
+
+        //then
+        assertEquals(7, stockQuantity(book.getId()));
+    }
+
+    @Test
+    public void 상품_수정은_장부가_반영한_재고를_덮어쓰지_않음() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "장부회원2"));
+        Book book = tx.execute(status -> createBook(em, "장부 JPA", 10000, 10));
+        orderService.order(member.getId(), book.getId(), 1); //장부에 올림
+        stockLedger.flush();
+        TransactionTemplate other = new TransactionTemplate(transactionManager);
+        other.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        //when
+        tx.executeWithoutResult(status -> {
+            Item loaded = itemService.findOne(book.getId()); //재고 9를 읽은 상태
+            assertEquals(9, loaded.getStockQuantity());
+            //그 사이 다른 주문이 커밋되고 장부가 DB에 반영
+            other.executeWithoutResult(s -> orderService.order(member.getId(), book.getId(), 2));
+            stockLedger.flush();
+            itemService.updateItem(book.getId(), "장부 JPA 2판", 12000, 30);
+            assertEquals("커밋 전에는 장부를 바꾸지 않음", 7, stockLedger.stripesOf(book.getId()).available());
+        });
+        stockLedger.flush();
+
+        //then
+        assertEquals(30, stockQuantity(book.getId()));
+        Item item = tx.execute(status -> itemRepository.findOne(book.getId()));
+        assertEquals("장부 JPA 2판", item.getName());
+        assertEquals(12000, item.getPrice());
+    }
+
+    @Test
+    public void 상품_수정이_롤백되면_장부도_그대로() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "장부회원3"));
+        Book book = tx.execute(status -> createBook(em, "장부 JPA", 10000, 10));
+        orderService.order(member.getId(), book.getId(), 1);
+
+        //when
+        tx.executeWithoutResult(status -> {
+            itemService.updateItem(book.getId(), "장부 JPA", 10000, 100);
+            status.setRollbackOnly();
+        });
+        stockLedger.flush();
+
+        //then
+        assertEquals(9, stockLedger.stripesOf(book.getId()).available());
+        assertEquals(9, stockQuantity(book.getId()));
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 장부_재고가_부족하면_예외() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Member member = tx.execute(status -> createMember(em, "장부회원4"));
+        Book book = tx.execute(status -> createBook(em, "장부 JPA", 10000, 2));
+
+        //when
+        orderService.order(member.getId(), book.getId(), 3);
+
+        //then
+        fail("재고 수량 부족 예외가 발생해야 한다.");
+    }
+
+    private int stockQuantity(Long itemId) {
+        return new TransactionTemplate(transactionManager).execute(status -> itemRepository.findStockQuantity(itemId));
+    }
+}
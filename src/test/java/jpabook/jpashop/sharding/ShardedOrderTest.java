@@ -0,0 +1,145 @@
+package jpabook.jpashop.sharding;
+
+import jpabook.jpashop.domain.Item.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.service.OrderLine;
+import jpabook.jpashop.service.OrderService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static jpabook.jpashop.TestFixtures.createBook;
+import static jpabook.jpashop.TestFixtures.createMember;
+import static org.junit.Assert.*;
+
+//메모리 H2 3개를 shard로 사용
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "jpashop.sharding.enabled=true",
+        "jpashop.sharding.urls[0]=jdbc:h2:mem:order-shard0;DB_CLOSE_DELAY=-1",
+        "jpashop.sharding.urls[1]=jdbc:h2:mem:order-shard1;DB_CLOSE_DELAY=-1",
+        "jpashop.sharding.urls[2]=jdbc:h2:mem:order-shard2;DB_CLOSE_DELAY=-1"
+})
+@Transactional //롤백되면 shard에 넣은 주문도 지워짐(보상)
+public class ShardedOrderTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired OrderQueryRepository orderQueryRepository;
+    @Autowired OrderShards orderShards;
+
+    @Test
+    public void 주문은_회원의_shard에_저장() throws Exception {
+        //given
+        Book book = createBook(em, "시골 JPA", 10000, 100);
+
+        //when
+        Set<Integer> usedShards = new HashSet<>();
+        for (int i = 0; i < 12; i++) {
+            Member member = createMember(em, "member" + i);
+            Long orderId = orderService.order(member.getId(), book.getId(), 1);
+
+            //then
+            assertEquals("주문 id로 회원의 shard를 찾을 수 있어야 한다",
+                    orderShards.forMember(member.getId()).getIndex(), orderShards.forOrder(orderId).getIndex());
+            Order getOrder = orderRepository.findOne(orderId);
+            assertEquals(member.getId(), getOrder.getMember().getId());
+            assertEquals(1, getOrder.getOrderItems().size());
+            usedShards.add(orderShards.forOrder(orderId).getIndex());
+        }
+        assertTrue("주문이 여러 shard에 나뉘어 저장되어야 한다", usedShards.size() > 1);
+    }
+
+    @Test
+    public void 주문취소() throws Exception {
+        //given
+        Member member = createMember(em, "userC");
+        Book book = createBook(em, "시골 JPA", 10000, 10);
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+
+        //when
+        orderService.cancelOrder(orderId);
+
+        //then
+        em.flush();
+        em.clear();
+        assertEquals("주문 취소시 상태는 CANCEL 이다", OrderStatus.CANCEL, orderRepository.findOne(orderId).getStatus());
+        assertEquals("주문이 취소된 상품은 그만큼 재고가 증가해야 한다", 10, em.find(Book.class, book.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 키셋페이징_병합() throws Exception {
+        //given
+        createOrders(10);
+        List<OrderQueryDto> all = orderQueryRepository.findAllByDto_optimization();
+        all.sort(Comparator.comparing(OrderQueryDto::getOrderDate).thenComparing(OrderQueryDto::getOrderId).reversed());
+
+        //when
+        List<OrderQueryDto> paged = new ArrayList<>();
+        OrderCursor cursor = null;
+        while (true) {
+            List<OrderQueryDto> page = orderQueryRepository.findAllByDto_optimization(cursor, 3);
+            if (page.isEmpty()) {
+                break;
+            }
+            paged.addAll(page);
+            OrderQueryDto last = page.get(page.size() - 1);
+            cursor = OrderCursor.of(last.getOrderDate(), last.getOrderId());
+        }
+
+        //then
+        assertEquals("페이지를 이어 붙이면 전체를 최신순으로 정렬한 것과 같아야 한다",
+                ids(all), ids(paged));
+        assertTrue("회원 이름은 기존 DB에서 채워야 한다", paged.stream().allMatch(o -> o.getName() != null));
+    }
+
+    @Test
+    public void 스트리밍_병합() throws Exception {
+        //given
+        createOrders(10);
+
+        //when
+        List<OrderQueryDto> streamed = new ArrayList<>();
+        orderQueryRepository.streamAllByDto_flat(streamed::add);
+
+        //then
+        List<Long> orderIds = orderQueryRepository.findOrderIds();
+        assertEquals("모든 shard의 주문이 order id 순으로 한 번씩 나와야 한다", orderIds, ids(streamed));
+        assertEquals(orderIds.stream().sorted().collect(Collectors.toList()), orderIds);
+        assertTrue(streamed.stream().allMatch(o -> o.getOrderItems().size() == 2 && o.getOrderItems().get(0).getItemName() != null));
+    }
+
+    private void createOrders(int count) {
+        Book book1 = createBook(em, "시골 JPA", 10000, 100);
+        Book book2 = createBook(em, "토비의 스프링", 20000, 100);
+        for (int i = 0; i < count; i++) {
+            Member member = createMember(em, "member" + i);
+            orderService.order(member.getId(), Arrays.asList(
+                    new OrderLine(book1.getId(), 1),
+                    new OrderLine(book2.getId(), 1)));
+        }
+    }
+
+    private static List<Long> ids(List<OrderQueryDto> orders) {
+        return orders.stream().map(OrderQueryDto::getOrderId).collect(Collectors.toList());
+    }
+}